@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Encodes bytes as standard Base64 with padding, as used by data URIs, directly into a {@link StringBuilder}, so
+ * large payloads can be encoded chunk by chunk without intermediate strings. Decoding works the other way round on
+ * the characters of a data URI, without copying them first.
+ */
+final class Base64Codec {
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char PADDING = '=';
+    private static final int[] DECODING = new int[128];
+
+    static {
+        Arrays.fill(DECODING, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODING[ALPHABET[i]] = i;
+        }
+    }
+
+    private Base64Codec() {
+    }
+
+    /**
+     * @return the number of characters the Base64 encoding of the given number of bytes takes
+     */
+    static long encodedLength(long length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    /**
+     * Appends the Base64 encoding of the given bytes. Only the last chunk of a payload may have a length that is not
+     * a multiple of 3, as it is padded.
+     *
+     * @param bytes  the bytes to encode
+     * @param offset the index of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param output the builder the characters are appended to
+     */
+    static void encode(byte[] bytes, int offset, int length, StringBuilder output) {
+        int end = offset + length;
+        int index = offset;
+        for (; index + 2 < end; index += 3) {
+            int block = (bytes[index] & 0xff) << 16 | (bytes[index + 1] & 0xff) << 8 | bytes[index + 2] & 0xff;
+            output.append(ALPHABET[block >>> 18])
+                    .append(ALPHABET[block >>> 12 & 0x3f])
+                    .append(ALPHABET[block >>> 6 & 0x3f])
+                    .append(ALPHABET[block & 0x3f]);
+        }
+        int remaining = end - index;
+        if (remaining == 1) {
+            int block = (bytes[index] & 0xff) << 16;
+            output.append(ALPHABET[block >>> 18])
+                    .append(ALPHABET[block >>> 12 & 0x3f])
+                    .append(PADDING)
+                    .append(PADDING);
+        } else if (remaining == 2) {
+            int block = (bytes[index] & 0xff) << 16 | (bytes[index + 1] & 0xff) << 8;
+            output.append(ALPHABET[block >>> 18])
+                    .append(ALPHABET[block >>> 12 & 0x3f])
+                    .append(ALPHABET[block >>> 6 & 0x3f])
+                    .append(PADDING);
+        }
+    }
+
+    /**
+     * Returns a stream that decodes the given characters while it is read. Like
+     * {@link javax.xml.bind.DatatypeConverter#parseBase64Binary(String)} it skips characters outside of the Base64
+     * alphabet and stops at the first padding character.
+     *
+     * @param chars the characters that contain the Base64 encoded data
+     * @param start the index of the first Base64 character
+     * @return a stream of the decoded bytes
+     */
+    static InputStream decode(CharSequence chars, int start) {
+        return new DecodingInputStream(chars, start);
+    }
+
+    private static final class DecodingInputStream extends InputStream {
+
+        private final CharSequence chars;
+        private final int end;
+        private int position;
+        private final byte[] group = new byte[3];
+        private int groupPosition;
+        private int groupLength;
+
+        private DecodingInputStream(CharSequence chars, int start) {
+            this.chars = chars;
+            this.end = chars.length();
+            this.position = start;
+        }
+
+        @Override
+        public int read() {
+            if (groupPosition == groupLength && !decodeGroup()) {
+                return -1;
+            }
+            return group[groupPosition++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (offset < 0 || length < 0 || length > bytes.length - offset) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int read = 0;
+            while (read < length) {
+                if (groupPosition == groupLength && !decodeGroup()) {
+                    break;
+                }
+                int count = Math.min(groupLength - groupPosition, length - read);
+                System.arraycopy(group, groupPosition, bytes, offset + read, count);
+                groupPosition += count;
+                read += count;
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        /**
+         * Decodes the next up to four characters into up to three bytes.
+         *
+         * @return false if the end of the data is reached
+         */
+        private boolean decodeGroup() {
+            int block = 0;
+            int count = 0;
+            while (count < 4 && position < end) {
+                char character = chars.charAt(position++);
+                if (character == PADDING) {
+                    position = end;
+                    break;
+                }
+                int value = character < DECODING.length ? DECODING[character] : -1;
+                if (value >= 0) {
+                    block = block << 6 | value;
+                    count++;
+                }
+            }
+            if (count < 2) {
+                return false;
+            }
+            block <<= 6 * (4 - count);
+            group[0] = (byte) (block >>> 16);
+            group[1] = (byte) (block >>> 8);
+            group[2] = (byte) block;
+            groupPosition = 0;
+            groupLength = count - 1;
+            return true;
+        }
+    }
+}
@@ -24,25 +24,49 @@
 package org.osiam.resources.data;
 
 import com.google.common.base.Strings;
-import org.apache.tika.Tika;
-import org.apache.tika.io.IOUtils;
 import org.osiam.resources.exception.SCIMDataValidationException;
 
-import javax.xml.bind.DatatypeConverter;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 
 /**
  * A URI of the form data:[<mediatype>][;base64],<data>
+ * <p>
+ * The URI is kept as a string, the {@link URI} returned by {@link #getAsURI()} is only created when it is needed.
+ * </p>
  */
 public class DataURI {
 
     public static final String DATA = "data:";
     public static final String BASE64 = ";base64,";
-    private URI dataUri;
+
+    /**
+     * The number of bytes read and encoded at a time, a multiple of 3, so only the last chunk needs padding
+     */
+    private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+    /**
+     * The ASCII characters {@link URI} allows in the opaque part and the fragment of a URI, besides escapes
+     */
+    private static final boolean[] URI_CHARACTERS = new boolean[128];
+
+    static {
+        String allowed = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.!~*'();/?:@&=+$,[]";
+        for (int i = 0; i < allowed.length(); i++) {
+            URI_CHARACTERS[allowed.charAt(i)] = true;
+        }
+    }
+
+    private final CharSequence dataUri;
+    /**
+     * The index of {@link #BASE64} in the URI, the MIME type ends and the payload starts here
+     */
+    private final int base64Index;
+    private volatile URI uri;
+    private int hash;
 
     /**
      * @param dataUri A String presenting a URI of the form data:[<mediatype>][;base64],<data>
@@ -55,11 +79,15 @@ public class DataURI {
         if (!dataUri.startsWith(DATA) || !dataUri.contains(BASE64)) {
             throw new SCIMDataValidationException("The given string '" + dataUri + "' is not a data URI.");
         }
-        try {
-            this.dataUri = new URI(dataUri);
-        } catch (URISyntaxException e) {
-            throw new SCIMDataValidationException(e.getMessage(), e);
+        if (!isOpaqueUri(dataUri)) {
+            try {
+                this.uri = new URI(dataUri);
+            } catch (URISyntaxException e) {
+                throw new SCIMDataValidationException(e.getMessage(), e);
+            }
         }
+        this.dataUri = dataUri;
+        this.base64Index = dataUri.indexOf(BASE64);
     }
 
     /**
@@ -70,10 +98,13 @@ public class DataURI {
         if (dataUri == null) {
             throw new SCIMDataValidationException("The given dataUri can't be null.");
         }
-        if (!dataUri.toString().startsWith(DATA) || !dataUri.toString().contains(BASE64)) {
-            throw new SCIMDataValidationException("The given URI '" + dataUri.toString() + "' is not a data URI.");
+        String dataUriString = dataUri.toString();
+        if (!dataUriString.startsWith(DATA) || !dataUriString.contains(BASE64)) {
+            throw new SCIMDataValidationException("The given URI '" + dataUriString + "' is not a data URI.");
         }
-        this.dataUri = dataUri;
+        this.dataUri = dataUriString;
+        this.base64Index = dataUriString.indexOf(BASE64);
+        this.uri = dataUri;
     }
 
     /**
@@ -82,45 +113,190 @@ public class DataURI {
      * @throws SCIMDataValidationException if the inputStream can't be converted into an DataURI
      */
     public DataURI(InputStream inputStream) throws IOException {
+        this(inputStream, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the given stream into a data URI. The MIME type is detected from the first chunk of the stream, then the
+     * stream is Base64 encoded chunk by chunk into the URI, so apart from the URI itself only one chunk is held in
+     * memory. The stream is not closed.
+     *
+     * @param inputStream a inputStream which will be transformed into an DataURI
+     * @param maxSize     the maximum number of bytes the stream may contain
+     * @throws IOException                 if the stream can not be read or is closed
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an DataURI or contains more than
+     *                                     <code>maxSize</code> bytes
+     */
+    public DataURI(InputStream inputStream, long maxSize) throws IOException {
+        this(inputStream, maxSize, MagicBytesMimeTypeDetector.DEFAULT);
+    }
+
+    /**
+     * Like {@link #DataURI(InputStream, long)}, with the given detector for the MIME type of the stream.
+     *
+     * @param inputStream      a inputStream which will be transformed into an DataURI
+     * @param maxSize          the maximum number of bytes the stream may contain
+     * @param mimeTypeDetector the detector for the MIME type, which gets the first chunk of the stream
+     * @throws IOException                 if the stream can not be read or is closed
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an DataURI or contains more than
+     *                                     <code>maxSize</code> bytes
+     */
+    public DataURI(InputStream inputStream, long maxSize, MimeTypeDetector mimeTypeDetector) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        base64Index = encode(inputStream, maxSize, mimeTypeDetector, builder, null);
+        dataUri = builder.toString();
+    }
+
+    /**
+     * For subclasses that keep the URI elsewhere than in a string.
+     *
+     * @param dataUri     the characters of the URI, which start with {@link #DATA}
+     * @param base64Index the index of {@link #BASE64} in the URI
+     */
+    DataURI(CharSequence dataUri, int base64Index) {
+        this.dataUri = dataUri;
+        this.base64Index = base64Index;
+    }
+
+    /**
+     * Encodes the given stream into a data URI. The MIME type is detected from the first chunk of the stream, then
+     * the stream is Base64 encoded chunk by chunk.
+     *
+     * @param builder receives the URI, or each chunk of the URI if a writer is given
+     * @param writer  if not null, the content of the builder is written to it after each chunk, so the builder only
+     *                holds one chunk at a time
+     * @return the index of {@link #BASE64} in the URI
+     */
+    static int encode(InputStream inputStream, long maxSize, MimeTypeDetector mimeTypeDetector,
+                      StringBuilder builder, Writer writer) throws IOException {
         if (inputStream == null) {
             throw new SCIMDataValidationException("The given inputStream can't be null.");
         }
-        String mimeType = new Tika().detect(inputStream);
-        dataUri = convertInputStreamToDataURI(inputStream, mimeType);
+        if (mimeTypeDetector == null) {
+            throw new IllegalArgumentException("The MIME type detector can't be null");
+        }
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The maximum size can't be negative");
+        }
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int length = readChunk(inputStream, chunk);
+        String mimeType = mimeTypeDetector.detect(chunk, length);
+
+        if (writer == null) {
+            long expectedSize = Math.min(length + (long) inputStream.available(), maxSize);
+            long capacity = DATA.length() + mimeType.length() + BASE64.length()
+                    + Base64Codec.encodedLength(expectedSize);
+            builder.ensureCapacity((int) Math.min(capacity, Integer.MAX_VALUE - 8));
+        }
+        builder.append(DATA).append(mimeType);
+        int base64Index = builder.length();
+        builder.append(BASE64);
+        long size = 0;
+        while (length > 0) {
+            size += length;
+            if (size > maxSize) {
+                throw new SCIMDataValidationException("The given inputStream exceeds the maximum size of " + maxSize
+                        + " bytes.");
+            }
+            Base64Codec.encode(chunk, 0, length, builder);
+            if (writer != null) {
+                writer.append(builder);
+                builder.setLength(0);
+            }
+            length = readChunk(inputStream, chunk);
+        }
+        if (writer != null) {
+            writer.append(builder);
+            builder.setLength(0);
+        }
+        return base64Index;
     }
 
-    private URI convertInputStreamToDataURI(InputStream inputStream, String mimeType) throws IOException {
-        byte[] byteArrayPhoto = IOUtils.toByteArray(inputStream);
-        String base64Photo = DatatypeConverter.printBase64Binary(byteArrayPhoto);
+    /**
+     * Checks without creating a {@link URI} and without any exception whether the given string is a data URI.
+     *
+     * @param value the string to check, may be null
+     * @return true if a {@link DataURI} can be created from the given string
+     */
+    public static boolean isDataUri(String value) {
+        return value != null && value.startsWith(DATA) && value.contains(BASE64) && isOpaqueUri(value);
+    }
 
-        StringBuilder uriStringBuilder = new StringBuilder();
-        uriStringBuilder.append(DATA).append(mimeType)
-                .append(BASE64).append(base64Photo);
+    /**
+     * Checks the characters after the scheme of a data URI like {@link URI} does for an opaque URI, i.e. one whose
+     * non-empty scheme-specific part does not start with a slash.
+     *
+     * @return true if the string is a valid opaque URI, false if it is invalid or not opaque
+     */
+    static boolean isOpaqueUri(String value) {
+        int length = value.length();
+        if (length == DATA.length() || value.charAt(DATA.length()) == '/' || value.charAt(DATA.length()) == '#') {
+            return false;
+        }
+        boolean fragment = false;
+        for (int i = DATA.length(); i < length; i++) {
+            char character = value.charAt(i);
+            if (character < URI_CHARACTERS.length) {
+                if (character == '%') {
+                    if (i + 2 >= length || Character.digit(value.charAt(i + 1), 16) < 0
+                            || Character.digit(value.charAt(i + 2), 16) < 0) {
+                        return false;
+                    }
+                    i += 2;
+                } else if (character == '#' && !fragment) {
+                    fragment = true;
+                } else if (!URI_CHARACTERS[character]) {
+                    return false;
+                }
+            } else if (Character.isSpaceChar(character) || Character.isISOControl(character)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        URI retDataUri;
-        try {
-            retDataUri = new URI(uriStringBuilder.toString());
-        } catch (URISyntaxException e) {
-            throw new SCIMDataValidationException(e.getMessage(), e);
+    /**
+     * Fills the given chunk from the stream.
+     *
+     * @return the number of bytes read, less than the size of the chunk only at the end of the stream
+     */
+    private static int readChunk(InputStream inputStream, byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = inputStream.read(chunk, length, chunk.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
         }
-        return retDataUri;
+        return length;
     }
 
     /**
      * @return gets the dataURI as java.net.URI
+     * @throws SCIMDataValidationException if the data URI is not a valid URI
      */
     public URI getAsURI() {
-        return dataUri;
+        URI result = uri;
+        if (result == null) {
+            try {
+                result = new URI(dataUri.toString());
+            } catch (URISyntaxException e) {
+                throw new SCIMDataValidationException(e.getMessage(), e);
+            }
+            uri = result;
+        }
+        return result;
     }
 
     /**
+     * The returned stream decodes the Base64 payload while it is read, so the decoded data is never held in memory as a
+     * whole.
+     *
      * @return gets the dataURI as InputStream
      */
     public InputStream getAsInputStream() {
-        String imageCode = dataUri.toString().substring(dataUri.toString().indexOf(BASE64) + BASE64.length());
-
-        byte[] decodedBytes = DatatypeConverter.parseBase64Binary(imageCode);
-        return new ByteArrayInputStream(decodedBytes);
+        return Base64Codec.decode(dataUri, base64Index + BASE64.length());
     }
 
     /**
@@ -129,18 +305,57 @@ public class DataURI {
      * @return the mime type of the DataURI
      */
     public String getMimeType() {
-        String uriString = dataUri.toString();
-        return uriString.substring(DATA.length(), uriString.indexOf(BASE64));
+        return dataUri.subSequence(DATA.length(), base64Index).toString();
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((dataUri == null) ? 0 : dataUri.hashCode());
+        result = prime * result + ((dataUri == null) ? 0 : contentHashCode());
         return result;
     }
 
+    /**
+     * @return the hash code of the URI string, without creating it
+     */
+    private int contentHashCode() {
+        if (dataUri instanceof String) {
+            return dataUri.hashCode();
+        }
+        int result = hash;
+        if (result == 0) {
+            for (int i = 0; i < dataUri.length(); i++) {
+                result = 31 * result + dataUri.charAt(i);
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    private boolean contentEquals(CharSequence other) {
+        if (dataUri instanceof String && other instanceof String) {
+            return dataUri.equals(other);
+        }
+        if (dataUri.length() != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < dataUri.length(); i++) {
+            if (dataUri.charAt(i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A {@link MappedDataURI} only differs in where its characters are stored, so it equals a plain {@link DataURI}
+     * with the same characters.
+     */
+    private static Class<?> equalityClass(DataURI dataUri) {
+        return dataUri instanceof MappedDataURI ? DataURI.class : dataUri.getClass();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -149,7 +364,7 @@ public class DataURI {
         if (obj == null) {
             return false;
         }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof DataURI) || equalityClass(this) != equalityClass((DataURI) obj)) {
             return false;
         }
         DataURI other = (DataURI) obj;
@@ -157,7 +372,7 @@ public class DataURI {
             if (other.dataUri != null) {
                 return false;
             }
-        } else if (!dataUri.equals(other.dataUri)) {
+        } else if (other.dataUri == null || !contentEquals(other.dataUri)) {
             return false;
         }
         return true;
@@ -66,10 +66,44 @@ public class ImageDataURI extends DataURI {
      * @throws SCIMDataValidationException if the inputStream can't be converted into an URI
      */
     public ImageDataURI(InputStream inputStream) throws IOException {
-        super(inputStream);
+        this(inputStream, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param inputStream a inputStream which will be transformed into an DataURI
+     * @param maxSize     the maximum number of bytes the stream may contain
+     * @throws IOException                 if the stream can not be read
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an URI or is too large
+     * @see DataURI#DataURI(InputStream, long)
+     */
+    public ImageDataURI(InputStream inputStream, long maxSize) throws IOException {
+        this(inputStream, maxSize, MagicBytesMimeTypeDetector.DEFAULT);
+    }
+
+    /**
+     * @param inputStream      a inputStream which will be transformed into an DataURI
+     * @param maxSize          the maximum number of bytes the stream may contain
+     * @param mimeTypeDetector the detector for the MIME type of the stream
+     * @throws IOException                 if the stream can not be read
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an URI or is too large
+     * @see DataURI#DataURI(InputStream, long, MimeTypeDetector)
+     */
+    public ImageDataURI(InputStream inputStream, long maxSize, MimeTypeDetector mimeTypeDetector)
+            throws IOException {
+        super(inputStream, maxSize, mimeTypeDetector);
         if (!super.toString().startsWith(IMAGE_MIME_TYPE)) {
             throw new SCIMDataValidationException("The given input stream is not an image.");
         }
     }
 
+    /**
+     * Checks without creating a {@link URI} and without any exception whether the given string is an image data URI.
+     *
+     * @param value the string to check, may be null
+     * @return true if an {@link ImageDataURI} can be created from the given string
+     */
+    public static boolean isImageDataUri(String value) {
+        return value != null && value.startsWith(IMAGE_MIME_TYPE) && isDataUri(value);
+    }
+
 }
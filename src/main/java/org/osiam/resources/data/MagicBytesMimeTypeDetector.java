@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data;
+
+import java.io.IOException;
+
+/**
+ * A {@link MimeTypeDetector} that recognizes the common image formats PNG, JPEG, GIF, WebP and BMP by their leading
+ * signature bytes and hands any other content to a fallback detector. Photos are nearly always in one of these
+ * formats, so the expensive fallback is rarely used.
+ */
+public final class MagicBytesMimeTypeDetector implements MimeTypeDetector {
+
+    /**
+     * Recognizes the common image formats and uses the shared {@link TikaMimeTypeDetector} for anything else.
+     */
+    public static final MagicBytesMimeTypeDetector DEFAULT =
+            new MagicBytesMimeTypeDetector(TikaMimeTypeDetector.getInstance());
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] JPEG = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] GIF87A = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89A = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] BMP = {'B', 'M'};
+
+    private final MimeTypeDetector fallback;
+
+    /**
+     * @param fallback the detector used for content that is none of the known image formats
+     */
+    public MagicBytesMimeTypeDetector(MimeTypeDetector fallback) {
+        if (fallback == null) {
+            throw new IllegalArgumentException("The fallback detector can't be null");
+        }
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String detect(byte[] bytes, int length) throws IOException {
+        String mimeType = detectImage(bytes, length);
+        return mimeType != null ? mimeType : fallback.detect(bytes, length);
+    }
+
+    /**
+     * @return the MIME type of the image, or null if the bytes don't start with the signature of a known format
+     */
+    static String detectImage(byte[] bytes, int length) {
+        if (startsWith(bytes, length, 0, PNG)) {
+            return "image/png";
+        }
+        if (startsWith(bytes, length, 0, JPEG)) {
+            return "image/jpeg";
+        }
+        if (startsWith(bytes, length, 0, GIF89A) || startsWith(bytes, length, 0, GIF87A)) {
+            return "image/gif";
+        }
+        if (startsWith(bytes, length, 0, RIFF) && startsWith(bytes, length, 8, WEBP)) {
+            return "image/webp";
+        }
+        // the four reserved bytes of the BMP file header are zero, "BM" alone is too weak for text content
+        if (length >= 14 && startsWith(bytes, length, 0, BMP)
+                && bytes[6] == 0 && bytes[7] == 0 && bytes[8] == 0 && bytes[9] == 0) {
+            return "image/bmp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, int offset, byte[] signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data;
+
+import com.google.common.base.Charsets;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link DataURI} whose characters live in a memory-mapped file instead of on the heap, for very large payloads,
+ * e.g. the photos of an export. {@link #getMimeType()} and {@link #getAsInputStream()} work directly on the mapped
+ * file; {@link #writeTo(OutputStream)} copies the URI to a stream without creating a string. Only
+ * {@link #toString()} and {@link #getAsURI()} create the whole URI on the heap, as their contract demands. It equals
+ * and has the same hash code as a {@link DataURI} with the same characters.
+ * <p>
+ * A URI created from a stream is written to a temporary file, which is deleted as soon as it is mapped where the
+ * operating system allows it, and otherwise when the JVM exits. The mapping is released when the instance is garbage
+ * collected.
+ * </p>
+ */
+public final class MappedDataURI extends DataURI {
+
+    /**
+     * The maximum number of characters searched for {@link #BASE64}, i.e. the maximum length of the MIME type
+     */
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private final ByteBuffer buffer;
+
+    private MappedDataURI(ByteBuffer buffer, int base64Index) {
+        super(new ByteBufferCharSequence(buffer), base64Index);
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps a file that contains a data URI. Only the start of the URI is validated, the payload is decoded leniently
+     * like with {@link DataURI#getAsInputStream()}.
+     *
+     * @param file a file that contains a URI of the form data:[&lt;mediatype&gt;][;base64],&lt;data&gt; in ASCII
+     * @return the mapped data URI
+     * @throws IOException                 if the file can't be mapped
+     * @throws SCIMDataValidationException if the file doesn't start with a data URI or is larger than 2 GB
+     */
+    public static MappedDataURI map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new SCIMDataValidationException("The file '" + file + "' is too large for a data URI.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int base64Index = indexOfBase64(buffer);
+            if (base64Index < 0) {
+                throw new SCIMDataValidationException("The file '" + file + "' doesn't contain a data URI.");
+            }
+            return new MappedDataURI(buffer, base64Index);
+        }
+    }
+
+    /**
+     * Encodes the given stream into a memory-mapped temporary file, like {@link DataURI#DataURI(InputStream)}.
+     *
+     * @param inputStream a inputStream which will be transformed into an DataURI
+     * @return the mapped data URI
+     * @throws IOException                 if the stream can not be read or the file can't be written
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an DataURI
+     */
+    public static MappedDataURI create(InputStream inputStream) throws IOException {
+        return create(inputStream, Long.MAX_VALUE, MagicBytesMimeTypeDetector.DEFAULT);
+    }
+
+    /**
+     * Encodes the given stream into a memory-mapped temporary file, like
+     * {@link DataURI#DataURI(InputStream, long, MimeTypeDetector)}.
+     *
+     * @param inputStream      a inputStream which will be transformed into an DataURI
+     * @param maxSize          the maximum number of bytes the stream may contain, at most 1.5 GB can be mapped
+     * @param mimeTypeDetector the detector for the MIME type, which gets the first chunk of the stream
+     * @return the mapped data URI
+     * @throws IOException                 if the stream can not be read or the file can't be written
+     * @throws SCIMDataValidationException if the inputStream can't be converted into an DataURI or contains more than
+     *                                     <code>maxSize</code> bytes
+     */
+    public static MappedDataURI create(InputStream inputStream, long maxSize, MimeTypeDetector mimeTypeDetector)
+            throws IOException {
+        Path file = Files.createTempFile("data-uri", ".txt");
+        try {
+            try (Writer writer = Files.newBufferedWriter(file, Charsets.US_ASCII)) {
+                encode(inputStream, maxSize, mimeTypeDetector, new StringBuilder(), writer);
+            }
+            return map(file);
+        } finally {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Writes the URI in ASCII to the given stream, without creating it on the heap.
+     *
+     * @param outputStream the stream, which is not closed
+     * @throws IOException if the stream can't be written
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(outputStream);
+        ByteBuffer content = buffer.duplicate();
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    private static int indexOfBase64(ByteBuffer buffer) {
+        int length = Math.min(buffer.limit(), MAX_HEADER_LENGTH);
+        if (!startsWith(buffer, 0, length, DATA)) {
+            return -1;
+        }
+        for (int i = DATA.length(); i + BASE64.length() <= length; i++) {
+            if (startsWith(buffer, i, length, BASE64)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int offset, int length, String prefix) {
+        if (offset + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The ASCII characters in a buffer as {@link CharSequence}.
+     */
+    private static final class ByteBufferCharSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        private ByteBufferCharSequence(ByteBuffer buffer) {
+            this(buffer, 0, buffer.limit());
+        }
+
+        private ByteBufferCharSequence(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+            return (char) (buffer.get(offset + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+            return new ByteBufferCharSequence(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            ByteBuffer content = buffer.duplicate();
+            content.position(offset);
+            content.get(bytes);
+            return new String(bytes, Charsets.ISO_8859_1);
+        }
+    }
+}
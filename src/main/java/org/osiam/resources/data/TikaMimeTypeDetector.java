@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data;
+
+import org.apache.tika.Tika;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * A {@link MimeTypeDetector} backed by <a href="https://tika.apache.org/">Apache Tika</a>. All detections share one
+ * {@link Tika} instance, which is created on the first detection, as creating it loads Tika's whole MIME type
+ * registry.
+ */
+public final class TikaMimeTypeDetector implements MimeTypeDetector {
+
+    private static final TikaMimeTypeDetector INSTANCE = new TikaMimeTypeDetector();
+
+    private TikaMimeTypeDetector() {
+    }
+
+    /**
+     * @return the shared instance
+     */
+    public static TikaMimeTypeDetector getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public String detect(byte[] bytes, int length) throws IOException {
+        return TikaHolder.TIKA.detect(new ByteArrayInputStream(bytes, 0, length));
+    }
+
+    /**
+     * Initialization-on-demand holder, so the {@link Tika} instance is only created when it is needed.
+     */
+    private static final class TikaHolder {
+        private static final Tika TIKA = new Tika();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import com.google.common.base.Objects;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.math.BigDecimal;
+
+/**
+ * A comparison of an attribute with a value, e.g. <code>userName eq "bjensen"</code> or <code>title pr</code>.
+ * <p>
+ * The value is a {@link String}, a {@link Boolean}, a {@link BigDecimal} or null. The value of the operator
+ * {@link ComparisonOperator#PR} is always null.
+ * </p>
+ */
+public final class AttributeExpression extends Filter {
+
+    private final AttributePath path;
+    private final ComparisonOperator operator;
+    private final Object value;
+
+    /**
+     * Creates a new comparison
+     *
+     * @param path     the path of the compared attribute
+     * @param operator the operator
+     * @param value    the value to compare with
+     * @throws SCIMDataValidationException if the path or the operator is null or the value has an unsupported type
+     */
+    public AttributeExpression(AttributePath path, ComparisonOperator operator, Object value) {
+        if (path == null || operator == null) {
+            throw new SCIMDataValidationException("The path and the operator of a comparison can't be null.");
+        }
+        if (value != null && !(value instanceof String || value instanceof Boolean || value instanceof BigDecimal)) {
+            throw new SCIMDataValidationException("The value " + value + " can't be compared.");
+        }
+        this.path = path;
+        this.operator = operator;
+        this.value = operator == ComparisonOperator.PR ? null : value;
+    }
+
+    public AttributePath getPath() {
+        return path;
+    }
+
+    public ComparisonOperator getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public <R> R accept(FilterVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AttributeExpression other = (AttributeExpression) o;
+        return path.equals(other.path) && operator == other.operator && Objects.equal(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(path, operator, value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder filter = new StringBuilder().append(path).append(' ').append(operator);
+        if (operator != ComparisonOperator.PR) {
+            filter.append(' ');
+            appendValue(filter, value);
+        }
+        return filter.toString();
+    }
+
+    private static void appendValue(StringBuilder filter, Object value) {
+        if (!(value instanceof String)) {
+            filter.append(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : String.valueOf(value));
+            return;
+        }
+        String string = (String) value;
+        filter.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                filter.append('\\');
+            }
+            filter.append(c);
+        }
+        filter.append('"');
+    }
+}
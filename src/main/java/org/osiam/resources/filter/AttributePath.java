@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.scim.Group;
+import org.osiam.resources.scim.User;
+
+import java.util.Locale;
+
+/**
+ * The path of an attribute in a {@link Filter}, e.g. <code>name.familyName</code> or
+ * <code>urn:ietf:params:scim:schemas:extension:enterprise:2.0:User:employeeNumber</code>.
+ * <p>
+ * Attribute names are case insensitive, so paths compare equal regardless of the case of their names. The URNs of the
+ * core schemas are removed, so <code>urn:ietf:params:scim:schemas:core:2.0:User:userName</code> and
+ * <code>userName</code> are the same path.
+ * </p>
+ */
+public final class AttributePath {
+
+    private final String urn;
+    private final String attribute;
+    private final String subAttribute;
+
+    /**
+     * Creates a new attribute path
+     *
+     * @param urn          the URN of the extension or null for core attributes
+     * @param attribute    the name of the attribute
+     * @param subAttribute the name of the sub-attribute or null
+     */
+    public AttributePath(String urn, String attribute, String subAttribute) {
+        if (attribute == null || attribute.isEmpty()) {
+            throw new SCIMDataValidationException("The attribute of a path can't be null or empty.");
+        }
+        this.urn = User.SCHEMA.equalsIgnoreCase(urn) || Group.SCHEMA.equalsIgnoreCase(urn) ? null : urn;
+        this.attribute = attribute;
+        this.subAttribute = subAttribute;
+    }
+
+    /**
+     * Parses the given attribute path
+     *
+     * @param path the path, e.g. <code>emails.value</code>
+     * @return the parsed path
+     * @throws SCIMDataValidationException if the given path is not valid
+     */
+    public static AttributePath parse(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new SCIMDataValidationException("The attribute path can't be null or empty.");
+        }
+        String urn = null;
+        String attributePath = path;
+        if (path.regionMatches(true, 0, "urn:", 0, 4)) {
+            int urnEnd = path.lastIndexOf(':');
+            urn = path.substring(0, urnEnd);
+            attributePath = path.substring(urnEnd + 1);
+        }
+        String subAttribute = null;
+        int subAttributeStart = attributePath.indexOf('.');
+        if (subAttributeStart >= 0) {
+            subAttribute = attributePath.substring(subAttributeStart + 1);
+            attributePath = attributePath.substring(0, subAttributeStart);
+        }
+        if (!isValidName(attributePath) || subAttribute != null && !isValidName(subAttribute)) {
+            throw new SCIMDataValidationException("The attribute path '" + path + "' is not valid.");
+        }
+        return new AttributePath(urn, attributePath, subAttribute);
+    }
+
+    private static boolean isValidName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the URN of the extension or null if the path points to a core attribute
+     */
+    public String getUrn() {
+        return urn;
+    }
+
+    /**
+     * @return the name of the attribute
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return the name of the sub-attribute or null if the path has no sub-attribute
+     */
+    public String getSubAttribute() {
+        return subAttribute;
+    }
+
+    /**
+     * Returns a copy of this path without a sub-attribute
+     *
+     * @return the path of the attribute itself
+     */
+    public AttributePath withoutSubAttribute() {
+        return subAttribute == null ? this : new AttributePath(urn, attribute, null);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AttributePath other = (AttributePath) o;
+        return equalsIgnoreCase(urn, other.urn)
+                && attribute.equalsIgnoreCase(other.attribute)
+                && equalsIgnoreCase(subAttribute, other.subAttribute);
+    }
+
+    private static boolean equalsIgnoreCase(String value, String otherValue) {
+        return value == null ? otherValue == null : value.equalsIgnoreCase(otherValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().toLowerCase(Locale.ENGLISH).hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder path = new StringBuilder();
+        if (urn != null) {
+            path.append(urn).append(':');
+        }
+        path.append(attribute);
+        if (subAttribute != null) {
+            path.append('.').append(subAttribute);
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import java.util.Locale;
+
+/**
+ * The operators of an {@link AttributeExpression}.
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.4.2.2">SCIM protocol 2.0, section 3.4.2.2</a>
+ * </p>
+ */
+public enum ComparisonOperator {
+    EQ, NE, CO, SW, EW, GT, LT, GE, LE, PR;
+
+    /**
+     * Looks up the operator with the given name, ignoring the case.
+     *
+     * @param name the name of the operator, e.g. "eq"
+     * @return the operator or null if there is no operator with the given name
+     */
+    public static ComparisonOperator fromString(String name) {
+        for (ComparisonOperator operator : values()) {
+            if (operator.name().equalsIgnoreCase(name)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Filter} compiled for a resource type, e.g. {@link org.osiam.resources.scim.User}, that can be evaluated
+ * against many resources in memory:
+ * <p>
+ * <pre>
+ * CompiledFilter&lt;User&gt; filter = CompiledFilter.compile("userName sw \"j\" and emails[type eq \"work\"]",
+ *         User.class);
+ * List&lt;User&gt; matchingUsers = filter.filter(users);
+ * </pre>
+ * </p>
+ * <p>
+ * Compiling resolves all attributes and converts all values once, so evaluating a compiled filter needs neither
+ * reflection nor JSON and doesn't copy any attribute values. Compiled filters are immutable and can be shared between
+ * threads. String values are compared case insensitive unless the attribute is case exact like "id", date time values
+ * are compared by time.
+ * </p>
+ *
+ * @param <T> the type of the resources to filter
+ */
+public final class CompiledFilter<T> {
+
+    private static final Cache<String, CompiledFilter<?>> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    private final Filter filter;
+    private final Class<T> type;
+    private final FilterCompiler.Matcher matcher;
+
+    private CompiledFilter(Filter filter, Class<T> type) {
+        this.filter = filter;
+        this.type = type;
+        this.matcher = new FilterCompiler(type).compile(filter);
+    }
+
+    /**
+     * Parses and compiles the given filter expression. Recently compiled filters are reused.
+     *
+     * @param filter the filter expression
+     * @param type   the type of the resources to filter
+     * @param <T>    the type of the resources to filter
+     * @return the compiled filter
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the filter is not valid or uses attributes
+     *                                                                   the given type doesn't have
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompiledFilter<T> compile(String filter, Class<T> type) {
+        String key = type.getName() + '\u0000' + filter;
+        CompiledFilter<T> compiledFilter = (CompiledFilter<T>) CACHE.getIfPresent(key);
+        if (compiledFilter == null) {
+            compiledFilter = compile(Filter.parse(filter), type);
+            CACHE.put(key, compiledFilter);
+        }
+        return compiledFilter;
+    }
+
+    /**
+     * Compiles the given filter.
+     *
+     * @param filter the filter
+     * @param type   the type of the resources to filter
+     * @param <T>    the type of the resources to filter
+     * @return the compiled filter
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the filter uses attributes the given type
+     *                                                                   doesn't have
+     */
+    public static <T> CompiledFilter<T> compile(Filter filter, Class<T> type) {
+        return new CompiledFilter<>(filter, type);
+    }
+
+    /**
+     * @return the filter this compiled filter evaluates
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the type of the resources this filter has been compiled for
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Evaluates this filter for the given resource.
+     *
+     * @param resource the resource
+     * @return true if the resource matches this filter
+     */
+    public boolean matches(T resource) {
+        return matcher.matches(resource);
+    }
+
+    /**
+     * Returns all given resources that match this filter in their original order.
+     *
+     * @param resources the resources to filter
+     * @return a new list of the matching resources
+     */
+    public List<T> filter(Iterable<? extends T> resources) {
+        List<T> matchingResources = new ArrayList<>();
+        for (T resource : resources) {
+            if (matcher.matches(resource)) {
+                matchingResources.add(resource);
+            }
+        }
+        return matchingResources;
+    }
+
+    @Override
+    public String toString() {
+        return filter.toString();
+    }
+}
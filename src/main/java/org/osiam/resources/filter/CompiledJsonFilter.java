@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A {@link Filter} compiled for the JSON representation of a resource type. It evaluates a filter against the
+ * {@link JsonNode} of a resource exactly like a {@link CompiledFilter} evaluates it against the deserialized resource,
+ * so resources can be filtered before, or instead of, deserializing them:
+ * <p>
+ * <pre>
+ * CompiledJsonFilter filter = CompiledJsonFilter.compile("emails[type eq \"work\"]", User.class);
+ * boolean matches = filter.matches(objectMapper.readTree(json));
+ * </pre>
+ * </p>
+ * <p>
+ * Only the top-level attributes returned by {@link #getAttributes()} are read, so it is sufficient to pass an object
+ * that contains these attributes of the resource. Compiled JSON filters are immutable and can be shared between
+ * threads.
+ * </p>
+ */
+public final class CompiledJsonFilter {
+
+    private final Filter filter;
+    private final Set<String> attributes;
+    private final FilterCompiler.Matcher matcher;
+
+    private CompiledJsonFilter(Filter filter, Class<?> type) {
+        this.filter = filter;
+        this.matcher = new FilterCompiler(type, true).compile(filter);
+        this.attributes = TopLevelAttributes.of(filter);
+    }
+
+    /**
+     * Parses and compiles the given filter expression.
+     *
+     * @param filter the filter expression
+     * @param type   the type of the resources to filter, e.g. {@link org.osiam.resources.scim.User}
+     * @return the compiled filter
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the filter is not valid or uses attributes
+     *                                                                   the given type doesn't have
+     */
+    public static CompiledJsonFilter compile(String filter, Class<?> type) {
+        return compile(Filter.parse(filter), type);
+    }
+
+    /**
+     * Compiles the given filter.
+     *
+     * @param filter the filter
+     * @param type   the type of the resources to filter, e.g. {@link org.osiam.resources.scim.User}
+     * @return the compiled filter
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the filter uses attributes the given type
+     *                                                                   doesn't have
+     */
+    public static CompiledJsonFilter compile(Filter filter, Class<?> type) {
+        return new CompiledJsonFilter(filter, type);
+    }
+
+    /**
+     * @return the filter this compiled filter evaluates
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the names of the top-level JSON attributes the filter reads in lower case. Attributes of an extension
+     * are read from the object named by the URN of the extension.
+     *
+     * @return the lower case attribute names and extension URNs
+     */
+    public Set<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Evaluates this filter for the given JSON object.
+     *
+     * @param resource the JSON object of the resource
+     * @return true if the resource matches this filter
+     */
+    public boolean matches(JsonNode resource) {
+        return matcher.matches(resource);
+    }
+
+    @Override
+    public String toString() {
+        return filter.toString();
+    }
+
+    private static final class TopLevelAttributes implements FilterVisitor<Void> {
+
+        private final ImmutableSet.Builder<String> attributes = ImmutableSet.builder();
+
+        static Set<String> of(Filter filter) {
+            TopLevelAttributes topLevelAttributes = new TopLevelAttributes();
+            filter.accept(topLevelAttributes);
+            return topLevelAttributes.attributes.build();
+        }
+
+        @Override
+        public Void visit(AttributeExpression expression) {
+            add(expression.getPath());
+            return null;
+        }
+
+        @Override
+        public Void visit(LogicalExpression expression) {
+            for (Filter operand : expression.getOperands()) {
+                operand.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(NotExpression expression) {
+            return expression.getFilter().accept(this);
+        }
+
+        @Override
+        public Void visit(ValuePathExpression expression) {
+            add(expression.getPath());
+            return null;
+        }
+
+        private void add(AttributePath path) {
+            String name = path.getUrn() != null ? path.getUrn() : path.getAttribute();
+            attributes.add(name.toLowerCase(Locale.ENGLISH));
+        }
+    }
+}
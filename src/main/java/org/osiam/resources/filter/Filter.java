@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+/**
+ * A parsed SCIM filter expression like <code>userName sw "j" and emails[type eq "work"]</code>.
+ * <p>
+ * Filters are immutable, compare by their structure and can be turned back into a filter expression with
+ * {@link #toString()}. Use {@link CompiledFilter} to evaluate a filter against resources.
+ * </p>
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.4.2.2">SCIM protocol 2.0, section 3.4.2.2</a>
+ * </p>
+ */
+public abstract class Filter {
+
+    Filter() {
+    }
+
+    /**
+     * Parses the given filter expression.
+     *
+     * @param filter the filter expression
+     * @return the parsed filter
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the given expression is not a valid filter
+     */
+    public static Filter parse(String filter) {
+        return new FilterParser(filter).parse();
+    }
+
+    /**
+     * Returns the normal form of this filter: attribute names are lower case, nested "and" and "or" expressions are
+     * flattened, their operands are sorted and duplicates removed, and double negations are removed. Filters that
+     * always match the same resources this way become equal, e.g. <code>userName eq "a" and active eq true</code> and
+     * <code>(Active eq true) and UserName eq "a"</code>.
+     *
+     * @return the normalized filter
+     */
+    public Filter normalize() {
+        return accept(new FilterNormalizer());
+    }
+
+    /**
+     * Calls the method of the given visitor that matches the type of this node.
+     *
+     * @param visitor the visitor
+     * @param <R>     the result type of the visitor
+     * @return the result of the visitor
+     */
+    public abstract <R> R accept(FilterVisitor<R> visitor);
+}
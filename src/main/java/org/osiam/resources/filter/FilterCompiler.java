@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.scim.AttributeAccessor;
+import org.osiam.resources.scim.MultiValuedAttribute;
+import org.osiam.resources.scim.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Turns a {@link Filter} into a tree of {@link Matcher}s. All attributes are resolved to their
+ * {@link AttributeAccessor} and all values are converted while compiling, so evaluating the result does neither need
+ * reflection nor any parsing.
+ * <p>
+ * A compiler for JSON evaluates the same tree against the {@link com.fasterxml.jackson.databind.JsonNode} of a
+ * resource instead, reading the attributes with a {@link JsonValueReader}.
+ * </p>
+ */
+final class FilterCompiler implements FilterVisitor<FilterCompiler.Matcher> {
+
+    private static final String VALUE = "value";
+
+    private static final Comparator<Matcher> BY_COST = new Comparator<Matcher>() {
+        @Override
+        public int compare(Matcher matcher, Matcher otherMatcher) {
+            return Integer.compare(matcher.cost(), otherMatcher.cost());
+        }
+    };
+
+    private final Class<?> type;
+    private final boolean json;
+
+    FilterCompiler(Class<?> type) {
+        this(type, false);
+    }
+
+    FilterCompiler(Class<?> type, boolean json) {
+        this.type = type;
+        this.json = json;
+    }
+
+    Matcher compile(Filter filter) {
+        return filter.accept(this);
+    }
+
+    @Override
+    public Matcher visit(AttributeExpression expression) {
+        AttributePath path = expression.getPath();
+        ComparisonOperator operator = expression.getOperator();
+        AttributeAccessor accessor = resolve(path.withoutSubAttribute());
+        AttributeAccessor subAccessor = null;
+        if (path.getSubAttribute() != null) {
+            subAccessor = resolveSubAttribute(accessor, path.getSubAttribute());
+        } else if (accessor.isMultiValued() && MultiValuedAttribute.class.isAssignableFrom(accessor.getType())
+                && operator != ComparisonOperator.PR) {
+            subAccessor = resolveSubAttribute(accessor, VALUE);
+        }
+        AttributeAccessor valueAccessor = subAccessor != null ? subAccessor : accessor;
+        Matcher matcher = new TestMatcher(createTest(expression, valueAccessor));
+        if (subAccessor != null) {
+            matcher = new AttributeMatcher(reader(null, subAccessor), subAccessor.isMultiValued(), matcher);
+        }
+        return new AttributeMatcher(reader(path.getUrn(), accessor), accessor.isMultiValued(), matcher);
+    }
+
+    @Override
+    public Matcher visit(LogicalExpression expression) {
+        List<Matcher> operands = new ArrayList<>();
+        for (Filter operand : expression.getOperands()) {
+            operands.add(operand.accept(this));
+        }
+        Collections.sort(operands, BY_COST);
+        Matcher[] matchers = operands.toArray(new Matcher[operands.size()]);
+        return expression.getOperator() == LogicalExpression.Operator.AND
+                ? new AndMatcher(matchers) : new OrMatcher(matchers);
+    }
+
+    @Override
+    public Matcher visit(NotExpression expression) {
+        return new NotMatcher(expression.getFilter().accept(this));
+    }
+
+    @Override
+    public Matcher visit(ValuePathExpression expression) {
+        AttributeAccessor accessor = resolve(expression.getPath());
+        Matcher matcher = new FilterCompiler(accessor.getType(), json).compile(expression.getFilter());
+        return new ValuePathMatcher(reader(expression.getPath().getUrn(), accessor), accessor.isMultiValued(),
+                matcher);
+    }
+
+    private ValueReader reader(String urn, AttributeAccessor accessor) {
+        if (!json) {
+            return new AccessorReader(accessor);
+        }
+        return urn != null ? JsonValueReader.forExtensionField(urn, accessor.getName())
+                : JsonValueReader.forAttribute(accessor.getName(), accessor.getType());
+    }
+
+    private AttributeAccessor resolve(AttributePath path) {
+        if (path.getUrn() != null) {
+            if (!User.class.isAssignableFrom(type)) {
+                throw new SCIMDataValidationException("The attribute '" + path + "' is not known.");
+            }
+            return AttributeAccessor.forExtensionField(path.getUrn(), path.getAttribute());
+        }
+        AttributeAccessor accessor = AttributeAccessor.forAttribute(type, path.getAttribute());
+        if (accessor == null) {
+            throw new SCIMDataValidationException("The attribute '" + path + "' is not known.");
+        }
+        return accessor;
+    }
+
+    private static AttributeAccessor resolveSubAttribute(AttributeAccessor accessor, String subAttribute) {
+        AttributeAccessor subAccessor = AttributeAccessor.forAttribute(accessor.getType(), subAttribute);
+        if (subAccessor == null) {
+            throw new SCIMDataValidationException("The attribute '" + accessor.getName() + "' has no sub-attribute '"
+                    + subAttribute + "'.");
+        }
+        return subAccessor;
+    }
+
+    private static ValueTest createTest(AttributeExpression expression, AttributeAccessor accessor) {
+        ComparisonOperator operator = expression.getOperator();
+        ValueTest test = new ValueTest(operator, expression.getValue(), accessor.isCaseExact());
+        if (operator == ComparisonOperator.PR) {
+            return test;
+        }
+        Class<?> valueType = accessor.getType();
+        if (valueType == Boolean.class && operator != ComparisonOperator.EQ && operator != ComparisonOperator.NE) {
+            throw new SCIMDataValidationException("The operator '" + operator + "' can't be used with the boolean "
+                    + "attribute in the filter '" + expression + "'.");
+        }
+        if (valueType == Date.class && (expression.getValue() != null && !test.isDateValue()
+                || operator == ComparisonOperator.CO || operator == ComparisonOperator.SW
+                || operator == ComparisonOperator.EW)) {
+            throw new SCIMDataValidationException("The filter '" + expression + "' needs a date time value and one "
+                    + "of the operators eq, ne, gt, ge, lt or le.");
+        }
+        if (valueType != String.class && valueType != Boolean.class && valueType != Date.class
+                && valueType != Object.class) {
+            throw new SCIMDataValidationException("The complex attribute in the filter '" + expression
+                    + "' can only be tested with 'pr'.");
+        }
+        return test;
+    }
+
+    /**
+     * A compiled node of a filter.
+     */
+    abstract static class Matcher {
+
+        abstract boolean matches(Object object);
+
+        /**
+         * @return a rough estimate of the evaluation cost, used to evaluate cheap operands of and/or first
+         */
+        abstract int cost();
+    }
+
+    /**
+     * Reads the value of an attribute from a resource or from a complex value.
+     */
+    abstract static class ValueReader {
+
+        /**
+         * @return the value, a {@link Collection} of values for multi-valued attributes, or null if it is not set
+         */
+        abstract Object read(Object object);
+    }
+
+    private static final class AccessorReader extends ValueReader {
+
+        private final AttributeAccessor accessor;
+
+        private AccessorReader(AttributeAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        Object read(Object object) {
+            return accessor.getValue(object);
+        }
+    }
+
+    private static final class TestMatcher extends Matcher {
+
+        private final ValueTest test;
+
+        private TestMatcher(ValueTest test) {
+            this.test = test;
+        }
+
+        @Override
+        boolean matches(Object value) {
+            return test.test(value);
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+    }
+
+    /**
+     * Reads an attribute and matches its value. A multi-valued attribute matches if one of its values matches.
+     */
+    private static final class AttributeMatcher extends Matcher {
+
+        private final ValueReader reader;
+        private final boolean multiValued;
+        private final Matcher next;
+
+        private AttributeMatcher(ValueReader reader, boolean multiValued, Matcher next) {
+            this.reader = reader;
+            this.multiValued = multiValued;
+            this.next = next;
+        }
+
+        @Override
+        boolean matches(Object object) {
+            Object value = object != null ? reader.read(object) : null;
+            if (!(value instanceof Collection)) {
+                return next.matches(value);
+            }
+            Collection<?> values = (Collection<?>) value;
+            if (values.isEmpty()) {
+                return next.matches(null);
+            }
+            for (Object element : values) {
+                if (next.matches(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int cost() {
+            return (multiValued ? 8 : 1) * next.cost();
+        }
+    }
+
+    private static final class ValuePathMatcher extends Matcher {
+
+        private final ValueReader reader;
+        private final boolean multiValued;
+        private final Matcher filter;
+
+        private ValuePathMatcher(ValueReader reader, boolean multiValued, Matcher filter) {
+            this.reader = reader;
+            this.multiValued = multiValued;
+            this.filter = filter;
+        }
+
+        @Override
+        boolean matches(Object object) {
+            Object value = object != null ? reader.read(object) : null;
+            if (!(value instanceof Collection)) {
+                return value != null && filter.matches(value);
+            }
+            for (Object element : (Collection<?>) value) {
+                if (filter.matches(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int cost() {
+            return (multiValued ? 8 : 1) * filter.cost();
+        }
+    }
+
+    private static final class AndMatcher extends Matcher {
+
+        private final Matcher[] operands;
+
+        private AndMatcher(Matcher[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean matches(Object object) {
+            for (Matcher operand : operands) {
+                if (!operand.matches(object)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int cost() {
+            return sumOfCosts(operands);
+        }
+    }
+
+    private static final class OrMatcher extends Matcher {
+
+        private final Matcher[] operands;
+
+        private OrMatcher(Matcher[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean matches(Object object) {
+            for (Matcher operand : operands) {
+                if (operand.matches(object)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int cost() {
+            return sumOfCosts(operands);
+        }
+    }
+
+    private static final class NotMatcher extends Matcher {
+
+        private final Matcher operand;
+
+        private NotMatcher(Matcher operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean matches(Object object) {
+            return !operand.matches(object);
+        }
+
+        @Override
+        int cost() {
+            return operand.cost();
+        }
+    }
+
+    private static int sumOfCosts(Matcher[] matchers) {
+        int cost = 0;
+        for (Matcher matcher : matchers) {
+            cost += matcher.cost();
+        }
+        return cost;
+    }
+}
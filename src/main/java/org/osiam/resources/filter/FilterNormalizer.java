@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Turns a filter into its normal form, so that filters that only differ in the case of attribute names, the order of
+ * the operands of "and" and "or", redundant parentheses or duplicate operands become equal. The URNs and field names of
+ * extensions keep their case, as extension fields are looked up case sensitive.
+ */
+final class FilterNormalizer implements FilterVisitor<Filter> {
+
+    private static final Comparator<String> ORDINAL = new Comparator<String>() {
+        @Override
+        public int compare(String value, String otherValue) {
+            return value.compareTo(otherValue);
+        }
+    };
+
+    @Override
+    public Filter visit(AttributeExpression expression) {
+        return new AttributeExpression(normalize(expression.getPath()), expression.getOperator(),
+                expression.getValue());
+    }
+
+    @Override
+    public Filter visit(LogicalExpression expression) {
+        List<Filter> operands = new ArrayList<>();
+        addOperands(expression, operands);
+        TreeMap<String, Filter> sortedOperands = new TreeMap<>(ORDINAL);
+        for (Filter operand : operands) {
+            Filter normalizedOperand = operand.accept(this);
+            sortedOperands.put(normalizedOperand.toString(), normalizedOperand);
+        }
+        if (sortedOperands.size() == 1) {
+            return sortedOperands.firstEntry().getValue();
+        }
+        return new LogicalExpression(expression.getOperator(),
+                Collections.unmodifiableList(new ArrayList<>(sortedOperands.values())));
+    }
+
+    private static void addOperands(LogicalExpression expression, List<Filter> operands) {
+        for (Filter operand : expression.getOperands()) {
+            if (operand instanceof LogicalExpression
+                    && ((LogicalExpression) operand).getOperator() == expression.getOperator()) {
+                addOperands((LogicalExpression) operand, operands);
+            } else {
+                operands.add(operand);
+            }
+        }
+    }
+
+    @Override
+    public Filter visit(NotExpression expression) {
+        Filter operand = expression.getFilter();
+        if (operand instanceof NotExpression) {
+            return ((NotExpression) operand).getFilter().accept(this);
+        }
+        return new NotExpression(operand.accept(this));
+    }
+
+    @Override
+    public Filter visit(ValuePathExpression expression) {
+        return new ValuePathExpression(normalize(expression.getPath()), expression.getFilter().accept(this));
+    }
+
+    private static AttributePath normalize(AttributePath path) {
+        if (path.getUrn() != null) {
+            return path;
+        }
+        return new AttributePath(toLowerCase(path.getUrn()), toLowerCase(path.getAttribute()),
+                toLowerCase(path.getSubAttribute()));
+    }
+
+    private static String toLowerCase(String name) {
+        return name != null ? name.toLowerCase(Locale.ENGLISH) : null;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recursive descent parser for SCIM filter expressions. "not" binds stronger than "and", which binds stronger than
+ * "or". Keywords and operators are case insensitive.
+ */
+class FilterParser {
+
+    private final String filter;
+    private int position;
+    private Token token;
+
+    FilterParser(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            throw new SCIMDataValidationException("The filter can't be null or empty.");
+        }
+        this.filter = filter;
+        nextToken();
+    }
+
+    Filter parse() {
+        Filter parsedFilter = parseOr();
+        if (token.type != TokenType.END) {
+            throw invalidFilter("unexpected '" + token.text + "'");
+        }
+        return parsedFilter;
+    }
+
+    private Filter parseOr() {
+        List<Filter> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (isKeyword("or")) {
+            nextToken();
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new LogicalExpression(LogicalExpression.Operator.OR, operands);
+    }
+
+    private Filter parseAnd() {
+        List<Filter> operands = new ArrayList<>();
+        operands.add(parseUnary());
+        while (isKeyword("and")) {
+            nextToken();
+            operands.add(parseUnary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new LogicalExpression(LogicalExpression.Operator.AND, operands);
+    }
+
+    private Filter parseUnary() {
+        if (isKeyword("not")) {
+            nextToken();
+            if (token.type != TokenType.OPENING_PARENTHESIS) {
+                throw invalidFilter("'not' must be followed by '('");
+            }
+            return new NotExpression(parseParentheses());
+        }
+        if (token.type == TokenType.OPENING_PARENTHESIS) {
+            return parseParentheses();
+        }
+        return parseAttributeExpression();
+    }
+
+    private Filter parseParentheses() {
+        nextToken();
+        Filter innerFilter = parseOr();
+        expect(TokenType.CLOSING_PARENTHESIS, ")");
+        return innerFilter;
+    }
+
+    private Filter parseAttributeExpression() {
+        if (token.type != TokenType.WORD) {
+            throw invalidFilter(token.type == TokenType.END ? "unexpected end" : "unexpected '" + token.text + "'");
+        }
+        AttributePath path = AttributePath.parse(token.text);
+        nextToken();
+
+        if (token.type == TokenType.OPENING_BRACKET) {
+            nextToken();
+            Filter valueFilter = parseOr();
+            expect(TokenType.CLOSING_BRACKET, "]");
+            return new ValuePathExpression(path, valueFilter);
+        }
+
+        ComparisonOperator operator = token.type == TokenType.WORD ? ComparisonOperator.fromString(token.text) : null;
+        if (operator == null) {
+            throw invalidFilter("expected an operator after '" + path + "'");
+        }
+        nextToken();
+        if (operator == ComparisonOperator.PR) {
+            return new AttributeExpression(path, operator, null);
+        }
+        Object value = parseValue();
+        nextToken();
+        return new AttributeExpression(path, operator, value);
+    }
+
+    private Object parseValue() {
+        if (token.type == TokenType.STRING) {
+            return token.text;
+        }
+        if (token.type != TokenType.WORD) {
+            throw invalidFilter("expected a value");
+        }
+        switch (token.text) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return null;
+            default:
+                try {
+                    return new BigDecimal(token.text);
+                } catch (NumberFormatException e) {
+                    throw invalidFilter("'" + token.text + "' is not a valid value", e);
+                }
+        }
+    }
+
+    private boolean isKeyword(String keyword) {
+        return token.type == TokenType.WORD && token.text.equalsIgnoreCase(keyword);
+    }
+
+    private void expect(TokenType type, String text) {
+        if (token.type != type) {
+            throw invalidFilter("expected '" + text + "'");
+        }
+        nextToken();
+    }
+
+    private void nextToken() {
+        while (position < filter.length() && Character.isWhitespace(filter.charAt(position))) {
+            position++;
+        }
+        if (position == filter.length()) {
+            token = new Token(TokenType.END, "");
+            return;
+        }
+        char c = filter.charAt(position);
+        switch (c) {
+            case '(':
+                token = new Token(TokenType.OPENING_PARENTHESIS, "(");
+                position++;
+                return;
+            case ')':
+                token = new Token(TokenType.CLOSING_PARENTHESIS, ")");
+                position++;
+                return;
+            case '[':
+                token = new Token(TokenType.OPENING_BRACKET, "[");
+                position++;
+                return;
+            case ']':
+                token = new Token(TokenType.CLOSING_BRACKET, "]");
+                position++;
+                return;
+            case '"':
+                token = new Token(TokenType.STRING, readString());
+                return;
+            default:
+                int start = position;
+                while (position < filter.length() && !isDelimiter(filter.charAt(position))) {
+                    position++;
+                }
+                token = new Token(TokenType.WORD, filter.substring(start, position));
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '[' || c == ']' || c == '"';
+    }
+
+    /**
+     * Reads a JSON string starting at the opening quote
+     */
+    private String readString() {
+        StringBuilder value = new StringBuilder();
+        for (position++; position < filter.length(); position++) {
+            char c = filter.charAt(position);
+            if (c == '"') {
+                position++;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++position == filter.length()) {
+                break;
+            }
+            char escaped = filter.charAt(position);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (position + 4 >= filter.length()) {
+                        throw invalidFilter("invalid unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(filter.substring(position + 1, position + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw invalidFilter("invalid unicode escape", e);
+                    }
+                    position += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+        throw invalidFilter("unterminated string");
+    }
+
+    private SCIMDataValidationException invalidFilter(String reason) {
+        return new SCIMDataValidationException("The filter '" + filter + "' is not valid: " + reason + ".");
+    }
+
+    private SCIMDataValidationException invalidFilter(String reason, Throwable cause) {
+        return new SCIMDataValidationException("The filter '" + filter + "' is not valid: " + reason + ".", cause);
+    }
+
+    private enum TokenType {
+        OPENING_PARENTHESIS, CLOSING_PARENTHESIS, OPENING_BRACKET, CLOSING_BRACKET, STRING, WORD, END
+    }
+
+    private static final class Token {
+        private final TokenType type;
+        private final String text;
+
+        private Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+}
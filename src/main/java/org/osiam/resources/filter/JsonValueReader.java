@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads an attribute from the JSON representation of a resource and converts it to the values an
+ * {@link org.osiam.resources.scim.AttributeAccessor} would return for the deserialized resource: booleans as
+ * {@link Boolean}, numbers as {@link java.math.BigDecimal}, date time attributes as a {@link Long} of their
+ * milliseconds since the epoch, arrays as a
+ * {@link List} and non-empty objects as their {@link JsonNode}. Attribute names are matched case insensitive.
+ */
+final class JsonValueReader extends FilterCompiler.ValueReader {
+
+    private final String urn;
+    private final String name;
+    private final boolean date;
+
+    private JsonValueReader(String urn, String name, boolean date) {
+        this.urn = urn;
+        this.name = name;
+        this.date = date;
+    }
+
+    static JsonValueReader forAttribute(String name, Class<?> type) {
+        return new JsonValueReader(null, name, type == Date.class);
+    }
+
+    static JsonValueReader forExtensionField(String urn, String name) {
+        return new JsonValueReader(urn, name, false);
+    }
+
+    @Override
+    Object read(Object object) {
+        JsonNode node = (JsonNode) object;
+        if (urn != null) {
+            node = field(node, urn);
+        }
+        return node != null ? convert(field(node, name)) : null;
+    }
+
+    /**
+     * Looks up a field of the given object, falling back to a case insensitive search.
+     *
+     * @return the value of the field or null if the node is no object or has no such field
+     */
+    static JsonNode field(JsonNode node, String fieldName) {
+        if (!node.isObject()) {
+            return null;
+        }
+        JsonNode value = node.get(fieldName);
+        if (value != null) {
+            return value;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().equalsIgnoreCase(fieldName)) {
+                return field.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Object convert(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.isArray()) {
+            List<Object> values = new ArrayList<>(node.size());
+            for (JsonNode element : node) {
+                Object value = convert(element);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return values;
+        }
+        if (node.isObject()) {
+            return hasValue(node) ? node : null;
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isNumber()) {
+            return node.decimalValue();
+        }
+        String text = node.asText();
+        if (date) {
+            Long time = ValueTest.toDate(text);
+            if (time != null) {
+                return time;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * An object without any non-null field is absent, like an empty {@link org.osiam.resources.scim.Name}.
+     */
+    private static boolean hasValue(JsonNode node) {
+        for (JsonNode value : node) {
+            if (!value.isNull() && !(value.isTextual() && value.asText().isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
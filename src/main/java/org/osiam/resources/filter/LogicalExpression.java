@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import com.google.common.collect.ImmutableList;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Two or more filters combined by "and" or "or", e.g. <code>userName sw "j" and active eq true</code>.
+ */
+public final class LogicalExpression extends Filter {
+
+    private final Operator operator;
+    private final List<Filter> operands;
+
+    /**
+     * Creates a new logical expression
+     *
+     * @param operator the operator that combines the operands
+     * @param operands the combined filters
+     * @throws SCIMDataValidationException if the operator is null or less than two operands are given
+     */
+    public LogicalExpression(Operator operator, List<Filter> operands) {
+        if (operator == null || operands == null || operands.size() < 2) {
+            throw new SCIMDataValidationException("A logical expression needs an operator and at least two operands.");
+        }
+        this.operator = operator;
+        this.operands = ImmutableList.copyOf(operands);
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public List<Filter> getOperands() {
+        return operands;
+    }
+
+    @Override
+    public <R> R accept(FilterVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LogicalExpression other = (LogicalExpression) o;
+        return operator == other.operator && operands.equals(other.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * operator.hashCode() + operands.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder filter = new StringBuilder();
+        for (Filter operand : operands) {
+            if (filter.length() > 0) {
+                filter.append(' ').append(operator).append(' ');
+            }
+            if (operand instanceof LogicalExpression) {
+                filter.append('(').append(operand).append(')');
+            } else {
+                filter.append(operand);
+            }
+        }
+        return filter.toString();
+    }
+
+    /**
+     * The operators of a {@link LogicalExpression}
+     */
+    public enum Operator {
+        AND, OR;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+}
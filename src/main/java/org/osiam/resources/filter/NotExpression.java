@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+/**
+ * The negation of a filter, e.g. <code>not (userName sw "j")</code>.
+ */
+public final class NotExpression extends Filter {
+
+    private final Filter filter;
+
+    /**
+     * Creates a new negation
+     *
+     * @param filter the negated filter
+     * @throws SCIMDataValidationException if the given filter is null
+     */
+    public NotExpression(Filter filter) {
+        if (filter == null) {
+            throw new SCIMDataValidationException("The negated filter can't be null.");
+        }
+        this.filter = filter;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public <R> R accept(FilterVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o != null && getClass() == o.getClass() && filter.equals(((NotExpression) o).filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return ~filter.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "not (" + filter + ")";
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+/**
+ * A filter on the values of a multi-valued attribute, e.g.
+ * <code>emails[type eq "work" and value co "@example.com"]</code>.
+ * It matches if at least one value of the attribute matches the value filter.
+ */
+public final class ValuePathExpression extends Filter {
+
+    private final AttributePath path;
+    private final Filter filter;
+
+    /**
+     * Creates a new value path expression
+     *
+     * @param path   the path of the multi-valued attribute
+     * @param filter the filter the values are matched against
+     * @throws SCIMDataValidationException if the path or the filter is null or the path has a sub-attribute
+     */
+    public ValuePathExpression(AttributePath path, Filter filter) {
+        if (path == null || filter == null) {
+            throw new SCIMDataValidationException("The path and the filter of a value path can't be null.");
+        }
+        if (path.getSubAttribute() != null) {
+            throw new SCIMDataValidationException("The path '" + path
+                    + "' of a value path can't have a sub-attribute.");
+        }
+        this.path = path;
+        this.filter = filter;
+    }
+
+    public AttributePath getPath() {
+        return path;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public <R> R accept(FilterVisitor<R> visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ValuePathExpression other = (ValuePathExpression) o;
+        return path.equals(other.path) && filter.equals(other.filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * path.hashCode() + filter.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path + "[" + filter + "]";
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.filter;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.osiam.resources.scim.Name;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The comparison of a single attribute value with the value of an {@link AttributeExpression}. All representations
+ * of the compared value are computed once, so a test doesn't parse or convert anything while it is evaluated.
+ * <p>
+ * Strings are compared case insensitive unless the attribute is case exact, dates are compared by their time and
+ * numbers by their value. Values that can't be compared with the given value don't match, except for "ne".
+ * </p>
+ */
+final class ValueTest {
+
+    private static final DateTimeFormatter DATE_TIME_PARSER = ISODateTimeFormat.dateTimeParser().withOffsetParsed();
+
+    private final ComparisonOperator operator;
+    private final boolean caseExact;
+    private final Object value;
+    private final String stringValue;
+    private final Boolean booleanValue;
+    private final BigDecimal numberValue;
+    private final Long dateValue;
+
+    ValueTest(ComparisonOperator operator, Object value, boolean caseExact) {
+        this.operator = operator;
+        this.caseExact = caseExact;
+        this.value = value;
+        this.stringValue = value != null ? value.toString() : null;
+        this.booleanValue = value instanceof Boolean ? (Boolean) value : null;
+        this.numberValue = toNumber(value);
+        this.dateValue = toDate(value);
+    }
+
+    private static BigDecimal toNumber(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof String) {
+            try {
+                return new BigDecimal((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static Long toDate(Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        try {
+            return DATE_TIME_PARSER.parseMillis((String) value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    ComparisonOperator getOperator() {
+        return operator;
+    }
+
+    boolean isDateValue() {
+        return dateValue != null;
+    }
+
+    boolean test(Object attributeValue) {
+        if (operator == ComparisonOperator.PR) {
+            return attributeValue != null && !isEmpty(attributeValue);
+        }
+        if (attributeValue == null || value == null) {
+            boolean bothNull = attributeValue == null && value == null;
+            return operator == ComparisonOperator.EQ ? bothNull : operator == ComparisonOperator.NE && !bothNull;
+        }
+        if (attributeValue instanceof String) {
+            return testString((String) attributeValue);
+        }
+        if (attributeValue instanceof Boolean) {
+            return testEquality(booleanValue != null && booleanValue.equals(attributeValue));
+        }
+        if (attributeValue instanceof Long) {
+            // the milliseconds of a date time attribute, see AttributeAccessor
+            return dateValue != null ? testOrder(Long.compare((Long) attributeValue, dateValue))
+                    : operator == ComparisonOperator.NE;
+        }
+        if (attributeValue instanceof Date) {
+            return dateValue != null ? testOrder(Long.compare(((Date) attributeValue).getTime(), dateValue))
+                    : operator == ComparisonOperator.NE;
+        }
+        if (attributeValue instanceof Number) {
+            if (numberValue == null) {
+                return operator == ComparisonOperator.NE;
+            }
+            BigDecimal number = attributeValue instanceof BigDecimal
+                    ? (BigDecimal) attributeValue : new BigDecimal(attributeValue.toString());
+            return testOrder(number.compareTo(numberValue));
+        }
+        return testString(attributeValue.toString());
+    }
+
+    private static boolean isEmpty(Object attributeValue) {
+        if (attributeValue instanceof String) {
+            return ((String) attributeValue).isEmpty();
+        }
+        if (attributeValue instanceof Collection) {
+            return ((Collection<?>) attributeValue).isEmpty();
+        }
+        return attributeValue instanceof Name && ((Name) attributeValue).isEmpty();
+    }
+
+    private boolean testString(String attributeValue) {
+        switch (operator) {
+            case EQ:
+            case NE:
+                return testEquality(caseExact
+                        ? attributeValue.equals(stringValue) : attributeValue.equalsIgnoreCase(stringValue));
+            case CO:
+                return contains(attributeValue);
+            case SW:
+                return attributeValue.regionMatches(!caseExact, 0, stringValue, 0, stringValue.length());
+            case EW:
+                return attributeValue.regionMatches(!caseExact, attributeValue.length() - stringValue.length(),
+                        stringValue, 0, stringValue.length());
+            default:
+                return testOrder(caseExact
+                        ? attributeValue.compareTo(stringValue) : attributeValue.compareToIgnoreCase(stringValue));
+        }
+    }
+
+    private boolean contains(String attributeValue) {
+        int lastStart = attributeValue.length() - stringValue.length();
+        for (int start = 0; start <= lastStart; start++) {
+            if (attributeValue.regionMatches(!caseExact, start, stringValue, 0, stringValue.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean testEquality(boolean equal) {
+        switch (operator) {
+            case EQ:
+                return equal;
+            case NE:
+                return !equal;
+            default:
+                return false;
+        }
+    }
+
+    private boolean testOrder(int comparison) {
+        switch (operator) {
+            case EQ:
+                return comparison == 0;
+            case NE:
+                return comparison != 0;
+            case GT:
+                return comparison > 0;
+            case GE:
+                return comparison >= 0;
+            case LT:
+                return comparison < 0;
+            case LE:
+                return comparison <= 0;
+            default:
+                return false;
+        }
+    }
+}
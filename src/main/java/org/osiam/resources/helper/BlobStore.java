@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.osiam.resources.data.ImageDataURI;
+import org.osiam.resources.data.PhotoValueType;
+import org.osiam.resources.scim.Photo;
+import org.osiam.resources.scim.User;
+import org.osiam.resources.scim.X509Certificate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A content-addressed store for large attribute values in a local directory. A value is stored in a file named by the
+ * SHA-256 hash of its content and replaced by a compact reference of the form <code>blob:sha256:&lt;hash&gt;</code>,
+ * so identical values, e.g. a default avatar, are stored only once, no matter how many users share them.
+ * <p>
+ * {@link #dehydrate(User)} moves the {@link ImageDataURI} values of the photos and the values of the X.509
+ * certificates of a user into the store, {@link #rehydrate(User)} restores them:
+ * </p>
+ * <pre>
+ * BlobStore store = new BlobStore.Builder(Paths.get("/var/lib/osiam/blobs")).build();
+ * User compactUser = store.dehydrate(user);
+ * ...
+ * User fullUser = store.rehydrate(compactUser);
+ * </pre>
+ * <p>
+ * A reference is a valid URI, so a dehydrated photo has the value type {@link PhotoValueType#URI}. Files are written
+ * to a temporary file and moved into place, so concurrent stores of the same value, even from several processes, are
+ * safe. Instances are immutable and thread-safe.
+ * </p>
+ */
+public final class BlobStore {
+
+    /**
+     * The prefix of a reference to a stored value
+     */
+    public static final String REFERENCE_PREFIX = "blob:sha256:";
+
+    private static final Pattern REFERENCE = Pattern.compile("blob:sha256:[0-9a-f]{64}");
+
+    private final Path directory;
+    private final int minSize;
+
+    private BlobStore(Builder builder) {
+        this.directory = builder.directory;
+        this.minSize = builder.minSize;
+    }
+
+    /**
+     * @param value a value, may be null
+     * @return true if the given value is a reference to a stored value
+     */
+    public static boolean isReference(String value) {
+        return value != null && REFERENCE.matcher(value).matches();
+    }
+
+    /**
+     * Stores the given value, unless a value with the same content is stored already.
+     *
+     * @param value the value
+     * @return the reference to the value
+     * @throws IOException if the value can't be written
+     */
+    public String put(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        String hash = Hashing.sha256().hashBytes(bytes).toString();
+        Path file = file(hash);
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            Path temporaryFile = Files.createTempFile(file.getParent(), hash, ".tmp");
+            try {
+                Files.write(temporaryFile, bytes);
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // stored concurrently with the same content
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+        return REFERENCE_PREFIX + hash;
+    }
+
+    /**
+     * Reads a stored value.
+     *
+     * @param reference the reference returned by {@link #put(String)}
+     * @return the value
+     * @throws IllegalArgumentException if the given string is no reference
+     * @throws IOException              if the value can't be read, e.g. as it is not stored
+     */
+    public String get(String reference) throws IOException {
+        if (!isReference(reference)) {
+            throw new IllegalArgumentException("'" + reference + "' is no reference to a stored value");
+        }
+        return new String(Files.readAllBytes(file(reference.substring(REFERENCE_PREFIX.length()))), Charsets.UTF_8);
+    }
+
+    /**
+     * Moves the {@link ImageDataURI} values of the photos and the values of the X.509 certificates of the given user
+     * that are at least as long as the configured minimum size into the store.
+     *
+     * @param user the user
+     * @return the user with references instead of the values, or the given user if no value was stored
+     * @throws IOException if a value can't be written
+     */
+    public User dehydrate(User user) throws IOException {
+        boolean changed = false;
+        List<Photo> photos = new ArrayList<>();
+        for (Photo photo : user.getPhotos()) {
+            if (photo.getValueType() == PhotoValueType.IMAGE_DATA_URI) {
+                String value = photo.getValueAsImageDataURI().toString();
+                if (value.length() >= minSize) {
+                    photo = new Photo.Builder(photo).setValue(URI.create(put(value))).build();
+                    changed = true;
+                }
+            }
+            photos.add(photo);
+        }
+        List<X509Certificate> certificates = new ArrayList<>();
+        for (X509Certificate certificate : user.getX509Certificates()) {
+            if (certificate.getValue() != null && certificate.getValue().length() >= minSize
+                    && !isReference(certificate.getValue())) {
+                certificate = new X509Certificate.Builder(certificate).setValue(put(certificate.getValue())).build();
+                changed = true;
+            }
+            certificates.add(certificate);
+        }
+        return changed ? replace(user, photos, certificates) : user;
+    }
+
+    /**
+     * Replaces the references in the photos and X.509 certificates of the given user by the stored values.
+     *
+     * @param user the user
+     * @return the user with the stored values, or the given user if it contains no reference
+     * @throws IOException if a value can't be read
+     */
+    public User rehydrate(User user) throws IOException {
+        boolean changed = false;
+        List<Photo> photos = new ArrayList<>();
+        for (Photo photo : user.getPhotos()) {
+            if (photo.getValueType() == PhotoValueType.URI) {
+                String value = photo.getValueAsURI().toString();
+                if (isReference(value)) {
+                    photo = new Photo.Builder(photo).setValue(new ImageDataURI(get(value))).build();
+                    changed = true;
+                }
+            }
+            photos.add(photo);
+        }
+        List<X509Certificate> certificates = new ArrayList<>();
+        for (X509Certificate certificate : user.getX509Certificates()) {
+            if (isReference(certificate.getValue())) {
+                certificate = new X509Certificate.Builder(certificate).setValue(get(certificate.getValue())).build();
+                changed = true;
+            }
+            certificates.add(certificate);
+        }
+        return changed ? replace(user, photos, certificates) : user;
+    }
+
+    private static User replace(User user, List<Photo> photos, List<X509Certificate> certificates) {
+        return new User.Builder(user)
+                .removePhotos()
+                .addPhotos(photos)
+                .removeX509Certificates()
+                .addX509Certificates(certificates)
+                .build();
+    }
+
+    private Path file(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * The Builder class is used to construct instances of the {@link BlobStore}
+     */
+    public static class Builder {
+        private final Path directory;
+        private int minSize = 1024;
+
+        /**
+         * @param directory the directory the values are stored in, it is created if it doesn't exist
+         */
+        public Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the minimum length of a value that {@link #dehydrate(User)} moves into the store, 1024 characters by
+         * default
+         *
+         * @param minSize the minimum number of characters
+         * @return the builder itself
+         */
+        public Builder setMinSize(int minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        /**
+         * Builds a BlobStore with the given parameters
+         *
+         * @return a new BlobStore
+         * @throws IllegalArgumentException if the directory is null or the minimum size is negative
+         */
+        public BlobStore build() {
+            if (directory == null) {
+                throw new IllegalArgumentException("The directory can't be null");
+            }
+            if (minSize < 0) {
+                throw new IllegalArgumentException("The minimum size can't be negative");
+            }
+            return new BlobStore(this);
+        }
+    }
+}
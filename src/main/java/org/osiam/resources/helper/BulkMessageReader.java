@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.helper;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import org.osiam.resources.scim.BulkOperation;
+import org.osiam.resources.scim.BulkRequest;
+import org.osiam.resources.scim.BulkResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads a {@link BulkRequest} or a {@link BulkResponse} operation by operation, so only one operation is held in
+ * memory at a time.
+ * <p>
+ * The attributes of the message that precede the <code>Operations</code> array are read when the reader is created.
+ * Attributes that follow the array are only available after all operations have been read.
+ * </p>
+ * <p>
+ * As the stream is read lazily, {@link #hasNext()} and {@link #next()} wrap an {@link IOException} into an
+ * {@link IllegalStateException}.
+ * </p>
+ */
+public final class BulkMessageReader implements Iterator<BulkOperation>, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String OPERATIONS = "Operations";
+
+    private final JsonParser parser;
+    private Set<String> schemas = ImmutableSet.of();
+    private Integer failOnErrors;
+    private boolean inOperations;
+    private BulkOperation nextOperation;
+
+    /**
+     * Creates a reader for the bulk message in the given stream
+     *
+     * @param inputStream the stream that contains a {@link BulkRequest} or a {@link BulkResponse}
+     * @throws IOException if the stream can't be read or doesn't contain a JSON object
+     */
+    public BulkMessageReader(InputStream inputStream) throws IOException {
+        parser = MAPPER.getFactory().createParser(inputStream);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonMappingException("A bulk message must be a JSON object", parser.getCurrentLocation());
+        }
+        readAttributes();
+    }
+
+    /**
+     * Reads the attributes of the message up to the start of the operations or the end of the message
+     */
+    private void readAttributes() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (OPERATIONS.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                inOperations = true;
+                return;
+            } else if ("schemas".equals(fieldName)) {
+                schemas = ImmutableSet.copyOf(parser.<Set<String>>readValueAs(new TypeReference<Set<String>>() {
+                }));
+            } else if ("failOnErrors".equals(fieldName) && value != JsonToken.VALUE_NULL) {
+                failOnErrors = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Gets the schemas of the message
+     *
+     * @return the schemas or an empty set if they haven't been read yet
+     */
+    public Set<String> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Gets the failOnErrors attribute of a {@link BulkRequest}
+     *
+     * @return the number of errors or null if none is given or it hasn't been read yet
+     */
+    public Integer getFailOnErrors() {
+        return failOnErrors;
+    }
+
+    /**
+     * Checks if the message is a {@link BulkRequest}
+     *
+     * @return true if the schemas of the message contain {@link BulkRequest#SCHEMA}
+     */
+    public boolean isRequest() {
+        return schemas.contains(BulkRequest.SCHEMA);
+    }
+
+    /**
+     * Checks if the message is a {@link BulkResponse}
+     *
+     * @return true if the schemas of the message contain {@link BulkResponse#SCHEMA}
+     */
+    public boolean isResponse() {
+        return schemas.contains(BulkResponse.SCHEMA);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextOperation != null) {
+            return true;
+        }
+        if (!inOperations) {
+            return false;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                inOperations = false;
+                readAttributes();
+                return hasNext();
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonMappingException("A bulk operation must be a JSON object", parser.getCurrentLocation());
+            }
+            nextOperation = MAPPER.readValue(parser, BulkOperation.class);
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("The bulk message can't be read: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public BulkOperation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BulkOperation operation = nextOperation;
+        nextOperation = null;
+        return operation;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
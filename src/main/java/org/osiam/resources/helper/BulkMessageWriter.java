@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.helper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.osiam.resources.scim.BulkOperation;
+import org.osiam.resources.scim.BulkRequest;
+import org.osiam.resources.scim.BulkResponse;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link BulkRequest} or a {@link BulkResponse} operation by operation, so the operations don't have to be
+ * held in memory until the whole message is written.
+ * <p>
+ * The envelope of the message is written when the writer is created, every call of {@link #write(BulkOperation)}
+ * appends one operation to the <code>Operations</code> array and {@link #close()} completes the message and closes the
+ * given stream.
+ * </p>
+ */
+public final class BulkMessageWriter implements Closeable, Flushable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, false);
+
+    private final JsonGenerator generator;
+    private boolean closed;
+
+    private BulkMessageWriter(OutputStream outputStream, String schema, Integer failOnErrors) throws IOException {
+        generator = MAPPER.getFactory().createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("schemas");
+        generator.writeString(schema);
+        generator.writeEndArray();
+        if (failOnErrors != null) {
+            generator.writeNumberField("failOnErrors", failOnErrors);
+        }
+        generator.writeArrayFieldStart("Operations");
+    }
+
+    /**
+     * Creates a writer for a {@link BulkRequest}
+     *
+     * @param outputStream the stream to write the request to
+     * @param failOnErrors the number of errors after which the service provider stops processing the operations or
+     *                     null if all operations should be processed
+     * @return a new writer
+     * @throws IOException if the stream can't be written
+     */
+    public static BulkMessageWriter forRequest(OutputStream outputStream, Integer failOnErrors) throws IOException {
+        return new BulkMessageWriter(outputStream, BulkRequest.SCHEMA, failOnErrors);
+    }
+
+    /**
+     * Creates a writer for a {@link BulkResponse}
+     *
+     * @param outputStream the stream to write the response to
+     * @return a new writer
+     * @throws IOException if the stream can't be written
+     */
+    public static BulkMessageWriter forResponse(OutputStream outputStream) throws IOException {
+        return new BulkMessageWriter(outputStream, BulkResponse.SCHEMA, null);
+    }
+
+    /**
+     * Appends the given operation to the message
+     *
+     * @param operation the operation to write
+     * @throws IOException           if the stream can't be written
+     * @throws IllegalStateException if the writer is already closed
+     */
+    public void write(BulkOperation operation) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The bulk message has already been completed.");
+        }
+        MAPPER.writeValue(generator, operation);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Completes the message and closes the underlying stream
+     *
+     * @throws IOException if the stream can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Configures an {@link ObjectMapper} to write canonical JSON, i.e. identical resources are always written as
+ * identical bytes. This makes the output usable for HTTP caches, deduplication of responses and content hashing.
+ * <pre>
+ * ObjectMapper mapper = CanonicalJson.configure(new ObjectMapper());
+ * byte[] json = mapper.writeValueAsBytes(user);
+ * </pre>
+ * <p>
+ * Without it, sets like the schemas of a resource, the members of a group or the attributes of the meta data are
+ * written in the order of their hash set, which may differ between two equal resources. In canonical mode
+ * <ul>
+ * <li>the values of a {@link Set} are written ordered by their JSON representation,</li>
+ * <li>the entries of a {@link java.util.Map} and the fields of an {@link org.osiam.resources.scim.Extension} are
+ * written ordered by their keys, see {@link SerializationFeature#ORDER_MAP_ENTRIES_BY_KEYS}.</li>
+ * </ul>
+ * The extensions of a user are always written ordered by their URN.
+ * </p>
+ */
+public final class CanonicalJson {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private CanonicalJson() {
+    }
+
+    /**
+     * Enables the canonical mode on the given mapper.
+     *
+     * @param mapper the mapper
+     * @return the given mapper
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        return mapper.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                .registerModule(new SimpleModule("CanonicalJsonModule", Version.unknownVersion())
+                        .setSerializerModifier(new SetSerializerModifier()));
+    }
+
+    private static final class SetSerializerModifier extends BeanSerializerModifier {
+
+        @Override
+        public JsonSerializer<?> modifyCollectionSerializer(SerializationConfig config, CollectionType valueType,
+                                                            BeanDescription beanDesc, JsonSerializer<?> serializer) {
+            return Set.class.isAssignableFrom(valueType.getRawClass()) ? new SortedSetSerializer() : serializer;
+        }
+    }
+
+    /**
+     * Writes the values of a set ordered by their JSON representation. Each value is serialized into a buffer first,
+     * which gives the sort key and is then copied to the output.
+     */
+    private static final class SortedSetSerializer extends JsonSerializer<Set<?>> {
+
+        @Override
+        public void serialize(Set<?> value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            List<SerializedValue> values = new ArrayList<>(value.size());
+            for (Object element : value) {
+                TokenBuffer buffer = new TokenBuffer(gen.getCodec(), false);
+                provider.defaultSerializeValue(element, buffer);
+                StringWriter json = new StringWriter();
+                try (JsonGenerator jsonGenerator = JSON_FACTORY.createGenerator(json)) {
+                    buffer.serialize(jsonGenerator);
+                }
+                values.add(new SerializedValue(json.toString(), buffer));
+            }
+            Collections.sort(values);
+            gen.writeStartArray();
+            for (SerializedValue serializedValue : values) {
+                serializedValue.buffer.serialize(gen);
+            }
+            gen.writeEndArray();
+        }
+
+        @Override
+        public boolean isEmpty(Set<?> value) {
+            return value == null || value.isEmpty();
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Set<?> value) {
+            return isEmpty(value);
+        }
+    }
+
+    private static final class SerializedValue implements Comparable<SerializedValue> {
+
+        private final String json;
+        private final TokenBuffer buffer;
+
+        private SerializedValue(String json, TokenBuffer buffer) {
+            this.json = json;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int compareTo(SerializedValue other) {
+            return json.compareTo(other.json);
+        }
+    }
+}
@@ -25,6 +25,7 @@ package org.osiam.resources.helper;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import org.osiam.resources.scim.Extension;
 import org.osiam.resources.scim.Extension.Field;
@@ -35,6 +36,7 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 public class ExtensionSerializer extends JsonSerializer<Extension> {
 
@@ -44,6 +46,9 @@ public class ExtensionSerializer extends JsonSerializer<Extension> {
         jgen.writeStartObject();
 
         Map<String, Field> fields = value.getFields();
+        if (provider.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)) {
+            fields = new TreeMap<>(fields);
+        }
         for (Entry<String, Field> entry : fields.entrySet()) {
             String fieldName = entry.getKey();
             ExtensionFieldType<?> fieldType = entry.getValue().getType();
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.osiam.resources.filter.CompiledJsonFilter;
+import org.osiam.resources.scim.SCIMSearchResult;
+import org.osiam.resources.scim.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reads the {@link User}s that match a filter from a {@link SCIMSearchResult} or from a stream of JSON objects that
+ * are separated by whitespace, e.g. one user per line. Only one user is held in memory at a time.
+ * <p>
+ * The filter is evaluated on the JSON tokens of each resource before it is deserialized. The tokens are buffered
+ * until all attributes the filter reads have been seen; a resource that doesn't match is skipped without buffering
+ * its remaining attributes and without creating a {@link User}. Matching resources are deserialized by the
+ * {@link UserDeserializer}, so extensions are supported.
+ * </p>
+ * <pre>
+ * CompiledJsonFilter filter = CompiledJsonFilter.compile("active eq true and emails co \"@example.org\"", User.class);
+ * try (FilteredUserReader reader = FilteredUserReader.forListResponse(inputStream, filter)) {
+ *     while (reader.hasNext()) {
+ *         User user = reader.next();
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * As the stream is read lazily, {@link #hasNext()} and {@link #next()} wrap an {@link IOException} into an
+ * {@link IllegalStateException}.
+ * </p>
+ */
+public final class FilteredUserReader implements Iterator<User>, Closeable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule("FilteredUserReaderModule", Version.unknownVersion())
+                    .addDeserializer(User.class, new UserDeserializer()));
+    private static final String RESOURCES = "Resources";
+
+    private final JsonParser parser;
+    private final CompiledJsonFilter filter;
+    private final boolean listResponse;
+    private boolean inResources;
+    private Long totalResults;
+    private long skippedResources;
+    private User nextUser;
+
+    private FilteredUserReader(InputStream inputStream, CompiledJsonFilter filter, boolean listResponse)
+            throws IOException {
+        if (filter == null) {
+            throw new IllegalArgumentException("The filter can't be null");
+        }
+        this.parser = MAPPER.getFactory().createParser(inputStream);
+        this.filter = filter;
+        this.listResponse = listResponse;
+    }
+
+    /**
+     * Creates a reader for the resources of the list response in the given stream. The attributes of the list
+     * response that precede the <code>Resources</code> array are read when the reader is created.
+     *
+     * @param inputStream the stream that contains a {@link SCIMSearchResult} of users
+     * @param filter      the filter the returned users match
+     * @return the reader
+     * @throws IOException if the stream can't be read or doesn't contain a JSON object
+     */
+    public static FilteredUserReader forListResponse(InputStream inputStream, CompiledJsonFilter filter)
+            throws IOException {
+        FilteredUserReader reader = new FilteredUserReader(inputStream, filter, true);
+        if (reader.parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonMappingException("A list response must be a JSON object",
+                    reader.parser.getCurrentLocation());
+        }
+        reader.readAttributes();
+        return reader;
+    }
+
+    /**
+     * Creates a reader for a stream of user JSON objects that are separated by whitespace, e.g. newline delimited
+     * JSON.
+     *
+     * @param inputStream the stream that contains the users
+     * @param filter      the filter the returned users match
+     * @return the reader
+     * @throws IOException if the stream can't be read
+     */
+    public static FilteredUserReader forJsonStream(InputStream inputStream, CompiledJsonFilter filter)
+            throws IOException {
+        return new FilteredUserReader(inputStream, filter, false);
+    }
+
+    /**
+     * Reads the attributes of the list response up to the start of the resources or the end of the response
+     */
+    private void readAttributes() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (RESOURCES.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                inResources = true;
+                return;
+            } else if ("totalResults".equals(fieldName) && value.isNumeric()) {
+                totalResults = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Gets the totalResults attribute of a list response
+     *
+     * @return the total number of results or null if none is given or it hasn't been read yet
+     */
+    public Long getTotalResults() {
+        return totalResults;
+    }
+
+    /**
+     * Gets the number of resources that have been skipped because they don't match the filter
+     *
+     * @return the number of skipped resources so far
+     */
+    public long getSkippedResources() {
+        return skippedResources;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (nextUser == null) {
+                if (listResponse && !inResources) {
+                    return false;
+                }
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    return false;
+                }
+                if (listResponse && token == JsonToken.END_ARRAY) {
+                    inResources = false;
+                    readAttributes();
+                    return false;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonMappingException("A resource must be a JSON object", parser.getCurrentLocation());
+                }
+                nextUser = readMatchingUser();
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("The users can't be read: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the resource that starts at the current token.
+     *
+     * @return the user or null if the resource doesn't match the filter
+     */
+    private User readMatchingUser() throws IOException {
+        Set<String> filterAttributes = filter.getAttributes();
+        Set<String> missingAttributes = new HashSet<>(filterAttributes);
+        ObjectNode attributes = MAPPER.createObjectNode();
+        TokenBuffer buffer = new TokenBuffer(MAPPER, false);
+        buffer.writeStartObject();
+        Boolean matches = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (matches == Boolean.FALSE) {
+                parser.skipChildren();
+                continue;
+            }
+            buffer.writeFieldName(fieldName);
+            String attribute = fieldName.toLowerCase(Locale.ENGLISH);
+            if (!filterAttributes.contains(attribute)) {
+                buffer.copyCurrentStructure(parser);
+                continue;
+            }
+            JsonNode value = parser.readValueAsTree();
+            attributes.set(fieldName, value);
+            buffer.writeTree(value);
+            missingAttributes.remove(attribute);
+            if (missingAttributes.isEmpty()) {
+                matches = filter.matches(attributes);
+            }
+        }
+        if (matches == null) {
+            matches = filter.matches(attributes);
+        }
+        if (!matches) {
+            skippedResources++;
+            return null;
+        }
+        buffer.writeEndObject();
+        try (JsonParser bufferParser = buffer.asParser()) {
+            return MAPPER.readValue(bufferParser, User.class);
+        }
+    }
+
+    @Override
+    public User next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        User user = nextUser;
+        nextUser = null;
+        return user;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.osiam.resources.data.ImageDataURI;
+import org.osiam.resources.data.PhotoValueType;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.scim.Photo;
+import org.osiam.resources.scim.User;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Derives {@link Photo.Type#THUMBNAIL thumbnails} from the photos of users that are stored as {@link ImageDataURI},
+ * so a response can carry small thumbnails instead of the full images. Images are decoded and encoded with the JDK's
+ * {@link ImageIO}; thumbnails are PNG images that fit into a square of the configured size.
+ * <pre>
+ * ThumbnailGenerator generator = new ThumbnailGenerator.Builder().setSize(64).build();
+ * List&lt;User&gt; usersWithThumbnails = generator.withThumbnails(users);
+ * </pre>
+ * <p>
+ * A list of users is processed in parallel, on the configured {@link ExecutorService} or on a pool that lives as long
+ * as one call of {@link #withThumbnails(List)}. Instances are immutable and thread-safe.
+ * </p>
+ */
+public final class ThumbnailGenerator {
+
+    private static final String FORMAT = "png";
+
+    private final int size;
+    private final boolean keepPhotos;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    private ThumbnailGenerator(Builder builder) {
+        this.size = builder.size;
+        this.keepPhotos = builder.keepPhotos;
+        this.executor = builder.executor;
+        this.parallelism = builder.parallelism;
+    }
+
+    /**
+     * Scales the given image down to fit into a square of the configured size. An image that already fits is
+     * returned as it is.
+     *
+     * @param image the image
+     * @return the thumbnail as PNG image
+     * @throws IOException                 if the image can't be decoded or encoded
+     * @throws SCIMDataValidationException if the image format is not supported by {@link ImageIO}
+     */
+    public ImageDataURI createThumbnail(ImageDataURI image) throws IOException {
+        BufferedImage source;
+        try (InputStream inputStream = image.getAsInputStream()) {
+            source = ImageIO.read(inputStream);
+        }
+        if (source == null) {
+            throw new SCIMDataValidationException("The image of type '" + image.getMimeType()
+                    + "' can't be decoded.");
+        }
+        if (source.getWidth() <= size && source.getHeight() <= size) {
+            return image;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(scale(source), FORMAT, output);
+        return new ImageDataURI(new ByteArrayInputStream(output.toByteArray()));
+    }
+
+    /**
+     * Creates the thumbnail of the given photo, which keeps the display name and primary flag of the photo.
+     *
+     * @param photo a photo whose value is an {@link ImageDataURI}
+     * @return the thumbnail
+     * @throws IOException                 if the image can't be decoded or encoded
+     * @throws SCIMDataValidationException if the value of the photo is no image data URI or its format is not
+     *                                     supported by {@link ImageIO}
+     */
+    public Photo createThumbnail(Photo photo) throws IOException {
+        if (photo.getValueType() != PhotoValueType.IMAGE_DATA_URI) {
+            throw new SCIMDataValidationException("The value of the photo is no image data URI.");
+        }
+        return new Photo.Builder()
+                .setValue(createThumbnail(photo.getValueAsImageDataURI()))
+                .setType(Photo.Type.THUMBNAIL)
+                .setDisplay(photo.getDisplay())
+                .setPrimary(photo.isPrimary())
+                .build();
+    }
+
+    /**
+     * Adds a thumbnail for each photo of the user that is an {@link ImageDataURI} and no thumbnail itself. Unless
+     * configured otherwise, these photos are removed. Photos that reference an image by URL and photos whose image
+     * can't be decoded are kept as they are.
+     *
+     * @param user the user
+     * @return the user with thumbnails, or the given user if it has no photo to derive a thumbnail from
+     */
+    public User withThumbnails(User user) {
+        List<Photo> photos = user.getPhotos();
+        List<Photo> result = new ArrayList<>(photos.size());
+        boolean changed = false;
+        for (Photo photo : photos) {
+            Photo thumbnail = null;
+            if (photo.getValueType() == PhotoValueType.IMAGE_DATA_URI
+                    && !Photo.Type.THUMBNAIL.equals(photo.getType())) {
+                thumbnail = tryCreateThumbnail(photo);
+            }
+            if (thumbnail == null || keepPhotos) {
+                result.add(photo);
+            }
+            if (thumbnail != null) {
+                result.add(thumbnail);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return user;
+        }
+        return new User.Builder(user).removePhotos().addPhotos(result).build();
+    }
+
+    /**
+     * Processes the given users like {@link #withThumbnails(User)}, in parallel.
+     *
+     * @param users the users
+     * @return the users with thumbnails, in the same order
+     * @throws IllegalStateException if the current thread is interrupted while waiting for the thumbnails
+     */
+    public List<User> withThumbnails(List<User> users) {
+        if (users.size() < 2) {
+            List<User> result = new ArrayList<>(users.size());
+            for (User user : users) {
+                result.add(withThumbnails(user));
+            }
+            return result;
+        }
+        ExecutorService batchExecutor = executor != null ? executor : Executors.newFixedThreadPool(
+                Math.min(parallelism, users.size()),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("scim-thumbnail-%d").build());
+        try {
+            List<Callable<User>> tasks = new ArrayList<>(users.size());
+            for (final User user : users) {
+                tasks.add(new Callable<User>() {
+                    @Override
+                    public User call() {
+                        return withThumbnails(user);
+                    }
+                });
+            }
+            List<User> result = new ArrayList<>(users.size());
+            for (Future<User> future : batchExecutor.invokeAll(tasks)) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating thumbnails", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (executor == null) {
+                batchExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private Photo tryCreateThumbnail(Photo photo) {
+        try {
+            return createThumbnail(photo);
+        } catch (IOException | SCIMDataValidationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scales the image down in steps that at most halve its size, as a single bilinear step would skip most pixels of
+     * a large image.
+     */
+    private BufferedImage scale(BufferedImage source) {
+        double factor = Math.min((double) size / source.getWidth(), (double) size / source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        BufferedImage image = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            image = scaled;
+        } while (width != targetWidth || height != targetHeight);
+        return image;
+    }
+
+    /**
+     * The Builder class is used to construct instances of the {@link ThumbnailGenerator}
+     */
+    public static class Builder {
+        private int size = 64;
+        private boolean keepPhotos;
+        private ExecutorService executor;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Sets the maximum width and height of a thumbnail, 64 by default
+         *
+         * @param size the maximum width and height in pixels
+         * @return the builder itself
+         */
+        public Builder setSize(int size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Sets whether {@link #withThumbnails(User)} keeps the photos a thumbnail was derived from, false by default
+         *
+         * @param keepPhotos true to keep the photos
+         * @return the builder itself
+         */
+        public Builder setKeepPhotos(boolean keepPhotos) {
+            this.keepPhotos = keepPhotos;
+            return this;
+        }
+
+        /**
+         * Sets the executor that processes lists of users. By default a pool of
+         * {@link #setParallelism(int) parallelism} threads is created for each list. The executor is not shut down by
+         * the generator.
+         *
+         * @param executor the executor
+         * @return the builder itself
+         */
+        public Builder setExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads that process a list of users if no executor is set, the number of available
+         * processors by default
+         *
+         * @param parallelism the number of threads
+         * @return the builder itself
+         */
+        public Builder setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Builds a ThumbnailGenerator with the given parameters
+         *
+         * @return a new ThumbnailGenerator
+         * @throws IllegalArgumentException if the size or the parallelism is less than 1
+         */
+        public ThumbnailGenerator build() {
+            if (size < 1) {
+                throw new IllegalArgumentException("The size must be at least 1");
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("The parallelism must be at least 1");
+            }
+            return new ThumbnailGenerator(this);
+        }
+    }
+}
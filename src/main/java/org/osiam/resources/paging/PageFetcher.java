@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.paging;
+
+import org.osiam.resources.scim.SCIMSearchResult;
+
+import java.io.IOException;
+
+/**
+ * Fetches a single page of a search, e.g. by sending a search request with the SCIM parameters
+ * <code>startIndex</code> and <code>count</code> to a service provider and deserializing the response.
+ *
+ * @param <T> the type of the resources
+ */
+public interface PageFetcher<T> {
+
+    /**
+     * Fetches the page of the search that starts at the given index.
+     *
+     * @param startIndex the 1-based index of the first resource of the page
+     * @param count      the maximum number of resources of the page
+     * @return the page
+     * @throws IOException if the page can't be fetched or read
+     */
+    SCIMSearchResult<T> fetch(long startIndex, int count) throws IOException;
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.paging;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the <code>count</code> of the next page of a search from the measured size and latency of the previous
+ * pages, so pages of slim resources get large and pages of heavy resources, e.g. users with photos, stay small:
+ * <p>
+ * <pre>
+ * PageSizeController pageSize = new PageSizeController.Builder()
+ *         .setTargetBytes(1024 * 1024)
+ *         .setTargetLatency(500, TimeUnit.MILLISECONDS)
+ *         .build();
+ * long startIndex = 1;
+ * while (...) {
+ *     long start = System.nanoTime();
+ *     CountingInputStream response = new CountingInputStream(search(startIndex, pageSize.getCount()));
+ *     SCIMSearchResult&lt;User&gt; page = read(response);
+ *     pageSize.record(page.getResources().size(), response.getCount(), System.nanoTime() - start);
+ *     startIndex += page.getResources().size();
+ * }
+ * </pre>
+ * </p>
+ * <p>
+ * The controller keeps a moving average of the bytes and the latency per resource. The next count is the largest
+ * count that is expected to stay below both targets, limited to the configured minimum and maximum. The count shrinks
+ * immediately if a page was too large or too slow and at most doubles per page, as the latency of small pages is
+ * dominated by the fixed cost of a request. A controller can be shared between the threads that fetch the pages.
+ * </p>
+ */
+public final class PageSizeController {
+
+    private static final double SMOOTHING = 0.5;
+
+    private final int minCount;
+    private final int maxCount;
+    private final long targetBytes;
+    private final long targetLatencyNanos;
+    private int count;
+    private double bytesPerResource = Double.NaN;
+    private double nanosPerResource = Double.NaN;
+
+    private PageSizeController(Builder builder) {
+        this.minCount = builder.minCount;
+        this.maxCount = builder.maxCount;
+        this.targetBytes = builder.targetBytes;
+        this.targetLatencyNanos = builder.targetLatencyNanos;
+        this.count = Math.min(Math.max(builder.initialCount, minCount), maxCount);
+    }
+
+    /**
+     * Gets the count of the next page to fetch
+     *
+     * @return the count between the minimum and the maximum count
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Records a fetched page and adjusts the count of the next page.
+     *
+     * @param resources    the number of resources of the page
+     * @param bytes        the size of the page in bytes, e.g. of the response body, or a negative value if it is not
+     *                     known
+     * @param latencyNanos the time it took to fetch and read the page in nanoseconds
+     */
+    public synchronized void record(int resources, long bytes, long latencyNanos) {
+        if (resources <= 0) {
+            return;
+        }
+        if (bytes >= 0) {
+            bytesPerResource = average(bytesPerResource, (double) bytes / resources);
+        }
+        if (latencyNanos >= 0) {
+            nanosPerResource = average(nanosPerResource, (double) latencyNanos / resources);
+        }
+        double nextCount = (double) count * 2;
+        if (targetBytes > 0 && bytesPerResource > 0) {
+            nextCount = Math.min(nextCount, targetBytes / bytesPerResource);
+        }
+        if (targetLatencyNanos > 0 && nanosPerResource > 0) {
+            nextCount = Math.min(nextCount, targetLatencyNanos / nanosPerResource);
+        }
+        count = (int) Math.min(Math.max(Math.floor(nextCount), minCount), maxCount);
+    }
+
+    private static double average(double average, double value) {
+        return Double.isNaN(average) ? value : average + SMOOTHING * (value - average);
+    }
+
+    /**
+     * @return the moving average of the bytes per resource or {@link Double#NaN} if no size has been recorded yet
+     */
+    public synchronized double getBytesPerResource() {
+        return bytesPerResource;
+    }
+
+    /**
+     * @return the moving average of the latency per resource in nanoseconds or {@link Double#NaN} if no latency has
+     * been recorded yet
+     */
+    public synchronized double getNanosPerResource() {
+        return nanosPerResource;
+    }
+
+    /**
+     * Builder class that is used to build {@link PageSizeController} instances
+     */
+    public static class Builder {
+        private int initialCount = 100;
+        private int minCount = 1;
+        private int maxCount = 1000;
+        private long targetBytes;
+        private long targetLatencyNanos;
+
+        /**
+         * Sets the count of the first page, 100 by default
+         *
+         * @param initialCount the count of the first page
+         * @return the builder itself
+         */
+        public Builder setInitialCount(int initialCount) {
+            this.initialCount = initialCount;
+            return this;
+        }
+
+        /**
+         * Sets the minimum count, 1 by default
+         *
+         * @param minCount the minimum count
+         * @return the builder itself
+         */
+        public Builder setMinCount(int minCount) {
+            this.minCount = minCount;
+            return this;
+        }
+
+        /**
+         * Sets the maximum count, 1000 by default. It should not exceed the maximum the service provider returns.
+         *
+         * @param maxCount the maximum count
+         * @return the builder itself
+         */
+        public Builder setMaxCount(int maxCount) {
+            this.maxCount = maxCount;
+            return this;
+        }
+
+        /**
+         * Sets the size a page should not exceed
+         *
+         * @param targetBytes the target size of a page in bytes
+         * @return the builder itself
+         */
+        public Builder setTargetBytes(long targetBytes) {
+            this.targetBytes = targetBytes;
+            return this;
+        }
+
+        /**
+         * Sets the time fetching a page should not exceed
+         *
+         * @param targetLatency the target latency of a page
+         * @param unit          the unit of the latency
+         * @return the builder itself
+         */
+        public Builder setTargetLatency(long targetLatency, TimeUnit unit) {
+            this.targetLatencyNanos = unit.toNanos(targetLatency);
+            return this;
+        }
+
+        /**
+         * Builds a PageSizeController with the given parameters
+         *
+         * @return a new PageSizeController
+         * @throws IllegalArgumentException if the minimum count is less than 1, the maximum count is less than the
+         *                                  minimum count or neither a target size nor a target latency is set
+         */
+        public PageSizeController build() {
+            if (minCount < 1 || maxCount < minCount) {
+                throw new IllegalArgumentException("The minimum count must be at least 1 and at most the maximum "
+                        + "count");
+            }
+            if (targetBytes <= 0 && targetLatencyNanos <= 0) {
+                throw new IllegalArgumentException("A target size or a target latency must be set");
+            }
+            return new PageSizeController(this);
+        }
+    }
+}
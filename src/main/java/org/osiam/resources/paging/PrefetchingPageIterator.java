@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.paging;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.osiam.resources.scim.SCIMSearchResult;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Iterates over all pages of a search and fetches the following pages in the background while the caller works
+ * through the current page:
+ * <p>
+ * <pre>
+ * try (PrefetchingPageIterator&lt;User&gt; pages = new PrefetchingPageIterator&lt;&gt;(fetcher, 100, 3)) {
+ *     while (pages.hasNext()) {
+ *         for (User user : pages.next().getResources()) {
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * </p>
+ * <p>
+ * At most <code>prefetch</code> pages are fetched or waiting to be consumed at a time, so a slow caller holds back
+ * the fetching instead of piling up pages in memory. A new page is only requested when the caller takes a page. The
+ * first page is fetched alone, the following ones are only requested up to the <code>totalResults</code> it reports.
+ * The iteration also ends at the first empty page.
+ * </p>
+ * <p>
+ * The pages are returned in order. {@link #hasNext()} only requests pages and doesn't wait for them, so a page that
+ * can't be fetched makes the {@link #next()} call that returns it throw an {@link IllegalStateException}. If a page
+ * that isn't the last one contains less resources than requested, e.g. because the count exceeds the maximum page
+ * size of the service provider, the pages requested behind it are discarded and requested again at the right index,
+ * limited to the size of that page. The iterator itself is meant to be used by a single thread, the
+ * {@link PageFetcher} is called concurrently by the threads of the executor.
+ * </p>
+ * <p>
+ * Instead of a fixed count the iterator can take the count of every page it requests from a
+ * {@link PageSizeController}. The fetcher records the fetched pages with the controller then.
+ * </p>
+ *
+ * @param <T> the type of the resources
+ */
+public final class PrefetchingPageIterator<T> implements Iterator<SCIMSearchResult<T>>, Closeable {
+
+    private final PageFetcher<T> fetcher;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int count;
+    private final PageSizeController pageSize;
+    private final int prefetch;
+    private final Deque<RequestedPage<T>> pages = new ArrayDeque<>();
+    private long nextStartIndex = 1;
+    private int maxCount = Integer.MAX_VALUE;
+    private Long totalResults;
+    private boolean finished;
+
+    /**
+     * Creates an iterator that fetches the pages with its own daemon threads, one per prefetched page. The threads
+     * are stopped by {@link #close()}.
+     *
+     * @param fetcher  the function that fetches a page
+     * @param count    the number of resources per page
+     * @param prefetch the maximum number of pages that are fetched or waiting to be consumed at a time
+     * @throws IllegalArgumentException if the fetcher is null or count or prefetch is less than 1
+     */
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, int count, int prefetch) {
+        this(fetcher, count, null, prefetch, createExecutor(prefetch), true);
+    }
+
+    /**
+     * Creates an iterator that requests every page with the current count of the given controller and fetches the
+     * pages with its own daemon threads, one per prefetched page. The threads are stopped by {@link #close()}.
+     *
+     * @param fetcher  the function that fetches a page and records it with the controller
+     * @param pageSize the controller that chooses the count of every page
+     * @param prefetch the maximum number of pages that are fetched or waiting to be consumed at a time
+     * @throws IllegalArgumentException if the fetcher or the controller is null or prefetch is less than 1
+     */
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, PageSizeController pageSize, int prefetch) {
+        this(fetcher, 1, checkNotNull(pageSize), prefetch, createExecutor(prefetch), true);
+    }
+
+    /**
+     * Creates an iterator that fetches the pages with the given executor. {@link #close()} doesn't shut the executor
+     * down.
+     *
+     * @param fetcher  the function that fetches a page
+     * @param count    the number of resources per page
+     * @param prefetch the maximum number of pages that are fetched or waiting to be consumed at a time
+     * @param executor the executor that runs the fetcher
+     * @throws IllegalArgumentException if the fetcher or executor is null or count or prefetch is less than 1
+     */
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, int count, int prefetch, ExecutorService executor) {
+        this(fetcher, count, null, prefetch, executor, false);
+    }
+
+    /**
+     * Creates an iterator that requests every page with the current count of the given controller and fetches the
+     * pages with the given executor. {@link #close()} doesn't shut the executor down.
+     *
+     * @param fetcher  the function that fetches a page and records it with the controller
+     * @param pageSize the controller that chooses the count of every page
+     * @param prefetch the maximum number of pages that are fetched or waiting to be consumed at a time
+     * @param executor the executor that runs the fetcher
+     * @throws IllegalArgumentException if the fetcher, the controller or the executor is null or prefetch is less
+     *                                  than 1
+     */
+    public PrefetchingPageIterator(PageFetcher<T> fetcher, PageSizeController pageSize, int prefetch,
+                                   ExecutorService executor) {
+        this(fetcher, 1, checkNotNull(pageSize), prefetch, executor, false);
+    }
+
+    private PrefetchingPageIterator(PageFetcher<T> fetcher, int count, PageSizeController pageSize, int prefetch,
+                                    ExecutorService executor, boolean ownExecutor) {
+        if (fetcher == null || executor == null) {
+            throw new IllegalArgumentException("The fetcher and the executor can't be null");
+        }
+        if (count < 1 || prefetch < 1) {
+            throw new IllegalArgumentException("The count and the number of prefetched pages must be at least 1");
+        }
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.count = count;
+        this.pageSize = pageSize;
+        this.prefetch = prefetch;
+    }
+
+    private static ExecutorService createExecutor(int prefetch) {
+        return Executors.newFixedThreadPool(Math.max(prefetch, 1),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("scim-page-prefetch-%d").build());
+    }
+
+    private static PageSizeController checkNotNull(PageSizeController pageSize) {
+        if (pageSize == null) {
+            throw new IllegalArgumentException("The page size controller can't be null");
+        }
+        return pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        requestPages();
+        return !pages.isEmpty();
+    }
+
+    @Override
+    public SCIMSearchResult<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RequestedPage<T> requestedPage = pages.removeFirst();
+        SCIMSearchResult<T> page = take(requestedPage.result);
+        if (totalResults == null) {
+            totalResults = page.getTotalResults();
+        }
+        int size = page.getResources() != null ? page.getResources().size() : 0;
+        if (size > 0 && size < requestedPage.count && requestedPage.startIndex + size <= totalResults) {
+            cancelPages();
+            maxCount = size;
+            nextStartIndex = requestedPage.startIndex + size;
+        }
+        if (size == 0) {
+            finish();
+        } else {
+            requestPages();
+        }
+        return page;
+    }
+
+    /**
+     * Requests the following pages until the maximum number of prefetched pages is reached.
+     */
+    private void requestPages() {
+        while (pages.size() < prefetch && hasMorePages()) {
+            final long startIndex = nextStartIndex;
+            final int pageCount = Math.min(pageSize != null ? pageSize.getCount() : count, maxCount);
+            Future<SCIMSearchResult<T>> result = executor.submit(new Callable<SCIMSearchResult<T>>() {
+                @Override
+                public SCIMSearchResult<T> call() throws Exception {
+                    return fetcher.fetch(startIndex, pageCount);
+                }
+            });
+            pages.addLast(new RequestedPage<>(startIndex, pageCount, result));
+            nextStartIndex += pageCount;
+        }
+    }
+
+    /**
+     * @return true if there is a page that hasn't been requested yet, before the first page only the first page
+     */
+    private boolean hasMorePages() {
+        return totalResults == null ? nextStartIndex == 1 : nextStartIndex <= totalResults;
+    }
+
+    private SCIMSearchResult<T> take(Future<SCIMSearchResult<T>> page) {
+        try {
+            SCIMSearchResult<T> result = page.get();
+            if (result == null) {
+                throw new IllegalStateException("The fetcher returned no page");
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish();
+            throw new IllegalStateException("Interrupted while waiting for a page", e);
+        } catch (ExecutionException e) {
+            finish();
+            throw new IllegalStateException("The page can't be fetched: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        cancelPages();
+    }
+
+    private void cancelPages() {
+        for (RequestedPage<T> page : pages) {
+            page.result.cancel(true);
+        }
+        pages.clear();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels the pages that are still being fetched and stops the own threads of this iterator.
+     */
+    @Override
+    public void close() {
+        finish();
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class RequestedPage<T> {
+        private final long startIndex;
+        private final int count;
+        private final Future<SCIMSearchResult<T>> result;
+
+        private RequestedPage(long startIndex, int count, Future<SCIMSearchResult<T>> result) {
+            this.startIndex = startIndex;
+            this.count = count;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.scim.AttributeAccessor;
+import org.osiam.resources.scim.MultiValuedAttribute;
+import org.osiam.resources.scim.User;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Reads the values of an attribute path from resources and turns values into index keys that compare like the
+ * values are compared by a {@link org.osiam.resources.filter.CompiledFilter}.
+ */
+final class AttributeValues {
+
+    private static final String VALUE = "value";
+
+    private static final DateTimeFormatter DATE_TIME_PARSER = ISODateTimeFormat.dateTimeParser();
+
+    private final AttributeAccessor accessor;
+    private final AttributeAccessor subAccessor;
+
+    private AttributeValues(AttributeAccessor accessor, AttributeAccessor subAccessor) {
+        this.accessor = accessor;
+        this.subAccessor = subAccessor;
+    }
+
+    static AttributeValues forPath(Class<?> type, AttributePath path) {
+        if (path.getUrn() != null) {
+            if (!User.class.isAssignableFrom(type)) {
+                throw new SCIMDataValidationException("The attribute '" + path + "' is not known.");
+            }
+            if (path.getSubAttribute() != null) {
+                throw new SCIMDataValidationException("The extension field '" + path + "' has no sub-attributes.");
+            }
+            return new AttributeValues(AttributeAccessor.forExtensionField(path.getUrn(), path.getAttribute()), null);
+        }
+        AttributeAccessor accessor = AttributeAccessor.forAttribute(type, path.getAttribute());
+        if (accessor == null) {
+            throw new SCIMDataValidationException("The attribute '" + path + "' is not known.");
+        }
+        AttributeAccessor subAccessor = null;
+        if (path.getSubAttribute() != null) {
+            subAccessor = AttributeAccessor.forAttribute(accessor.getType(), path.getSubAttribute());
+            if (subAccessor == null) {
+                throw new SCIMDataValidationException("The attribute '" + path + "' is not known.");
+            }
+        }
+        return new AttributeValues(accessor, subAccessor);
+    }
+
+    /**
+     * Adds the implicit sub-attribute "value" to paths of multi-valued complex attributes, so that
+     * <code>emails eq "x"</code> and <code>emails.value eq "x"</code> use the same index.
+     */
+    static AttributePath canonicalPath(Class<?> type, AttributePath path) {
+        if (path.getUrn() != null || path.getSubAttribute() != null) {
+            return path;
+        }
+        AttributeAccessor accessor = AttributeAccessor.forAttribute(type, path.getAttribute());
+        if (accessor != null && accessor.isMultiValued()
+                && MultiValuedAttribute.class.isAssignableFrom(accessor.getType())) {
+            return new AttributePath(null, path.getAttribute(), VALUE);
+        }
+        return path;
+    }
+
+    /**
+     * @return true if the path has no sub-attribute but the attribute has the implicit sub-attribute "value"
+     */
+    static boolean hasImplicitValue(Class<?> type, AttributePath path) {
+        return !canonicalPath(type, path).equals(path);
+    }
+
+    boolean isCaseExact() {
+        return (subAccessor != null ? subAccessor : accessor).isCaseExact();
+    }
+
+    /**
+     * Adds all values of the given resource that are not null to the given collection.
+     */
+    void collect(Object resource, Collection<Object> values) {
+        Object value = accessor.getValue(resource);
+        if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectSubAttribute(element, values);
+            }
+        } else if (value != null) {
+            collectSubAttribute(value, values);
+        }
+    }
+
+    private void collectSubAttribute(Object value, Collection<Object> values) {
+        Object actualValue = subAccessor != null ? subAccessor.getValue(value) : value;
+        if (actualValue != null) {
+            values.add(actualValue);
+        }
+    }
+
+    /**
+     * Turns an attribute value into the key an index stores it with.
+     */
+    static Object key(Object value, boolean caseExact) {
+        if (value instanceof String) {
+            return caseExact ? value : foldCase((String) value);
+        }
+        if (value instanceof Long) {
+            return value;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof BigDecimal) {
+            return normalize((BigDecimal) value);
+        }
+        if (value instanceof Number) {
+            return normalize(new BigDecimal(value.toString()));
+        }
+        if (value instanceof Boolean) {
+            return value;
+        }
+        return caseExact ? value.toString() : foldCase(value.toString());
+    }
+
+    /**
+     * Adds all keys of values that are equal to the given filter value according to the rules of a compiled filter.
+     */
+    static void collectKeys(Object filterValue, boolean caseExact, Collection<Object> keys) {
+        String stringValue = filterValue.toString();
+        keys.add(caseExact ? stringValue : foldCase(stringValue));
+        if (filterValue instanceof Boolean) {
+            keys.add(filterValue);
+        } else if (filterValue instanceof BigDecimal) {
+            keys.add(normalize((BigDecimal) filterValue));
+        } else {
+            try {
+                keys.add(normalize(new BigDecimal(stringValue)));
+            } catch (NumberFormatException e) {
+                // not a number
+            }
+            try {
+                keys.add(DATE_TIME_PARSER.parseMillis(stringValue));
+            } catch (IllegalArgumentException e) {
+                // not a date
+            }
+        }
+    }
+
+    private static BigDecimal normalize(BigDecimal value) {
+        return value.signum() == 0 ? BigDecimal.ZERO : value.stripTrailingZeros();
+    }
+
+    /**
+     * Maps every character like {@link String#equalsIgnoreCase(String)} compares it, so two strings have the same
+     * folded form exactly if they are equal ignoring case.
+     */
+    static String foldCase(String value) {
+        char[] chars = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = value.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return chars != null ? new String(chars) : value;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.scim.AttributeAccessor;
+import org.osiam.resources.scim.MultiValuedAttribute;
+import org.osiam.resources.scim.User;
+
+import java.math.BigDecimal;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * The <code>sortBy</code> and <code>sortOrder</code> parameters of a SCIM query compiled for a resource type, e.g.
+ * {@link User}:
+ * <p>
+ * <pre>
+ * CompiledSort&lt;User&gt; sort = CompiledSort.compile("name.familyName", SortOrder.ASCENDING, User.class,
+ *         Locale.GERMAN);
+ * List&lt;User&gt; firstPage = sort.page(users, 1, 100);
+ * </pre>
+ * </p>
+ * <p>
+ * The sort key of every resource is computed only once per sort: strings are turned into {@link CollationKey}s of the
+ * given locale, ignoring case unless the attribute is case exact, and date time values into their time. Attributes are
+ * read without copying any lists. Multi-valued attributes are sorted by their primary value or by their first value if
+ * none is primary. Resources without a value are sorted last in ascending and first in descending order. Resources
+ * with equal values keep their original order.
+ * </p>
+ *
+ * @param <T> the type of the resources to sort
+ */
+public final class CompiledSort<T> {
+
+    private static final String VALUE = "value";
+    private static final String PRIMARY = "primary";
+
+    private final AttributePath sortBy;
+    private final SortOrder sortOrder;
+    private final Locale locale;
+    private final AttributeAccessor accessor;
+    private final AttributeAccessor primaryAccessor;
+    private final AttributeAccessor subAccessor;
+    private final boolean caseExact;
+
+    private CompiledSort(AttributePath sortBy, SortOrder sortOrder, Class<T> type, Locale locale) {
+        this.sortBy = sortBy;
+        this.sortOrder = sortOrder;
+        this.locale = locale;
+        if (sortBy.getUrn() != null) {
+            if (!User.class.isAssignableFrom(type) || sortBy.getSubAttribute() != null) {
+                throw new SCIMDataValidationException("The attribute '" + sortBy + "' is not known.");
+            }
+            accessor = AttributeAccessor.forExtensionField(sortBy.getUrn(), sortBy.getAttribute());
+        } else {
+            accessor = AttributeAccessor.forAttribute(type, sortBy.getAttribute());
+            if (accessor == null) {
+                throw new SCIMDataValidationException("The attribute '" + sortBy + "' is not known.");
+            }
+        }
+        String subAttribute = sortBy.getSubAttribute();
+        if (subAttribute == null && MultiValuedAttribute.class.isAssignableFrom(accessor.getType())) {
+            subAttribute = VALUE;
+        }
+        if (subAttribute != null) {
+            subAccessor = AttributeAccessor.forAttribute(accessor.getType(), subAttribute);
+            if (subAccessor == null) {
+                throw new SCIMDataValidationException("The attribute '" + sortBy + "' is not known.");
+            }
+        } else {
+            subAccessor = null;
+        }
+        AttributeAccessor valueAccessor = subAccessor != null ? subAccessor : accessor;
+        Class<?> valueType = valueAccessor.getType();
+        if (valueType != String.class && valueType != Boolean.class && valueType != Date.class
+                && valueType != Object.class) {
+            throw new SCIMDataValidationException("The resources can't be sorted by the complex attribute '"
+                    + sortBy + "'.");
+        }
+        caseExact = valueAccessor.isCaseExact();
+        primaryAccessor = accessor.isMultiValued() ? AttributeAccessor.forAttribute(accessor.getType(), PRIMARY) : null;
+    }
+
+    /**
+     * Compiles the given sort parameters with the collation of the default locale.
+     *
+     * @param sortBy    the path of the attribute to sort by, e.g. <code>name.familyName</code>
+     * @param sortOrder the sort order or null for ascending order
+     * @param type      the type of the resources to sort
+     * @param <T>       the type of the resources to sort
+     * @return the compiled sort
+     * @throws SCIMDataValidationException if the resources can't be sorted by the given attribute
+     */
+    public static <T> CompiledSort<T> compile(String sortBy, SortOrder sortOrder, Class<T> type) {
+        return compile(sortBy, sortOrder, type, Locale.getDefault());
+    }
+
+    /**
+     * Compiles the given sort parameters.
+     *
+     * @param sortBy    the path of the attribute to sort by, e.g. <code>name.familyName</code>
+     * @param sortOrder the sort order or null for ascending order
+     * @param type      the type of the resources to sort
+     * @param locale    the locale whose collation is used to compare strings
+     * @param <T>       the type of the resources to sort
+     * @return the compiled sort
+     * @throws SCIMDataValidationException if the resources can't be sorted by the given attribute
+     */
+    public static <T> CompiledSort<T> compile(String sortBy, SortOrder sortOrder, Class<T> type, Locale locale) {
+        return new CompiledSort<>(AttributePath.parse(sortBy), sortOrder != null ? sortOrder : SortOrder.ASCENDING,
+                type, locale);
+    }
+
+    /**
+     * @return the path of the attribute the resources are sorted by
+     */
+    public AttributePath getSortBy() {
+        return sortBy;
+    }
+
+    /**
+     * @return the sort order
+     */
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * @return the locale whose collation is used to compare strings
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns a comparator of resources. The comparator computes the sort keys on every comparison, so prefer
+     * {@link #sort(Collection)} and {@link #page(Collection, int, int)} to sort many resources. The returned comparator
+     * is not thread safe.
+     *
+     * @return a comparator for the resources
+     */
+    public Comparator<T> comparator() {
+        final Collator collator = createCollator();
+        final int direction = direction();
+        return new Comparator<T>() {
+            @Override
+            public int compare(T resource, T otherResource) {
+                return direction * compareKeys(sortKey(resource, collator), sortKey(otherResource, collator));
+            }
+        };
+    }
+
+    /**
+     * Sorts the given resources.
+     *
+     * @param resources the resources to sort
+     * @return a new list with the sorted resources
+     */
+    public List<T> sort(Collection<? extends T> resources) {
+        List<Keyed<T>> keyedResources = keyAll(resources);
+        Collections.sort(keyedResources, keyComparator());
+        return unwrap(keyedResources);
+    }
+
+    /**
+     * Returns a page of the sorted resources without sorting all of them: only the resources up to the end of the
+     * requested page are kept sorted while the given resources are read.
+     *
+     * @param resources  the resources to sort
+     * @param startIndex the 1-based index of the first resource of the page as given by the SCIM parameter
+     *                   <code>startIndex</code>, values less than 1 are interpreted as 1
+     * @param count      the maximum number of resources of the page
+     * @return a new list with the sorted resources of the requested page
+     */
+    public List<T> page(Collection<? extends T> resources, int startIndex, int count) {
+        int skip = Math.max(startIndex, 1) - 1;
+        long end = (long) skip + Math.max(count, 0);
+        if (count <= 0 || skip >= resources.size()) {
+            return new ArrayList<>();
+        }
+        if (end >= resources.size() / 2) {
+            List<T> sortedResources = sort(resources);
+            return new ArrayList<>(sortedResources.subList(skip, (int) Math.min(end, sortedResources.size())));
+        }
+        int size = (int) end;
+        Comparator<Keyed<T>> comparator = keyComparator();
+        PriorityQueue<Keyed<T>> largestFirst = new PriorityQueue<>(size, Collections.reverseOrder(comparator));
+        Collator collator = createCollator();
+        int index = 0;
+        for (T resource : resources) {
+            Object key = sortKey(resource, collator);
+            if (largestFirst.size() < size) {
+                largestFirst.add(new Keyed<T>(resource, key, index));
+            } else {
+                Keyed<T> largest = largestFirst.peek();
+                Keyed<T> keyed = new Keyed<T>(resource, key, index);
+                if (comparator.compare(keyed, largest) < 0) {
+                    largestFirst.poll();
+                    largestFirst.add(keyed);
+                }
+            }
+            index++;
+        }
+        List<Keyed<T>> smallest = new ArrayList<>(largestFirst);
+        Collections.sort(smallest, comparator);
+        return unwrap(smallest.subList(skip, smallest.size()));
+    }
+
+    private List<Keyed<T>> keyAll(Collection<? extends T> resources) {
+        Collator collator = createCollator();
+        List<Keyed<T>> keyedResources = new ArrayList<>(resources.size());
+        int index = 0;
+        for (T resource : resources) {
+            keyedResources.add(new Keyed<T>(resource, sortKey(resource, collator), index++));
+        }
+        return keyedResources;
+    }
+
+    private static <T> List<T> unwrap(List<Keyed<T>> keyedResources) {
+        List<T> resources = new ArrayList<>(keyedResources.size());
+        for (Keyed<T> keyed : keyedResources) {
+            resources.add(keyed.resource);
+        }
+        return resources;
+    }
+
+    Collator createCollator() {
+        Collator collator = Collator.getInstance(locale);
+        collator.setStrength(caseExact ? Collator.TERTIARY : Collator.SECONDARY);
+        return collator;
+    }
+
+    private Comparator<Keyed<T>> keyComparator() {
+        final int direction = direction();
+        return new Comparator<Keyed<T>>() {
+            @Override
+            public int compare(Keyed<T> keyed, Keyed<T> otherKeyed) {
+                int result = direction * compareKeys(keyed.key, otherKeyed.key);
+                return result != 0 ? result : Integer.compare(keyed.index, otherKeyed.index);
+            }
+        };
+    }
+
+    int direction() {
+        return sortOrder == SortOrder.DESCENDING ? -1 : 1;
+    }
+
+    private Object sortKey(T resource, Collator collator) {
+        return toKey(sortValue(resource), collator);
+    }
+
+    /**
+     * Reads the value the given resource is sorted by.
+     *
+     * @return the value as {@link String}, {@link Date}, {@link Long} (the milliseconds of a date time),
+     * {@link Number} or {@link Boolean} or null if it is not set
+     */
+    Object sortValue(T resource) {
+        Object value = accessor.getValue(resource);
+        if (value instanceof Collection) {
+            value = selectValue((Collection<?>) value);
+        }
+        if (value != null && subAccessor != null) {
+            value = subAccessor.getValue(value);
+        }
+        if (value == null || value instanceof String || value instanceof Date || value instanceof Number
+                || value instanceof Boolean) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Turns a value returned by {@link #sortValue(Object)} into a key that can be compared with
+     * {@link #compareKeys(Object, Object)}.
+     */
+    static Object toKey(Object value, Collator collator) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            return collator.getCollationKey((String) value);
+        }
+        if (value instanceof Long) {
+            return value;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof BigDecimal) {
+            return value;
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof Boolean) {
+            return value;
+        }
+        return collator.getCollationKey(value.toString());
+    }
+
+    private Object selectValue(Collection<?> values) {
+        Iterator<?> iterator = values.iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Object first = iterator.next();
+        if (primaryAccessor == null) {
+            return first;
+        }
+        for (Object value : values) {
+            if (Boolean.TRUE.equals(primaryAccessor.getValue(value))) {
+                return value;
+            }
+        }
+        return first;
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareKeys(Object key, Object otherKey) {
+        if (key == null || otherKey == null) {
+            return key == null ? (otherKey == null ? 0 : 1) : -1;
+        }
+        int typeComparison = Integer.compare(typeRank(key), typeRank(otherKey));
+        if (typeComparison != 0) {
+            return typeComparison;
+        }
+        return ((Comparable<Object>) key).compareTo(otherKey);
+    }
+
+    private static int typeRank(Object key) {
+        if (key instanceof CollationKey) {
+            return 0;
+        }
+        if (key instanceof BigDecimal) {
+            return 1;
+        }
+        return key instanceof Long ? 2 : 3;
+    }
+
+    private static final class Keyed<T> {
+        private final T resource;
+        private final Object key;
+        private final int index;
+
+        private Keyed(T resource, Object key, int index) {
+            this.resource = resource;
+            this.key = key;
+            this.index = index;
+        }
+    }
+}
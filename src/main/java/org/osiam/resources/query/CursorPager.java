@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query;
+
+import com.google.common.base.Strings;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.filter.Filter;
+import org.osiam.resources.scim.Resource;
+import org.osiam.resources.scim.SCIMSearchResult;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pages sorted query results by {@link PageCursor}s instead of a start index. The resources are ordered by their sort
+ * key and then by their id, so every resource has a stable position and a page continues exactly behind the resource
+ * its cursor points to, no matter how many resources have been added or removed in front of it.
+ * <p>
+ * The matching resources are sorted once into a snapshot that is shared by all pages of the query as long as the
+ * resources don't change. A page then seeks its cursor by binary search, so it costs O(log n + count) and walking all
+ * n resources costs O(n log n) for the snapshot plus O(n) for the pages. Every change of the resources makes the next
+ * page sort the matching resources again.
+ * </p>
+ *
+ * @param <T> the type of the resources
+ */
+final class CursorPager<T extends Resource> {
+
+    private final Filter filter;
+    private final CompiledSort<T> sort;
+    private final int queryHash;
+    private final Collator collator;
+    private final Comparator<Keyed<T>> order;
+    private volatile Snapshot<T> snapshot;
+
+    CursorPager(Filter filter, CompiledSort<T> sort) {
+        this.filter = filter;
+        this.sort = sort;
+        this.queryHash = (filter.normalize().toString() + '\u0000' + sort.getSortBy() + '\u0000'
+                + sort.getSortOrder()).hashCode();
+        this.collator = sort.createCollator();
+        final int direction = sort.direction();
+        this.order = new Comparator<Keyed<T>>() {
+            @Override
+            public int compare(Keyed<T> keyed, Keyed<T> otherKeyed) {
+                int result = CompiledSort.compareKeys(keyed.key, otherKeyed.key);
+                if (result == 0) {
+                    result = keyed.id.compareTo(otherKeyed.id);
+                }
+                return direction * result;
+            }
+        };
+    }
+
+    /**
+     * Builds the key pagers of equal queries can be shared by.
+     *
+     * @param filter the filter of the query
+     * @param sort   the sort of the query
+     * @return the key of the query
+     */
+    static String key(Filter filter, CompiledSort<?> sort) {
+        return filter.normalize().toString() + '\u0000' + sort.getSortBy() + '\u0000' + sort.getSortOrder() + '\u0000'
+                + sort.getLocale();
+    }
+
+    /**
+     * @param version the version of the resources, which changes whenever a resource is added, changed or removed
+     * @return true if the snapshot has been sorted for the given version of the resources
+     */
+    boolean isSorted(long version) {
+        Snapshot<T> currentSnapshot = snapshot;
+        return currentSnapshot != null && currentSnapshot.version == version;
+    }
+
+    /**
+     * Sorts the given resources into the snapshot the following pages are read from.
+     *
+     * @param resources the resources that match the filter
+     * @param version   the version of the resources
+     */
+    void sort(List<T> resources, long version) {
+        List<Keyed<T>> sortedResources = new ArrayList<>(resources.size());
+        for (T resource : resources) {
+            Object value = sort.sortValue(resource);
+            sortedResources.add(new Keyed<>(resource, value, CompiledSort.toKey(value, collator), resource.getId()));
+        }
+        Collections.sort(sortedResources, order);
+        snapshot = new Snapshot<>(sortedResources, version);
+    }
+
+    /**
+     * Returns the page of the sorted snapshot the given cursor points to.
+     *
+     * @param cursor the encoded cursor or null for the first page
+     * @param count  the maximum number of resources of the page
+     * @return the page with the cursors of the adjacent pages
+     * @throws SCIMDataValidationException if the cursor is not valid or has been created for a different query
+     * @throws IllegalArgumentException    if count is less than 1
+     * @throws IllegalStateException       if the resources have not been sorted yet
+     */
+    SCIMSearchResult<T> page(String cursor, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The count must be at least 1");
+        }
+        Snapshot<T> currentSnapshot = snapshot;
+        if (currentSnapshot == null) {
+            throw new IllegalStateException("The resources have not been sorted yet");
+        }
+        PageCursor pageCursor = null;
+        if (cursor != null) {
+            pageCursor = PageCursor.decode(cursor);
+            if (pageCursor.getQueryHash() != queryHash) {
+                throw new SCIMDataValidationException("The cursor '" + cursor + "' belongs to a different query than '"
+                        + filter + "'.");
+            }
+        }
+        List<Keyed<T>> resources = currentSnapshot.resources;
+        boolean backward = pageCursor != null && pageCursor.isBefore();
+        // a forward page starts behind the bound, a backward page ends in front of it
+        int boundIndex = backward ? resources.size() : 0;
+        if (pageCursor != null && pageCursor.getId() != null) {
+            Keyed<T> bound = new Keyed<>(null, pageCursor.getValue(),
+                    CompiledSort.toKey(pageCursor.getValue(), collator), pageCursor.getId());
+            int index = Collections.binarySearch(resources, bound, order);
+            if (index >= 0) {
+                boundIndex = backward ? index : index + 1;
+            } else {
+                boundIndex = -index - 1;
+            }
+        }
+        int fromIndex = backward ? Math.max(boundIndex - count, 0) : boundIndex;
+        int toIndex = backward ? boundIndex : Math.min(boundIndex + count, resources.size());
+
+        List<T> pageResources = new ArrayList<>(toIndex - fromIndex);
+        for (Keyed<T> keyed : resources.subList(fromIndex, toIndex)) {
+            pageResources.add(keyed.resource);
+        }
+        String nextCursor = null;
+        if (toIndex < resources.size()) {
+            nextCursor = fromIndex == toIndex ? encode(false, null) : encode(false, resources.get(toIndex - 1));
+        }
+        String previousCursor = null;
+        if (fromIndex > 0) {
+            previousCursor = fromIndex == toIndex ? encode(true, null) : encode(true, resources.get(fromIndex));
+        }
+        return new SCIMSearchResult<>(pageResources, resources.size(), pageResources.size(), fromIndex + 1,
+                nextCursor, previousCursor);
+    }
+
+    private String encode(boolean before, Keyed<T> keyed) {
+        return keyed == null ? new PageCursor(before, queryHash, null, null).encode()
+                : new PageCursor(before, queryHash, keyed.value, keyed.id).encode();
+    }
+
+    private static final class Snapshot<T> {
+        private final List<Keyed<T>> resources;
+        private final long version;
+
+        private Snapshot(List<Keyed<T>> resources, long version) {
+            this.resources = resources;
+            this.version = version;
+        }
+    }
+
+    private static final class Keyed<T> {
+        private final T resource;
+        private final Object value;
+        private final Object key;
+        private final String id;
+
+        private Keyed(T resource, Object value, Object key, String id) {
+            this.resource = resource;
+            this.value = value;
+            this.key = key;
+            this.id = Strings.nullToEmpty(id);
+        }
+    }
+}
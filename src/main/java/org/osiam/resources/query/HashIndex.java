@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.ComparisonOperator;
+import org.osiam.resources.scim.Resource;
+import org.osiam.resources.scim.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hash index over the values of an attribute that answers "eq" and "pr" expressions.
+ * <p>
+ * Values are compared like a {@link org.osiam.resources.filter.CompiledFilter} compares them, so strings are found
+ * case insensitive unless the attribute is case exact. All values of multi-valued attributes are indexed.
+ * </p>
+ *
+ * @param <T> the type of the indexed resources
+ */
+public final class HashIndex<T extends Resource> implements ResourceIndex<T> {
+
+    private final AttributePath path;
+    private final AttributeValues attributeValues;
+    private final boolean caseExact;
+    private final Map<Object, Set<String>> idsByKey = new HashMap<>();
+    private final Set<String> idsWithValue = new HashSet<>();
+
+    private HashIndex(Class<T> type, AttributePath path) {
+        this.path = AttributeValues.canonicalPath(type, path);
+        this.attributeValues = AttributeValues.forPath(type, this.path);
+        this.caseExact = attributeValues.isCaseExact();
+    }
+
+    /**
+     * Creates an index over the given attribute of resources.
+     *
+     * @param type the type of the indexed resources
+     * @param path the path of the attribute, e.g. <code>userName</code> or <code>emails.value</code>
+     * @param <T>  the type of the indexed resources
+     * @return the new index
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the resources don't have the given
+     *                                                                   attribute
+     */
+    public static <T extends Resource> HashIndex<T> forAttribute(Class<T> type, String path) {
+        return new HashIndex<>(type, AttributePath.parse(path));
+    }
+
+    /**
+     * Creates an index over a field of an extension of users. The values are read with the type the field has in
+     * each user.
+     *
+     * @param urn       the URN of the extension
+     * @param fieldName the name of the field
+     * @return the new index
+     */
+    public static HashIndex<User> forExtensionField(String urn, String fieldName) {
+        return new HashIndex<>(User.class, new AttributePath(urn, fieldName, null));
+    }
+
+    @Override
+    public AttributePath getPath() {
+        return path;
+    }
+
+    @Override
+    public void add(T resource) {
+        List<Object> keys = keys(resource);
+        for (Object key : keys) {
+            Set<String> ids = idsByKey.get(key);
+            if (ids == null) {
+                ids = new HashSet<>(2);
+                idsByKey.put(key, ids);
+            }
+            ids.add(resource.getId());
+        }
+        if (!keys.isEmpty()) {
+            idsWithValue.add(resource.getId());
+        }
+    }
+
+    @Override
+    public void remove(T resource) {
+        for (Object key : keys(resource)) {
+            Set<String> ids = idsByKey.get(key);
+            if (ids != null && ids.remove(resource.getId()) && ids.isEmpty()) {
+                idsByKey.remove(key);
+            }
+        }
+        idsWithValue.remove(resource.getId());
+    }
+
+    private List<Object> keys(T resource) {
+        List<Object> values = new ArrayList<>();
+        attributeValues.collect(resource, values);
+        List<Object> keys = new ArrayList<>(values.size());
+        for (Object value : values) {
+            keys.add(AttributeValues.key(value, caseExact));
+        }
+        return keys;
+    }
+
+    @Override
+    public Set<String> findCandidates(AttributeExpression expression) {
+        if (expression.getOperator() == ComparisonOperator.PR) {
+            return Collections.unmodifiableSet(idsWithValue);
+        }
+        if (expression.getOperator() != ComparisonOperator.EQ || expression.getValue() == null) {
+            return null;
+        }
+        List<Object> keys = new ArrayList<>();
+        AttributeValues.collectKeys(expression.getValue(), caseExact, keys);
+        Set<String> candidates = null;
+        for (Object key : keys) {
+            Set<String> ids = idsByKey.get(key);
+            if (ids == null) {
+                continue;
+            }
+            if (candidates == null) {
+                candidates = Collections.unmodifiableSet(ids);
+            } else {
+                candidates = new HashSet<>(candidates);
+                candidates.addAll(ids);
+            }
+        }
+        return candidates != null ? candidates : Collections.<String>emptySet();
+    }
+
+    /**
+     * @return the number of distinct values in this index
+     */
+    public int size() {
+        return idsByKey.size();
+    }
+}
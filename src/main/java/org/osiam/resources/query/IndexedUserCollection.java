@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.CompiledFilter;
+import org.osiam.resources.filter.Filter;
+import org.osiam.resources.scim.SCIMSearchResult;
+import org.osiam.resources.scim.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A collection of {@link User}s that answers SCIM filter queries with the help of secondary indexes.
+ * <p>
+ * A new collection has hash indexes on <code>userName</code>, <code>externalId</code>, <code>emails.value</code> and
+ * <code>groups.value</code>, further indexes e.g. for extension fields can be added with
+ * {@link #addIndex(ResourceIndex)}. A query uses the indexes for all expressions they can answer and evaluates the
+ * whole filter only for the remaining candidates, so the result is always the same as without indexes.
+ * </p>
+ * <p>
+ * The collection can be shared between threads. Users are identified by their id.
+ * </p>
+ */
+public final class IndexedUserCollection {
+
+    private static final int MAXIMUM_CURSOR_PAGERS = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final List<ResourceIndex<User>> indexes = new ArrayList<>();
+    private final Map<AttributePath, List<ResourceIndex<User>>> indexesByPath = new HashMap<>();
+    private final QueryPlanner planner = new QueryPlanner(Collections.unmodifiableMap(indexesByPath));
+    private final QueryCache<User> queryCache;
+    private final Map<String, CursorPager<User>> cursorPagers = new LinkedHashMap<String, CursorPager<User>>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CursorPager<User>> eldest) {
+            return size() > MAXIMUM_CURSOR_PAGERS;
+        }
+    };
+    private long nextPosition;
+    private long modifications;
+
+    /**
+     * Creates an empty collection with the default indexes.
+     */
+    public IndexedUserCollection() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty collection with the default indexes and a {@link QueryCache} for the results of sorted and
+     * paged queries.
+     *
+     * @param queryCacheSize the maximum number of cached query results or 0 for no cache
+     */
+    public IndexedUserCollection(int queryCacheSize) {
+        queryCache = queryCacheSize > 0 ? new QueryCache<>(User.class, queryCacheSize) : null;
+        addIndex(HashIndex.forAttribute(User.class, "userName"));
+        addIndex(HashIndex.forAttribute(User.class, "externalId"));
+        addIndex(HashIndex.forAttribute(User.class, "emails.value"));
+        addIndex(HashIndex.forAttribute(User.class, "groups.value"));
+    }
+
+    /**
+     * Adds the given index and indexes all users of this collection. An attribute can have several indexes, e.g. a
+     * hash index and a {@link PrefixIndex}, a query uses the one that returns the fewest candidates.
+     *
+     * @param index the index
+     */
+    public void addIndex(ResourceIndex<User> index) {
+        lock.writeLock().lock();
+        try {
+            for (Entry entry : entries.values()) {
+                index.add(entry.user);
+            }
+            AttributePath path = AttributeValues.canonicalPath(User.class, index.getPath());
+            List<ResourceIndex<User>> pathIndexes = indexesByPath.get(path);
+            if (pathIndexes == null) {
+                pathIndexes = new ArrayList<>();
+                indexesByPath.put(path, pathIndexes);
+            }
+            pathIndexes.add(index);
+            indexes.add(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the given user or replaces the user with the same id.
+     *
+     * @param user the user
+     * @throws IllegalArgumentException if the user has no id
+     */
+    public void put(User user) {
+        if (user == null || user.getId() == null) {
+            throw new IllegalArgumentException("Only users with an id can be added");
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(user.getId());
+            if (entry != null) {
+                removeFromIndexes(entry.user);
+            }
+            entries.put(user.getId(), new Entry(user, entry != null ? entry.position : nextPosition++));
+            modifications++;
+            for (ResourceIndex<User> index : indexes) {
+                index.add(user);
+            }
+            if (queryCache != null) {
+                queryCache.update(entry != null ? entry.user : null, user);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the user with the given id.
+     *
+     * @param id the id of the user
+     * @return the removed user or null if this collection contains no user with the given id
+     */
+    public User remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry == null) {
+                return null;
+            }
+            removeFromIndexes(entry.user);
+            modifications++;
+            if (queryCache != null) {
+                queryCache.update(entry.user, null);
+            }
+            return entry.user;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeFromIndexes(User user) {
+        for (ResourceIndex<User> index : indexes) {
+            index.remove(user);
+        }
+    }
+
+    /**
+     * @param id the id of a user
+     * @return the user with the given id or null if this collection contains no user with the given id
+     */
+    public User get(String id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry != null ? entry.user : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of users in this collection
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all users that match the given filter.
+     *
+     * @param filter a SCIM filter expression, e.g. <code>emails.value eq "bjensen@example.com"</code>
+     * @return the matching users in the order they have been added
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the filter is not valid
+     */
+    public List<User> find(String filter) {
+        return find(CompiledFilter.compile(filter, User.class));
+    }
+
+    /**
+     * Finds all users that match the given filter.
+     *
+     * @param filter the compiled filter
+     * @return the matching users in the order they have been added
+     */
+    public List<User> find(CompiledFilter<User> filter) {
+        lock.readLock().lock();
+        try {
+            Set<String> candidates = planner.findCandidates(filter.getFilter());
+            if (candidates == null) {
+                List<User> users = new ArrayList<>();
+                for (Entry entry : entries.values()) {
+                    if (filter.matches(entry.user)) {
+                        users.add(entry.user);
+                    }
+                }
+                return users;
+            }
+            List<Entry> matchingEntries = new ArrayList<>();
+            for (String id : candidates) {
+                Entry entry = entries.get(id);
+                if (entry != null && filter.matches(entry.user)) {
+                    matchingEntries.add(entry);
+                }
+            }
+            Collections.sort(matchingEntries, Entry.BY_POSITION);
+            List<User> users = new ArrayList<>(matchingEntries.size());
+            for (Entry entry : matchingEntries) {
+                users.add(entry.user);
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Autocompletes the given prefix with the users whose attribute starts with it, e.g. for a people picker. The
+     * attribute needs a {@link PrefixIndex}, so the time of a lookup only depends on the length of the prefix and the
+     * number of results.
+     *
+     * @param attributePath the path of the attribute, e.g. <code>displayName</code>
+     * @param prefix        the prefix
+     * @param limit         the maximum number of users to return
+     * @return at most <code>limit</code> users ordered by the value of the attribute
+     * @throws IllegalArgumentException if the attribute has no prefix index
+     */
+    public List<User> findByPrefix(String attributePath, String prefix, int limit) {
+        AttributePath path = AttributeValues.canonicalPath(User.class, AttributePath.parse(attributePath));
+        lock.readLock().lock();
+        try {
+            List<ResourceIndex<User>> pathIndexes = indexesByPath.get(path);
+            if (pathIndexes != null) {
+                for (ResourceIndex<User> index : pathIndexes) {
+                    if (index instanceof PrefixIndex) {
+                        List<User> users = new ArrayList<>();
+                        for (String id : ((PrefixIndex<User>) index).findIds(prefix, limit)) {
+                            users.add(entries.get(id).user);
+                        }
+                        return users;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        throw new IllegalArgumentException("The attribute " + path + " has no prefix index");
+    }
+
+    /**
+     * Finds a page of the users that match the given filter sorted by the given sort. Only the users up to the end of
+     * the requested page are sorted completely. If this collection has a query cache, the ids of the result are
+     * cached.
+     *
+     * @param filter     the compiled filter
+     * @param sort       the compiled sort
+     * @param startIndex the 1-based index of the first user of the page
+     * @param count      the maximum number of users of the page
+     * @return the matching users of the requested page
+     */
+    public List<User> find(CompiledFilter<User> filter, CompiledSort<User> sort, int startIndex, int count) {
+        if (queryCache == null) {
+            return sort.page(find(filter), startIndex, count);
+        }
+        lock.readLock().lock();
+        try {
+            List<String> ids = queryCache.get(filter.getFilter(), sort, startIndex, count);
+            if (ids != null) {
+                List<User> users = cachedUsers(ids);
+                if (users != null) {
+                    return users;
+                }
+                queryCache.remove(filter.getFilter(), sort, startIndex, count);
+            }
+            List<User> users = sort.page(find(filter), startIndex, count);
+            List<String> resultIds = new ArrayList<>(users.size());
+            for (User user : users) {
+                resultIds.add(user.getId());
+            }
+            queryCache.put(filter.getFilter(), sort, startIndex, count, resultIds);
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the users with the given ids or null if one of them has been removed, i.e. the cached result is stale
+     */
+    private List<User> cachedUsers(List<String> ids) {
+        List<User> users = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            users.add(entry.user);
+        }
+        return users;
+    }
+
+    /**
+     * Finds a page of the users that match the given filter sorted by the given sort, starting at the given cursor.
+     * Users with equal sort values are ordered by their id, so walking all pages with the returned
+     * {@link SCIMSearchResult#getNextCursor() next cursors} returns every user exactly once, even if users are added
+     * or removed in front of the current page meanwhile.
+     * <p>
+     * The matching users are sorted once per query and kept for the 16 most recently used queries, so a page only
+     * seeks its cursor in the sorted users. As long as the collection doesn't change, a page costs O(log n + count)
+     * and walking all pages costs O(n log n) once for sorting. After a change the next page filters and sorts the
+     * users again.
+     * </p>
+     *
+     * @param filter the compiled filter
+     * @param sort   the compiled sort
+     * @param cursor the next or previous cursor of a page of the same query or null for the first page
+     * @param count  the maximum number of users of the page
+     * @return the matching users of the requested page with the cursors of the adjacent pages
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the cursor is not valid or belongs to a
+     *                                                                   different query
+     * @throws IllegalArgumentException                                  if count is less than 1
+     */
+    public SCIMSearchResult<User> find(CompiledFilter<User> filter, CompiledSort<User> sort, String cursor,
+                                       int count) {
+        lock.readLock().lock();
+        try {
+            CursorPager<User> pager = cursorPager(filter.getFilter(), sort);
+            if (!pager.isSorted(modifications)) {
+                pager.sort(find(filter), modifications);
+            }
+            return pager.page(cursor, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private CursorPager<User> cursorPager(Filter filter, CompiledSort<User> sort) {
+        String key = CursorPager.key(filter, sort);
+        synchronized (cursorPagers) {
+            CursorPager<User> pager = cursorPagers.get(key);
+            if (pager == null) {
+                pager = new CursorPager<>(filter, sort);
+                cursorPagers.put(key, pager);
+            }
+            return pager;
+        }
+    }
+
+    private static final class Entry {
+
+        private static final Comparator<Entry> BY_POSITION = new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry, Entry otherEntry) {
+                return Long.compare(entry.position, otherEntry.position);
+            }
+        };
+
+        private final User user;
+        private final long position;
+
+        private Entry(User user, long position) {
+            this.user = user;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.common.io.BaseEncoding;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * The position of a page boundary in a sorted query result. A cursor points right behind or right in front of a
+ * resource and identifies it by its sort value and its id, so it stays valid while other resources are added or
+ * removed. A cursor without id points to the start or the end of the result.
+ * <p>
+ * Cursors are encoded as URL safe Base64 of a small JSON array. They contain a hash of the normalized filter and the
+ * sort parameters, so a cursor can't be used for a different query.
+ * </p>
+ */
+final class PageCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+    private static final String AFTER = "a";
+    private static final String BEFORE = "b";
+
+    private final boolean before;
+    private final int queryHash;
+    private final Object value;
+    private final String id;
+
+    PageCursor(boolean before, int queryHash, Object value, String id) {
+        this.before = before;
+        this.queryHash = queryHash;
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * @return true if the page ends right in front of the resource, false if it starts right behind it
+     */
+    boolean isBefore() {
+        return before;
+    }
+
+    int getQueryHash() {
+        return queryHash;
+    }
+
+    /**
+     * @return the sort value of the resource as returned by {@link CompiledSort#sortValue(Object)}
+     */
+    Object getValue() {
+        return value;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String encode() {
+        ArrayNode node = MAPPER.createArrayNode();
+        node.add(before ? BEFORE : AFTER);
+        node.add(queryHash);
+        if (value instanceof String) {
+            node.add("s").add((String) value);
+        } else if (value instanceof Long) {
+            node.add("d").add((Long) value);
+        } else if (value instanceof Date) {
+            node.add("d").add(((Date) value).getTime());
+        } else if (value instanceof Number) {
+            node.add("n").add(value.toString());
+        } else if (value instanceof Boolean) {
+            node.add("b").add((Boolean) value);
+        } else {
+            node.add("-").addNull();
+        }
+        node.add(id);
+        try {
+            return ENCODING.encode(MAPPER.writeValueAsBytes(node));
+        } catch (IOException e) {
+            throw new IllegalStateException("The cursor can't be written", e);
+        }
+    }
+
+    /**
+     * Decodes a cursor returned by {@link #encode()}.
+     *
+     * @param cursor the encoded cursor
+     * @return the cursor
+     * @throws SCIMDataValidationException if the cursor is not valid
+     */
+    static PageCursor decode(String cursor) {
+        try {
+            JsonNode node = MAPPER.readTree(ENCODING.decode(cursor));
+            if (node == null || !node.isArray() || node.size() != 5 || !node.get(1).isInt()
+                    || !node.get(4).isTextual() && !node.get(4).isNull()) {
+                throw invalid(cursor, null);
+            }
+            String direction = node.get(0).asText();
+            if (!AFTER.equals(direction) && !BEFORE.equals(direction)) {
+                throw invalid(cursor, null);
+            }
+            return new PageCursor(BEFORE.equals(direction), node.get(1).intValue(),
+                    decodeValue(node.get(2).asText(), node.get(3)), node.get(4).textValue());
+        } catch (IllegalArgumentException | IOException e) {
+            throw invalid(cursor, e);
+        }
+    }
+
+    private static Object decodeValue(String type, JsonNode value) {
+        switch (type) {
+            case "s":
+                return value.asText();
+            case "d":
+                return value.longValue();
+            case "n":
+                return new BigDecimal(value.asText());
+            case "b":
+                return value.booleanValue();
+            case "-":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown value type " + type);
+        }
+    }
+
+    private static SCIMDataValidationException invalid(String cursor, Exception cause) {
+        return new SCIMDataValidationException("The cursor '" + cursor + "' is not valid.", cause);
+    }
+}
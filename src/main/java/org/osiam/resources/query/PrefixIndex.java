@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.ComparisonOperator;
+import org.osiam.resources.scim.Resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A prefix tree (trie) over the string values of an attribute that answers "sw" and "eq" expressions and
+ * autocompletes values, e.g. for <code>userName</code>, <code>displayName</code> or <code>name.familyName</code> of
+ * users or <code>displayName</code> of groups.
+ * <p>
+ * Looking up a prefix takes time proportional to the length of the prefix and the number of results, independent of
+ * the number of indexed resources. Values are indexed case insensitive unless the attribute is case exact, like a
+ * {@link org.osiam.resources.filter.CompiledFilter} compares them. Resources can be added and removed one by one
+ * while the index is in use, the index is thread safe.
+ * </p>
+ *
+ * @param <T> the type of the indexed resources
+ */
+public final class PrefixIndex<T extends Resource> implements ResourceIndex<T> {
+
+    private final AttributePath path;
+    private final AttributeValues attributeValues;
+    private final boolean caseExact;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Set<String> idsWithValue = new HashSet<>();
+
+    private PrefixIndex(Class<T> type, AttributePath path) {
+        this.path = AttributeValues.canonicalPath(type, path);
+        this.attributeValues = AttributeValues.forPath(type, this.path);
+        this.caseExact = attributeValues.isCaseExact();
+    }
+
+    /**
+     * Creates a prefix index over the given attribute of resources.
+     *
+     * @param type the type of the indexed resources
+     * @param path the path of the attribute, e.g. <code>name.familyName</code>
+     * @param <T>  the type of the indexed resources
+     * @return the new index
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the resources don't have the given
+     *                                                                   attribute
+     */
+    public static <T extends Resource> PrefixIndex<T> forAttribute(Class<T> type, String path) {
+        return new PrefixIndex<>(type, AttributePath.parse(path));
+    }
+
+    @Override
+    public AttributePath getPath() {
+        return path;
+    }
+
+    @Override
+    public void add(T resource) {
+        List<String> values = values(resource);
+        lock.writeLock().lock();
+        try {
+            for (String value : values) {
+                Node node = root;
+                String key = key(value);
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.getOrAddChild(key.charAt(i));
+                }
+                if (node.ids == null) {
+                    node.ids = new HashSet<>(2);
+                    node.value = value;
+                }
+                node.ids.add(resource.getId());
+            }
+            if (!values.isEmpty()) {
+                idsWithValue.add(resource.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(T resource) {
+        List<String> values = values(resource);
+        lock.writeLock().lock();
+        try {
+            for (String value : values) {
+                remove(key(value), resource.getId());
+            }
+            idsWithValue.remove(resource.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String key, String id) {
+        Node[] nodes = new Node[key.length() + 1];
+        nodes[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            nodes[i + 1] = nodes[i].getChild(key.charAt(i));
+            if (nodes[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = nodes[key.length()];
+        if (node.ids == null || !node.ids.remove(id) || !node.ids.isEmpty()) {
+            return;
+        }
+        node.ids = null;
+        node.value = null;
+        for (int i = key.length(); i > 0 && nodes[i].isEmpty(); i--) {
+            nodes[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    private List<String> values(T resource) {
+        List<Object> values = new ArrayList<>();
+        attributeValues.collect(resource, values);
+        List<String> stringValues = new ArrayList<>(values.size());
+        for (Object value : values) {
+            stringValues.add(value.toString());
+        }
+        return stringValues;
+    }
+
+    private String key(String value) {
+        return caseExact ? value : AttributeValues.foldCase(value);
+    }
+
+    @Override
+    public Set<String> findCandidates(AttributeExpression expression) {
+        ComparisonOperator operator = expression.getOperator();
+        lock.readLock().lock();
+        try {
+            if (operator == ComparisonOperator.PR) {
+                return new HashSet<>(idsWithValue);
+            }
+            if (operator != ComparisonOperator.SW && operator != ComparisonOperator.EQ
+                    || !(expression.getValue() instanceof String)) {
+                return null;
+            }
+            Set<String> candidates = new HashSet<>();
+            Node node = find((String) expression.getValue());
+            if (node == null) {
+                return candidates;
+            }
+            if (operator == ComparisonOperator.EQ) {
+                if (node.ids != null) {
+                    candidates.addAll(node.ids);
+                }
+            } else {
+                node.collectIds(candidates, Integer.MAX_VALUE);
+            }
+            return candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the resources with a value that starts with the given prefix, ordered by their values.
+     *
+     * @param prefix the prefix
+     * @param limit  the maximum number of ids to return
+     * @return the ids of at most <code>limit</code> resources
+     */
+    public List<String> findIds(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = new LinkedHashSet<>();
+            Node node = find(prefix);
+            if (node != null && limit > 0) {
+                node.collectIds(ids, limit);
+            }
+            return new ArrayList<>(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Autocompletes the given prefix with the indexed values. Values that only differ in case are returned once in the
+     * spelling they have been indexed with first.
+     *
+     * @param prefix the prefix, e.g. the text the user typed so far
+     * @param limit  the maximum number of values to return
+     * @return at most <code>limit</code> values that start with the given prefix, in alphabetical order
+     */
+    public List<String> complete(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> values = new ArrayList<>();
+            Node node = find(prefix);
+            if (node != null && limit > 0) {
+                node.collectValues(values, limit);
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node find(String prefix) {
+        String key = key(prefix);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.getChild(key.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * A node of the tree. The children are kept in arrays sorted by their character, so they can be found by binary
+     * search and are traversed in alphabetical order.
+     */
+    private static final class Node {
+
+        private static final char[] NO_CHARS = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        private char[] chars = NO_CHARS;
+        private Node[] children = NO_NODES;
+        private Set<String> ids;
+        private String value;
+
+        private Node getChild(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertionPoint = -index - 1;
+            char[] newChars = new char[chars.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, insertionPoint);
+            System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+            System.arraycopy(chars, insertionPoint, newChars, insertionPoint + 1, chars.length - insertionPoint);
+            System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1,
+                    children.length - insertionPoint);
+            Node child = new Node();
+            newChars[insertionPoint] = c;
+            newChildren[insertionPoint] = child;
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+
+        private void removeChild(char c) {
+            int index = Arrays.binarySearch(chars, c);
+            if (index < 0) {
+                return;
+            }
+            char[] newChars = new char[chars.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(chars, 0, newChars, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(chars, index + 1, newChars, index, chars.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            chars = newChars.length == 0 ? NO_CHARS : newChars;
+            children = newChildren.length == 0 ? NO_NODES : newChildren;
+        }
+
+        private boolean isEmpty() {
+            return ids == null && chars.length == 0;
+        }
+
+        private boolean collectIds(Set<String> result, int limit) {
+            if (ids != null) {
+                for (String id : ids) {
+                    result.add(id);
+                    if (result.size() >= limit) {
+                        return false;
+                    }
+                }
+            }
+            for (Node child : children) {
+                if (!child.collectIds(result, limit)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean collectValues(List<String> result, int limit) {
+            if (value != null) {
+                result.add(value);
+                if (result.size() >= limit) {
+                    return false;
+                }
+            }
+            for (Node child : children) {
+                if (!child.collectValues(result, limit)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
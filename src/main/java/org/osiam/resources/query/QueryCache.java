@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.CompiledFilter;
+import org.osiam.resources.filter.Filter;
+import org.osiam.resources.scim.Resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A cache of the ids of query results. A result is found by its normalized filter (see {@link Filter#normalize()}),
+ * its sort and its page, so e.g. <code>active eq true and groups.value eq "admins"</code> and
+ * <code>groups.value eq "admins" and Active eq true</code> share one entry.
+ * <p>
+ * When a resource is added, changed or removed, {@link #update(Resource, Resource)} has to be called. Only the
+ * results that can change are removed from the cache: results of filters that match an added or removed resource and
+ * results that reference an attribute that has changed in a changed resource. The least recently used results are
+ * removed when the cache is full. The cache is thread safe.
+ * </p>
+ *
+ * @param <T> the type of the resources
+ */
+public final class QueryCache<T extends Resource> {
+
+    private final Class<T> type;
+    private final int maximumSize;
+    private final Map<String, Entry<T>> entries;
+    private final Map<AttributePath, ReferencingEntries<T>> entriesByAttribute = new HashMap<>();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param type        the type of the resources
+     * @param maximumSize the maximum number of cached results
+     */
+    public QueryCache(Class<T> type, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The maximum size of the cache must be positive");
+        }
+        this.type = type;
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Looks up the ids of the result of the given query.
+     *
+     * @param filter     the filter of the query
+     * @param sort       the sort of the query
+     * @param startIndex the 1-based index of the first result
+     * @param count      the maximum number of results
+     * @return the ids of the cached result or null if the result is not cached
+     */
+    public synchronized List<String> get(Filter filter, CompiledSort<T> sort, int startIndex, int count) {
+        Entry<T> entry = entries.get(key(filter.normalize(), sort, startIndex, count));
+        return entry != null ? entry.ids : null;
+    }
+
+    /**
+     * Caches the ids of the result of the given query.
+     *
+     * @param filter     the filter of the query
+     * @param sort       the sort of the query
+     * @param startIndex the 1-based index of the first result
+     * @param count      the maximum number of results
+     * @param ids        the ids of the result
+     */
+    public synchronized void put(Filter filter, CompiledSort<T> sort, int startIndex, int count, List<String> ids) {
+        String key = key(filter.normalize(), sort, startIndex, count);
+        remove(key);
+        Set<AttributePath> paths = new HashSet<>(ReferencedAttributes.of(filter));
+        paths.add(sort.getSortBy());
+        Entry<T> entry = new Entry<>(key, CompiledFilter.compile(filter, type), paths,
+                Collections.unmodifiableList(new ArrayList<>(ids)));
+        entries.put(key, entry);
+        for (AttributePath path : paths) {
+            ReferencingEntries<T> referencingEntries = entriesByAttribute.get(path);
+            if (referencingEntries == null) {
+                referencingEntries = new ReferencingEntries<>(AttributeValues.forPath(type, path));
+                entriesByAttribute.put(path, referencingEntries);
+            }
+            referencingEntries.keys.add(key);
+        }
+        if (entries.size() > maximumSize) {
+            remove(entries.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Builds the key of a result from the normalized filter. The filter and the paths of an entry that detect changes
+     * are taken from the original query, as the normalized one is only meant to be compared.
+     */
+    private static String key(Filter normalizedFilter, CompiledSort<?> sort, int startIndex, int count) {
+        AttributePath sortBy = sort.getSortBy();
+        String sortKey = sortBy.getUrn() != null ? sortBy.toString() : sortBy.toString().toLowerCase(Locale.ENGLISH);
+        return normalizedFilter + "\u0000" + sortKey + "\u0000" + sort.getSortOrder() + "\u0000" + sort.getLocale()
+                + "\u0000" + startIndex + "\u0000" + count;
+    }
+
+    /**
+     * Removes the cached result of the given query, e.g. if it turned out to be stale.
+     *
+     * @param filter     the filter of the query
+     * @param sort       the sort of the query
+     * @param startIndex the 1-based index of the first result
+     * @param count      the maximum number of results
+     */
+    public synchronized void remove(Filter filter, CompiledSort<T> sort, int startIndex, int count) {
+        remove(key(filter.normalize(), sort, startIndex, count));
+    }
+
+    /**
+     * Removes the results that can change by the given modification of a resource.
+     *
+     * @param oldResource the resource before the modification or null if the resource has been added
+     * @param newResource the resource after the modification or null if the resource has been removed
+     */
+    public synchronized void update(T oldResource, T newResource) {
+        if (oldResource == null || newResource == null) {
+            T resource = oldResource != null ? oldResource : newResource;
+            if (resource == null) {
+                return;
+            }
+            List<String> matchingKeys = new ArrayList<>();
+            for (Entry<T> entry : entries.values()) {
+                if (entry.filter.matches(resource)) {
+                    matchingKeys.add(entry.key);
+                }
+            }
+            for (String key : matchingKeys) {
+                remove(key);
+            }
+            return;
+        }
+        List<String> changedKeys = new ArrayList<>();
+        for (ReferencingEntries<T> referencingEntries : entriesByAttribute.values()) {
+            if (referencingEntries.hasChanged(oldResource, newResource)) {
+                changedKeys.addAll(referencingEntries.keys);
+            }
+        }
+        for (String key : changedKeys) {
+            remove(key);
+        }
+    }
+
+    private void remove(String key) {
+        Entry<T> entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        for (AttributePath path : entry.paths) {
+            ReferencingEntries<T> referencingEntries = entriesByAttribute.get(path);
+            referencingEntries.keys.remove(key);
+            if (referencingEntries.keys.isEmpty()) {
+                entriesByAttribute.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        entriesByAttribute.clear();
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<T> {
+        private final String key;
+        private final CompiledFilter<T> filter;
+        private final Set<AttributePath> paths;
+        private final List<String> ids;
+
+        private Entry(String key, CompiledFilter<T> filter, Set<AttributePath> paths, List<String> ids) {
+            this.key = key;
+            this.filter = filter;
+            this.paths = paths;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * The keys of the entries that reference an attribute.
+     */
+    private static final class ReferencingEntries<T> {
+        private final AttributeValues attributeValues;
+        private final Set<String> keys = new HashSet<>();
+
+        private ReferencingEntries(AttributeValues attributeValues) {
+            this.attributeValues = attributeValues;
+        }
+
+        private boolean hasChanged(T oldResource, T newResource) {
+            List<Object> oldValues = new ArrayList<>();
+            List<Object> newValues = new ArrayList<>();
+            attributeValues.collect(oldResource, oldValues);
+            attributeValues.collect(newResource, newValues);
+            return !oldValues.equals(newValues);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.ComparisonOperator;
+import org.osiam.resources.filter.Filter;
+import org.osiam.resources.filter.FilterVisitor;
+import org.osiam.resources.filter.LogicalExpression;
+import org.osiam.resources.filter.NotExpression;
+import org.osiam.resources.filter.ValuePathExpression;
+import org.osiam.resources.scim.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses the indexes that answer a filter. The result of planning a filter is the set of ids of all users that may
+ * match it or null if the filter can't be answered by the indexes and all users have to be scanned.
+ * <p>
+ * Expressions on indexed attributes are answered by the index with the fewest candidates, "and" intersects the
+ * candidates of all operands that can be answered and "or" unites the candidates if all operands can be answered.
+ * "not" can't be answered by an index.
+ * </p>
+ */
+final class QueryPlanner implements FilterVisitor<Set<String>> {
+
+    private static final Comparator<Set<String>> BY_SIZE = new Comparator<Set<String>>() {
+        @Override
+        public int compare(Set<String> ids, Set<String> otherIds) {
+            return Integer.compare(ids.size(), otherIds.size());
+        }
+    };
+
+    private final Map<AttributePath, List<ResourceIndex<User>>> indexes;
+    private final AttributePath valuePath;
+
+    QueryPlanner(Map<AttributePath, List<ResourceIndex<User>>> indexes) {
+        this(indexes, null);
+    }
+
+    private QueryPlanner(Map<AttributePath, List<ResourceIndex<User>>> indexes, AttributePath valuePath) {
+        this.indexes = indexes;
+        this.valuePath = valuePath;
+    }
+
+    Set<String> findCandidates(Filter filter) {
+        return filter.accept(this);
+    }
+
+    @Override
+    public Set<String> visit(AttributeExpression expression) {
+        AttributePath path = expression.getPath();
+        if (valuePath != null) {
+            if (path.getUrn() != null || path.getSubAttribute() != null) {
+                return null;
+            }
+            path = new AttributePath(valuePath.getUrn(), valuePath.getAttribute(), path.getAttribute());
+        } else if (expression.getOperator() == ComparisonOperator.PR
+                && AttributeValues.hasImplicitValue(User.class, path)) {
+            // "emails pr" is true for emails without value, so it can't be answered by the index of emails.value
+            return null;
+        }
+        List<ResourceIndex<User>> pathIndexes = indexes.get(AttributeValues.canonicalPath(User.class, path));
+        if (pathIndexes == null) {
+            return null;
+        }
+        Set<String> fewestCandidates = null;
+        for (ResourceIndex<User> index : pathIndexes) {
+            Set<String> candidates = index.findCandidates(expression);
+            if (candidates != null && (fewestCandidates == null || candidates.size() < fewestCandidates.size())) {
+                fewestCandidates = candidates;
+            }
+        }
+        return fewestCandidates;
+    }
+
+    @Override
+    public Set<String> visit(LogicalExpression expression) {
+        List<Set<String>> operandCandidates = new ArrayList<>();
+        for (Filter operand : expression.getOperands()) {
+            Set<String> candidates = operand.accept(this);
+            if (candidates == null && expression.getOperator() == LogicalExpression.Operator.OR) {
+                return null;
+            }
+            if (candidates != null) {
+                operandCandidates.add(candidates);
+            }
+        }
+        if (operandCandidates.isEmpty()) {
+            return null;
+        }
+        if (operandCandidates.size() == 1) {
+            return operandCandidates.get(0);
+        }
+        Collections.sort(operandCandidates, BY_SIZE);
+        Set<String> result = new HashSet<>(operandCandidates.get(0));
+        for (Set<String> candidates : operandCandidates.subList(1, operandCandidates.size())) {
+            if (expression.getOperator() == LogicalExpression.Operator.AND) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result.retainAll(candidates);
+            } else {
+                result.addAll(candidates);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> visit(NotExpression expression) {
+        return null;
+    }
+
+    @Override
+    public Set<String> visit(ValuePathExpression expression) {
+        if (valuePath != null) {
+            return null;
+        }
+        return new QueryPlanner(indexes, expression.getPath()).findCandidates(expression.getFilter());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.Filter;
+import org.osiam.resources.filter.FilterVisitor;
+import org.osiam.resources.filter.LogicalExpression;
+import org.osiam.resources.filter.NotExpression;
+import org.osiam.resources.filter.ValuePathExpression;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the paths of the attributes a filter references. A value path references its whole attribute.
+ */
+final class ReferencedAttributes implements FilterVisitor<Void> {
+
+    private final Set<AttributePath> paths = new HashSet<>();
+
+    static Set<AttributePath> of(Filter filter) {
+        ReferencedAttributes referencedAttributes = new ReferencedAttributes();
+        filter.accept(referencedAttributes);
+        return referencedAttributes.paths;
+    }
+
+    @Override
+    public Void visit(AttributeExpression expression) {
+        paths.add(expression.getPath());
+        return null;
+    }
+
+    @Override
+    public Void visit(LogicalExpression expression) {
+        for (Filter operand : expression.getOperands()) {
+            operand.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(NotExpression expression) {
+        return expression.getFilter().accept(this);
+    }
+
+    @Override
+    public Void visit(ValuePathExpression expression) {
+        paths.add(expression.getPath());
+        return null;
+    }
+}
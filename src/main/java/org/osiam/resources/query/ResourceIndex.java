@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.scim.Resource;
+
+import java.util.Set;
+
+/**
+ * A secondary index over one attribute of resources, e.g. of the {@link org.osiam.resources.scim.User}s of an
+ * {@link IndexedUserCollection}.
+ * <p>
+ * An index that is used by a collection is only modified by the collection, which makes sure that the index isn't
+ * used concurrently with a modification.
+ * </p>
+ *
+ * @param <T> the type of the indexed resources
+ */
+public interface ResourceIndex<T extends Resource> {
+
+    /**
+     * @return the path of the indexed attribute, e.g. <code>emails.value</code>
+     */
+    AttributePath getPath();
+
+    /**
+     * Adds the values of the given resource to this index.
+     *
+     * @param resource the resource
+     */
+    void add(T resource);
+
+    /**
+     * Removes the values of the given resource, which has been added before, from this index.
+     *
+     * @param resource the resource
+     */
+    void remove(T resource);
+
+    /**
+     * Looks up the ids of the resources that may match the given expression on the indexed attribute. The result has
+     * to contain all matching resources, but may contain resources that don't match.
+     *
+     * @param expression an expression on the indexed attribute
+     * @return the ids of the candidates or null if this index can't answer the expression. The returned set must not be
+     * modified and is only valid until the index is modified.
+     */
+    Set<String> findCandidates(AttributeExpression expression);
+}
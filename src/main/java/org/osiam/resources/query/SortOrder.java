@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+/**
+ * The order of a SCIM query result as given by the <code>sortOrder</code> parameter.
+ */
+public enum SortOrder {
+    ASCENDING("ascending"), DESCENDING("descending");
+
+    private final String value;
+
+    SortOrder(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Looks up the sort order with the given name. Names are case insensitive.
+     *
+     * @param value "ascending" or "descending"
+     * @return the sort order
+     * @throws SCIMDataValidationException if the given value is not a sort order
+     */
+    @JsonCreator
+    public static SortOrder fromString(String value) {
+        for (SortOrder sortOrder : values()) {
+            if (sortOrder.value.equalsIgnoreCase(value)) {
+                return sortOrder;
+            }
+        }
+        throw new SCIMDataValidationException("The sort order '" + value + "' is not valid.");
+    }
+
+    @JsonValue
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.scim.SCIMSearchResult;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the sorted results of several sources, e.g. the shards of a federated directory, into one sorted result:
+ * <p>
+ * <pre>
+ * CompiledSort&lt;User&gt; sort = CompiledSort.compile("userName", SortOrder.ASCENDING, User.class);
+ * SortedPageMerger&lt;User&gt; merger = new SortedPageMerger&lt;&gt;(sort);
+ * SCIMSearchResult&lt;User&gt; page = merger.page(Arrays.asList(shard1Pages, shard2Pages), 201, 100);
+ * </pre>
+ * </p>
+ * <p>
+ * Every source is an {@link Iterator} over the pages of one search that is sorted by the same sort, so its pages can
+ * be fetched lazily, e.g. from a remote service provider. The merge keeps the next resource of every source in a heap
+ * and only fetches the next page of a source when its current page has been consumed, so at most one page per source
+ * is held in memory and the sort key of every resource is computed once. Resources with equal sort keys are returned
+ * in the order of their sources.
+ * </p>
+ *
+ * @param <T> the type of the resources
+ */
+public final class SortedPageMerger<T> {
+
+    private final CompiledSort<T> sort;
+
+    /**
+     * Creates a merger for results sorted by the given sort.
+     *
+     * @param sort the sort all sources are sorted by
+     */
+    public SortedPageMerger(CompiledSort<T> sort) {
+        if (sort == null) {
+            throw new IllegalArgumentException("The sort can't be null");
+        }
+        this.sort = sort;
+    }
+
+    /**
+     * Merges the given sources lazily. The first page of every source is fetched when this method is called, further
+     * pages when they are needed.
+     *
+     * @param sources the pages of every source
+     * @return an iterator over all resources of all sources in sorted order
+     */
+    public Iterator<T> merge(List<? extends Iterator<SCIMSearchResult<T>>> sources) {
+        return new MergingIterator(sources);
+    }
+
+    /**
+     * Returns a page of the merged result. Only the resources up to the end of the requested page are read from the
+     * sources. The total number of results is the sum of the total results of the first page of every source.
+     *
+     * @param sources    the pages of every source, starting with the first page of its result
+     * @param startIndex the 1-based index of the first resource of the page in the merged result, values less than 1
+     *                   are interpreted as 1
+     * @param count      the maximum number of resources of the page
+     * @return the requested page of the merged result
+     */
+    public SCIMSearchResult<T> page(List<? extends Iterator<SCIMSearchResult<T>>> sources, int startIndex,
+                                    int count) {
+        int start = Math.max(startIndex, 1);
+        MergingIterator merged = new MergingIterator(sources);
+        for (int skipped = 1; skipped < start && merged.hasNext(); skipped++) {
+            merged.next();
+        }
+        List<T> resources = new ArrayList<>();
+        while (resources.size() < count && merged.hasNext()) {
+            resources.add(merged.next());
+        }
+        return new SCIMSearchResult<>(resources, merged.totalResults, resources.size(), start);
+    }
+
+    private final class MergingIterator implements Iterator<T> {
+
+        private final Collator collator = sort.createCollator();
+        private final PriorityQueue<Source> heads;
+        private long totalResults;
+
+        private MergingIterator(List<? extends Iterator<SCIMSearchResult<T>>> sources) {
+            final int direction = sort.direction();
+            heads = new PriorityQueue<>(Math.max(sources.size(), 1), new Comparator<Source>() {
+                @Override
+                public int compare(Source source, Source otherSource) {
+                    int result = direction * CompiledSort.compareKeys(source.key, otherSource.key);
+                    return result != 0 ? result : Integer.compare(source.index, otherSource.index);
+                }
+            });
+            int index = 0;
+            for (Iterator<SCIMSearchResult<T>> pages : sources) {
+                Source source = new Source(pages, index++);
+                if (source.advance()) {
+                    heads.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Source source = heads.poll();
+            if (source == null) {
+                throw new NoSuchElementException();
+            }
+            T resource = source.head;
+            if (source.advance()) {
+                heads.add(source);
+            }
+            return resource;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private final class Source {
+
+            private final Iterator<SCIMSearchResult<T>> pages;
+            private final int index;
+            private Iterator<T> page = Collections.<T>emptyList().iterator();
+            private boolean firstPage = true;
+            private T head;
+            private Object key;
+
+            private Source(Iterator<SCIMSearchResult<T>> pages, int index) {
+                this.pages = pages;
+                this.index = index;
+            }
+
+            /**
+             * Moves to the next resource of this source, fetching the next page if necessary.
+             *
+             * @return false if the source is exhausted
+             */
+            private boolean advance() {
+                while (!page.hasNext() && pages.hasNext()) {
+                    SCIMSearchResult<T> result = pages.next();
+                    if (firstPage) {
+                        totalResults += result.getTotalResults();
+                        firstPage = false;
+                    }
+                    page = result.getResources().iterator();
+                }
+                if (!page.hasNext()) {
+                    head = null;
+                    key = null;
+                    return false;
+                }
+                head = page.next();
+                key = CompiledSort.toKey(sort.sortValue(head), collator);
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.query;
+
+import org.osiam.resources.filter.AttributeExpression;
+import org.osiam.resources.filter.AttributePath;
+import org.osiam.resources.filter.ComparisonOperator;
+import org.osiam.resources.scim.Resource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index of the trigrams, i.e. all substrings of three characters, of the string values of an attribute. It narrows
+ * "co" expressions like <code>displayName co "ller"</code> or <code>emails.value co "@partner"</code> down to the
+ * resources that contain all trigrams of the searched string. "sw", "ew" and "eq" are answered the same way.
+ * <p>
+ * The candidates may contain resources that only contain the trigrams but not the searched string itself, so they
+ * have to be verified, e.g. by the {@link org.osiam.resources.filter.CompiledFilter} that
+ * {@link IndexedUserCollection} evaluates for all candidates. Strings shorter than three characters can't be
+ * answered. Values are indexed case insensitive unless the attribute is case exact. The index is thread safe.
+ * </p>
+ * <p>
+ * Every trigram keeps a sorted array of the internal numbers of the resources that contain it, so the index needs
+ * about four bytes per distinct trigram of a resource. {@link #getEstimatedMemoryUsage()} reports the estimated size.
+ * </p>
+ *
+ * @param <T> the type of the indexed resources
+ */
+public final class TrigramIndex<T extends Resource> implements ResourceIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // rough sizes of the objects of the index in a 64 bit JVM with compressed references
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int MAP_ENTRY_SIZE = 40;
+    private static final int BOXED_KEY_SIZE = 16;
+    private static final int POSTINGS_SIZE = 16;
+
+    private static final Comparator<Postings> BY_SIZE = new Comparator<Postings>() {
+        @Override
+        public int compare(Postings postings, Postings otherPostings) {
+            return Integer.compare(postings.size, otherPostings.size);
+        }
+    };
+
+    private final AttributePath path;
+    private final AttributeValues attributeValues;
+    private final boolean caseExact;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postingsByTrigram = new HashMap<>();
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final List<Integer> freeNumbers = new ArrayList<>();
+    private String[] ids = new String[16];
+    private int nextNumber;
+
+    private TrigramIndex(Class<T> type, AttributePath path) {
+        this.path = AttributeValues.canonicalPath(type, path);
+        this.attributeValues = AttributeValues.forPath(type, this.path);
+        this.caseExact = attributeValues.isCaseExact();
+    }
+
+    /**
+     * Creates a trigram index over the given attribute of resources.
+     *
+     * @param type the type of the indexed resources
+     * @param path the path of the attribute, e.g. <code>displayName</code> or <code>emails.value</code>
+     * @param <T>  the type of the indexed resources
+     * @return the new index
+     * @throws org.osiam.resources.exception.SCIMDataValidationException if the resources don't have the given
+     *                                                                   attribute
+     */
+    public static <T extends Resource> TrigramIndex<T> forAttribute(Class<T> type, String path) {
+        return new TrigramIndex<>(type, AttributePath.parse(path));
+    }
+
+    @Override
+    public AttributePath getPath() {
+        return path;
+    }
+
+    @Override
+    public void add(T resource) {
+        Set<Long> trigrams = trigrams(resource);
+        if (trigrams.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int number = numberOf(resource.getId());
+            for (Long trigram : trigrams) {
+                Postings postings = postingsByTrigram.get(trigram);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTrigram.put(trigram, postings);
+                }
+                postings.add(number);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int numberOf(String id) {
+        Integer number = numbers.get(id);
+        if (number != null) {
+            return number;
+        }
+        if (!freeNumbers.isEmpty()) {
+            number = freeNumbers.remove(freeNumbers.size() - 1);
+        } else {
+            number = nextNumber++;
+            if (number == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+        }
+        numbers.put(id, number);
+        ids[number] = id;
+        return number;
+    }
+
+    @Override
+    public void remove(T resource) {
+        Set<Long> trigrams = trigrams(resource);
+        lock.writeLock().lock();
+        try {
+            Integer number = numbers.remove(resource.getId());
+            if (number == null) {
+                return;
+            }
+            for (Long trigram : trigrams) {
+                Postings postings = postingsByTrigram.get(trigram);
+                if (postings != null && postings.remove(number) && postings.size == 0) {
+                    postingsByTrigram.remove(trigram);
+                }
+            }
+            ids[number] = null;
+            freeNumbers.add(number);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Set<Long> trigrams(T resource) {
+        List<Object> values = new ArrayList<>();
+        attributeValues.collect(resource, values);
+        Set<Long> trigrams = new HashSet<>();
+        for (Object value : values) {
+            addTrigrams(key(value.toString()), trigrams);
+        }
+        return trigrams;
+    }
+
+    private String key(String value) {
+        return caseExact ? value : AttributeValues.foldCase(value);
+    }
+
+    private static void addTrigrams(String key, Set<Long> trigrams) {
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            trigrams.add(((long) key.charAt(i) << 32) | ((long) key.charAt(i + 1) << 16) | key.charAt(i + 2));
+        }
+    }
+
+    @Override
+    public Set<String> findCandidates(AttributeExpression expression) {
+        ComparisonOperator operator = expression.getOperator();
+        if (operator != ComparisonOperator.CO && operator != ComparisonOperator.SW
+                && operator != ComparisonOperator.EW && operator != ComparisonOperator.EQ
+                || !(expression.getValue() instanceof String)
+                || ((String) expression.getValue()).length() < GRAM_LENGTH) {
+            return null;
+        }
+        Set<Long> trigrams = new HashSet<>();
+        addTrigrams(key((String) expression.getValue()), trigrams);
+        lock.readLock().lock();
+        try {
+            List<Postings> postingsOfTrigrams = new ArrayList<>(trigrams.size());
+            for (Long trigram : trigrams) {
+                Postings postings = postingsByTrigram.get(trigram);
+                if (postings == null) {
+                    return Collections.emptySet();
+                }
+                postingsOfTrigrams.add(postings);
+            }
+            Collections.sort(postingsOfTrigrams, BY_SIZE);
+            Postings smallest = postingsOfTrigrams.get(0);
+            int[] candidates = Arrays.copyOf(smallest.numbers, smallest.size);
+            int candidateCount = candidates.length;
+            for (Postings postings : postingsOfTrigrams.subList(1, postingsOfTrigrams.size())) {
+                candidateCount = postings.retainAll(candidates, candidateCount);
+            }
+            Set<String> candidateIds = new HashSet<>(candidateCount * 4 / 3 + 1);
+            for (int i = 0; i < candidateCount; i++) {
+                candidateIds.add(ids[candidates[i]]);
+            }
+            return candidateIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed resources
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return numbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the memory this index needs, excluding the ids of the resources, which are shared with the resources.
+     *
+     * @return the estimated size of this index in bytes
+     */
+    public long getEstimatedMemoryUsage() {
+        lock.readLock().lock();
+        try {
+            long size = (long) ARRAY_HEADER_SIZE + 4L * ids.length
+                    + (long) numbers.size() * (MAP_ENTRY_SIZE + BOXED_KEY_SIZE)
+                    + (long) freeNumbers.size() * (BOXED_KEY_SIZE + 4);
+            for (Postings postings : postingsByTrigram.values()) {
+                size += MAP_ENTRY_SIZE + BOXED_KEY_SIZE + POSTINGS_SIZE + ARRAY_HEADER_SIZE
+                        + 4L * postings.numbers.length;
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the memory this index needs per indexed resource, see {@link #getEstimatedMemoryUsage()}.
+     *
+     * @return the estimated size in bytes per indexed resource or 0 if the index is empty
+     */
+    public double getEstimatedMemoryUsagePerResource() {
+        lock.readLock().lock();
+        try {
+            return numbers.isEmpty() ? 0 : (double) getEstimatedMemoryUsage() / numbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The sorted numbers of the resources that contain a trigram.
+     */
+    private static final class Postings {
+
+        private int[] numbers = new int[2];
+        private int size;
+
+        private void add(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index >= 0) {
+                return;
+            }
+            int insertionPoint = -index - 1;
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size + (size >> 1) + 1);
+            }
+            System.arraycopy(numbers, insertionPoint, numbers, insertionPoint + 1, size - insertionPoint);
+            numbers[insertionPoint] = number;
+            size++;
+        }
+
+        private boolean remove(int number) {
+            int index = Arrays.binarySearch(numbers, 0, size, number);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(numbers, index + 1, numbers, index, size - index - 1);
+            size--;
+            if (size < numbers.length / 4) {
+                numbers = Arrays.copyOf(numbers, Math.max(size * 2, 2));
+            }
+            return true;
+        }
+
+        /**
+         * Keeps only the candidates that are contained in these postings.
+         *
+         * @return the new number of candidates
+         */
+        private int retainAll(int[] candidates, int candidateCount) {
+            int retained = 0;
+            int start = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                int index = Arrays.binarySearch(numbers, start, size, candidates[i]);
+                if (index >= 0) {
+                    candidates[retained++] = candidates[i];
+                    start = index + 1;
+                } else {
+                    start = -index - 1;
+                }
+            }
+            return retained;
+        }
+    }
+}
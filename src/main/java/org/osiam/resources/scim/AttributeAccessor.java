@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Precomputed read access to an attribute of the SCIM classes. Accessors are looked up once by type and attribute
+ * name, so that evaluating filters or patch paths against many resources neither needs reflection nor a conversion
+ * into JSON. Multi-valued attributes are read without copying them.
+ * <p>
+ * Attribute names are case insensitive as defined by SCIM. Values are returned as {@link String}, {@link Boolean},
+ * {@link Date} or as the object of a complex attribute, types of multi-valued attributes are returned as their
+ * {@link String} value. Date time attributes of type {@link Date} are returned as a {@link Long} of their milliseconds
+ * since the epoch, so reading them doesn't copy a {@link Date}. Multi-valued attributes return the {@link Collection}
+ * of their values, which must not be modified.
+ * </p>
+ */
+public abstract class AttributeAccessor {
+
+    private static final int MULTI_VALUED = 1;
+    private static final int CASE_EXACT = 2;
+
+    private static final Map<Class<?>, Map<String, AttributeAccessor>> ACCESSORS = new HashMap<>();
+
+    static {
+        register(Resource.class, new AttributeAccessor("id", String.class, CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Resource) object).getId();
+            }
+        });
+        register(Resource.class, new AttributeAccessor("externalId", String.class, CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Resource) object).getExternalId();
+            }
+        });
+        register(Resource.class, new AttributeAccessor("meta", Meta.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Resource) object).getMeta();
+            }
+        });
+        register(Resource.class, new AttributeAccessor("schemas", String.class, MULTI_VALUED | CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Resource) object).internalSchemas();
+            }
+        });
+        register(Meta.class, new AttributeAccessor("created", Date.class) {
+            @Override
+            public Object getValue(Object object) {
+                return toMillis(((Meta) object).getCreatedMillis());
+            }
+        });
+        register(Meta.class, new AttributeAccessor("lastModified", Date.class) {
+            @Override
+            public Object getValue(Object object) {
+                return toMillis(((Meta) object).getLastModifiedMillis());
+            }
+        });
+        register(Meta.class, new AttributeAccessor("location", String.class, CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Meta) object).getLocation();
+            }
+        });
+        register(Meta.class, new AttributeAccessor("version", String.class, CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Meta) object).getVersion();
+            }
+        });
+        register(Meta.class, new AttributeAccessor("resourceType", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Meta) object).getResourceType();
+            }
+        });
+        register(User.class, new AttributeAccessor("userName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getUserName();
+            }
+        });
+        register(User.class, new AttributeAccessor("displayName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getDisplayName();
+            }
+        });
+        register(User.class, new AttributeAccessor("nickName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getNickName();
+            }
+        });
+        register(User.class, new AttributeAccessor("profileUrl", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getProfileUrl();
+            }
+        });
+        register(User.class, new AttributeAccessor("title", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getTitle();
+            }
+        });
+        register(User.class, new AttributeAccessor("userType", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getUserType();
+            }
+        });
+        register(User.class, new AttributeAccessor("preferredLanguage", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getPreferredLanguage();
+            }
+        });
+        register(User.class, new AttributeAccessor("locale", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getLocale();
+            }
+        });
+        register(User.class, new AttributeAccessor("timezone", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getTimezone();
+            }
+        });
+        register(User.class, new AttributeAccessor("active", Boolean.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).isActive();
+            }
+        });
+        register(User.class, new AttributeAccessor("name", Name.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).getName();
+            }
+        });
+        register(User.class, new AttributeAccessor("emails", Email.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalEmails();
+            }
+        });
+        register(User.class, new AttributeAccessor("phoneNumbers", PhoneNumber.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalPhoneNumbers();
+            }
+        });
+        register(User.class, new AttributeAccessor("ims", Im.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalIms();
+            }
+        });
+        register(User.class, new AttributeAccessor("photos", Photo.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalPhotos();
+            }
+        });
+        register(User.class, new AttributeAccessor("addresses", Address.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalAddresses();
+            }
+        });
+        register(User.class, new AttributeAccessor("groups", GroupRef.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalGroups();
+            }
+        });
+        register(User.class, new AttributeAccessor("entitlements", Entitlement.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalEntitlements();
+            }
+        });
+        register(User.class, new AttributeAccessor("roles", Role.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalRoles();
+            }
+        });
+        register(User.class, new AttributeAccessor("x509Certificates", X509Certificate.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((User) object).internalX509Certificates();
+            }
+        });
+        register(Name.class, new AttributeAccessor("formatted", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getFormatted();
+            }
+        });
+        register(Name.class, new AttributeAccessor("familyName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getFamilyName();
+            }
+        });
+        register(Name.class, new AttributeAccessor("givenName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getGivenName();
+            }
+        });
+        register(Name.class, new AttributeAccessor("middleName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getMiddleName();
+            }
+        });
+        register(Name.class, new AttributeAccessor("honorificPrefix", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getHonorificPrefix();
+            }
+        });
+        register(Name.class, new AttributeAccessor("honorificSuffix", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Name) object).getHonorificSuffix();
+            }
+        });
+        register(Group.class, new AttributeAccessor("displayName", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Group) object).getDisplayName();
+            }
+        });
+        register(Group.class, new AttributeAccessor("members", MemberRef.class, MULTI_VALUED) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Group) object).internalMembers();
+            }
+        });
+        register(MultiValuedAttribute.class, new AttributeAccessor("value", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((MultiValuedAttribute) object).getValue();
+            }
+        });
+        register(MultiValuedAttribute.class, new AttributeAccessor("display", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((MultiValuedAttribute) object).getDisplay();
+            }
+        });
+        register(MultiValuedAttribute.class, new AttributeAccessor("primary", Boolean.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((MultiValuedAttribute) object).isPrimary();
+            }
+        });
+        register(MultiValuedAttribute.class, new AttributeAccessor("$ref", String.class, CASE_EXACT) {
+            @Override
+            public Object getValue(Object object) {
+                return ((MultiValuedAttribute) object).getReference();
+            }
+        });
+        register(Email.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Email) object).getType());
+            }
+        });
+        register(PhoneNumber.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((PhoneNumber) object).getType());
+            }
+        });
+        register(Im.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Im) object).getType());
+            }
+        });
+        register(Photo.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Photo) object).getType());
+            }
+        });
+        register(Entitlement.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Entitlement) object).getType());
+            }
+        });
+        register(Role.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Role) object).getType());
+            }
+        });
+        register(X509Certificate.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((X509Certificate) object).getType());
+            }
+        });
+        register(GroupRef.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((GroupRef) object).getType());
+            }
+        });
+        register(MemberRef.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((MemberRef) object).getType());
+            }
+        });
+        register(Address.class, new AttributeAccessor("type", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return typeValue(((Address) object).getType());
+            }
+        });
+        register(Address.class, new AttributeAccessor("formatted", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getFormatted();
+            }
+        });
+        register(Address.class, new AttributeAccessor("streetAddress", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getStreetAddress();
+            }
+        });
+        register(Address.class, new AttributeAccessor("locality", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getLocality();
+            }
+        });
+        register(Address.class, new AttributeAccessor("region", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getRegion();
+            }
+        });
+        register(Address.class, new AttributeAccessor("postalCode", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getPostalCode();
+            }
+        });
+        register(Address.class, new AttributeAccessor("country", String.class) {
+            @Override
+            public Object getValue(Object object) {
+                return ((Address) object).getCountry();
+            }
+        });
+    }
+
+    private final String name;
+    private final Class<?> type;
+    private final int flags;
+
+    private AttributeAccessor(String name, Class<?> type, int flags) {
+        this.name = name;
+        this.type = type;
+        this.flags = flags;
+    }
+
+    private AttributeAccessor(String name, Class<?> type) {
+        this(name, type, 0);
+    }
+
+    /**
+     * Looks up the accessor for the attribute with the given name of the given type. Accessors of super classes are
+     * inherited.
+     *
+     * @param type          the class containing the attribute, e.g. {@link Email}
+     * @param attributeName the name of the attribute, e.g. "value"
+     * @return the accessor or null if the given type has no attribute with the given name
+     */
+    public static AttributeAccessor forAttribute(Class<?> type, String attributeName) {
+        String key = attributeName.toLowerCase(Locale.ENGLISH);
+        for (Class<?> actualType = type; actualType != null; actualType = actualType.getSuperclass()) {
+            Map<String, AttributeAccessor> accessors = ACCESSORS.get(actualType);
+            if (accessors != null && accessors.containsKey(key)) {
+                return accessors.get(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates an accessor for a field of an extension of a {@link User}. The type of an extension field is only known
+     * at runtime, so the value is returned as {@link String}, {@link Boolean}, {@link Date}, {@link Number} or as the
+     * object of the field's {@link ExtensionFieldType}.
+     *
+     * @param urn       the URN of the extension
+     * @param fieldName the name of the field
+     * @return the accessor
+     */
+    public static AttributeAccessor forExtensionField(final String urn, final String fieldName) {
+        return new AttributeAccessor(fieldName, Object.class) {
+            @Override
+            public Object getValue(Object object) {
+                Extension extension = ((User) object).internalExtensions().get(urn);
+                if (extension == null) {
+                    return null;
+                }
+                Extension.Field field = extension.internalField(fieldName);
+                if (field == null) {
+                    return null;
+                }
+                return field.getType() == ExtensionFieldType.STRING
+                        ? field.getValue() : field.getType().fromString(field.getValue());
+            }
+        };
+    }
+
+    /**
+     * Returns the accessors of all attributes of the given type, including the inherited ones, ordered by name.
+     *
+     * @param type the class containing the attributes
+     * @return the accessors
+     */
+    static List<AttributeAccessor> forType(Class<?> type) {
+        Map<String, AttributeAccessor> accessors = new TreeMap<>();
+        for (Class<?> actualType = type; actualType != null; actualType = actualType.getSuperclass()) {
+            Map<String, AttributeAccessor> typeAccessors = ACCESSORS.get(actualType);
+            if (typeAccessors != null) {
+                for (Map.Entry<String, AttributeAccessor> entry : typeAccessors.entrySet()) {
+                    if (!accessors.containsKey(entry.getKey())) {
+                        accessors.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(accessors.values());
+    }
+
+    private static void register(Class<?> type, AttributeAccessor accessor) {
+        Map<String, AttributeAccessor> accessors = ACCESSORS.get(type);
+        if (accessors == null) {
+            accessors = new HashMap<>();
+            ACCESSORS.put(type, accessors);
+        }
+        accessors.put(accessor.name.toLowerCase(Locale.ENGLISH), accessor);
+    }
+
+    private static Long toMillis(long time) {
+        return time != Meta.NO_TIME ? time : null;
+    }
+
+    private static String typeValue(MultiValuedAttributeType type) {
+        return type != null ? type.getValue() : null;
+    }
+
+    /**
+     * Returns the canonical name of the attribute, e.g. "streetAddress"
+     *
+     * @return the name of the attribute
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the type of the values of the attribute. For multi-valued attributes this is the type of a single value,
+     * for extension fields it is {@link Object}.
+     *
+     * @return the type of the values
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the attribute has multiple values and {@link #getValue(Object)} returns a {@link Collection}
+     */
+    public boolean isMultiValued() {
+        return (flags & MULTI_VALUED) != 0;
+    }
+
+    /**
+     * @return true if string values of the attribute have to be compared case sensitive
+     */
+    public boolean isCaseExact() {
+        return (flags & CASE_EXACT) != 0;
+    }
+
+    /**
+     * Reads the value of the attribute from the given object.
+     *
+     * @param object an instance of the type this accessor has been looked up for
+     * @return the value of the attribute or null if it is not set
+     */
+    public abstract Object getValue(Object object);
+}
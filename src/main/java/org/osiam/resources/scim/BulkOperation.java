@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.common.base.Strings;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.helper.UserDeserializer;
+
+import java.util.Locale;
+
+/**
+ * A single operation of a {@link BulkRequest} or a {@link BulkResponse}.
+ * <p>
+ * The data of an operation is a {@link User} or {@link Group} for POST and PUT operations and an {@link UpdateUser} or
+ * {@link UpdateGroup} for PATCH operations, depending on the path of the operation. Resources created in the same bulk
+ * request can be referenced by <code>bulkId:&lt;bulkId&gt;</code> (see {@link #bulkIdReference(String)}), e.g. as path
+ * of a following operation or as value of a group member.
+ * </p>
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.7">SCIM protocol 2.0, section 3.7</a>
+ * </p>
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public final class BulkOperation {
+
+    public static final String BULK_ID_PREFIX = "bulkId:";
+
+    private static final String USERS_PATH = "/Users";
+    private static final String GROUPS_PATH = "/Groups";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new SimpleModule("BulkOperationModule", Version.unknownVersion())
+                    .addDeserializer(User.class, new UserDeserializer()));
+
+    private final Method method;
+    private final String bulkId;
+    private final String version;
+    private final String path;
+    private final String location;
+    private final Object data;
+    private final String status;
+    private final ErrorResponse response;
+
+    @JsonCreator
+    private BulkOperation(@JsonProperty("method") Method method,
+                          @JsonProperty("bulkId") String bulkId,
+                          @JsonProperty("version") String version,
+                          @JsonProperty("path") String path,
+                          @JsonProperty("location") String location,
+                          @JsonProperty("data") JsonNode data,
+                          @JsonProperty("status") String status,
+                          @JsonProperty("response") ErrorResponse response) {
+        this.method = method;
+        this.bulkId = bulkId;
+        this.version = version;
+        this.path = path;
+        this.location = location;
+        this.data = data == null || data.isNull() ? null : readData(method, path, data);
+        this.status = status;
+        this.response = response;
+    }
+
+    private BulkOperation(Builder builder) {
+        this.method = builder.method;
+        this.bulkId = builder.bulkId;
+        this.version = builder.version;
+        this.path = builder.path;
+        this.location = builder.location;
+        this.data = builder.data;
+        this.status = builder.status;
+        this.response = builder.response;
+    }
+
+    /**
+     * Creates a reference to the resource that is created by the operation with the given bulkId.
+     *
+     * @param bulkId the bulkId of a POST operation
+     * @return the reference, e.g. <code>bulkId:qwerty</code>
+     */
+    public static String bulkIdReference(String bulkId) {
+        return BULK_ID_PREFIX + bulkId;
+    }
+
+    private static Object readData(Method method, String path, JsonNode data) {
+        try {
+            if (isPathOf(path, USERS_PATH)) {
+                User user = MAPPER.treeToValue(data, User.class);
+                return method == Method.PATCH ? new UpdateUser(user) : user;
+            }
+            if (isPathOf(path, GROUPS_PATH)) {
+                Group group = MAPPER.treeToValue(data, Group.class);
+                return method == Method.PATCH ? new UpdateGroup(group) : group;
+            }
+        } catch (JsonProcessingException e) {
+            throw new SCIMDataValidationException("The data of the bulk operation for '" + path
+                    + "' is not valid: " + e.getMessage(), e);
+        }
+        return data;
+    }
+
+    private static boolean isPathOf(String path, String resourcePath) {
+        return path != null && path.startsWith(resourcePath)
+                && (path.length() == resourcePath.length() || path.charAt(resourcePath.length()) == '/');
+    }
+
+    /**
+     * @return the HTTP method of this operation
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the transient identifier of the resource created by this operation
+     */
+    public String getBulkId() {
+        return bulkId;
+    }
+
+    /**
+     * @return the version of the resource, used as ETag for conditional operations
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the path of the resource relative to the service provider, e.g. <code>/Users/2819c223</code>
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the location of the processed resource, only set in a {@link BulkResponse}
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Gets the data of this operation, a {@link User}, {@link Group}, {@link UpdateUser}, {@link UpdateGroup} or a
+     * {@link JsonNode} for unknown resource types.
+     *
+     * @return the data of this operation or null if it has no data
+     */
+    @JsonIgnore
+    public Object getData() {
+        return data;
+    }
+
+    /**
+     * @return the data of this operation if it is a {@link User}, otherwise null
+     */
+    @JsonIgnore
+    public User getUser() {
+        return data instanceof User ? (User) data : null;
+    }
+
+    /**
+     * @return the data of this operation if it is a {@link Group}, otherwise null
+     */
+    @JsonIgnore
+    public Group getGroup() {
+        return data instanceof Group ? (Group) data : null;
+    }
+
+    /**
+     * @return the data of this operation if it is an {@link UpdateUser}, otherwise null
+     */
+    @JsonIgnore
+    public UpdateUser getUpdateUser() {
+        return data instanceof UpdateUser ? (UpdateUser) data : null;
+    }
+
+    /**
+     * @return the data of this operation if it is an {@link UpdateGroup}, otherwise null
+     */
+    @JsonIgnore
+    public UpdateGroup getUpdateGroup() {
+        return data instanceof UpdateGroup ? (UpdateGroup) data : null;
+    }
+
+    @JsonProperty("data")
+    private Object getJsonData() {
+        if (data instanceof UpdateUser) {
+            return ((UpdateUser) data).getScimConformUpdateUser();
+        }
+        if (data instanceof UpdateGroup) {
+            return ((UpdateGroup) data).getScimConformUpdateGroup();
+        }
+        return data;
+    }
+
+    /**
+     * @return the HTTP status code of the processed operation, only set in a {@link BulkResponse}
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the error of a failed operation, only set in a {@link BulkResponse}
+     */
+    public ErrorResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkOperation [method=" + method + ", bulkId=" + bulkId + ", version=" + version + ", path=" + path
+                + ", location=" + location + ", status=" + status + "]";
+    }
+
+    /**
+     * The HTTP method of a {@link BulkOperation}
+     */
+    public enum Method {
+        POST, PUT, PATCH, DELETE;
+
+        @JsonCreator
+        public static Method fromString(String method) {
+            try {
+                return valueOf(method.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new SCIMDataValidationException("The method '" + method
+                        + "' is not supported by bulk operations.", e);
+            }
+        }
+
+        @JsonValue
+        public String getValue() {
+            return name();
+        }
+    }
+
+    /**
+     * Builder class that is used to build {@link BulkOperation} instances
+     */
+    public static class Builder {
+        private final Method method;
+        private final String path;
+        private String bulkId;
+        private String version;
+        private String location;
+        private Object data;
+        private String status;
+        private ErrorResponse response;
+
+        /**
+         * Constructs a new builder for an operation with the given method and path
+         *
+         * @param method the HTTP method
+         * @param path   the path of the resource, e.g. <code>/Users</code> for a POST operation
+         * @throws SCIMDataValidationException if the method or the path is null or empty
+         */
+        public Builder(Method method, String path) {
+            if (method == null || Strings.isNullOrEmpty(path)) {
+                throw new SCIMDataValidationException("The method and the path of a bulk operation can't be empty.");
+            }
+            this.method = method;
+            this.path = path;
+        }
+
+        /**
+         * Constructs a new builder by copying all values from the given {@link BulkOperation}
+         *
+         * @param operation the operation to copy from
+         */
+        public Builder(BulkOperation operation) {
+            this(operation.method, operation.path);
+            this.bulkId = operation.bulkId;
+            this.version = operation.version;
+            this.location = operation.location;
+            this.data = operation.data;
+            this.status = operation.status;
+            this.response = operation.response;
+        }
+
+        /**
+         * Sets the bulkId (See {@link BulkOperation#getBulkId()}).
+         *
+         * @param bulkId the bulkId
+         * @return the builder itself
+         */
+        public Builder setBulkId(String bulkId) {
+            this.bulkId = bulkId;
+            return this;
+        }
+
+        /**
+         * Sets the version (See {@link BulkOperation#getVersion()}).
+         *
+         * @param version the version
+         * @return the builder itself
+         */
+        public Builder setVersion(String version) {
+            this.version = version;
+            return this;
+        }
+
+        /**
+         * Sets the location (See {@link BulkOperation#getLocation()}).
+         *
+         * @param location the location of the processed resource
+         * @return the builder itself
+         */
+        public Builder setLocation(String location) {
+            this.location = location;
+            return this;
+        }
+
+        /**
+         * Sets the user to create or replace
+         *
+         * @param user the user
+         * @return the builder itself
+         */
+        public Builder setData(User user) {
+            this.data = user;
+            return this;
+        }
+
+        /**
+         * Sets the group to create or replace
+         *
+         * @param group the group
+         * @return the builder itself
+         */
+        public Builder setData(Group group) {
+            this.data = group;
+            return this;
+        }
+
+        /**
+         * Sets the update of a PATCH operation
+         *
+         * @param updateUser the update
+         * @return the builder itself
+         */
+        public Builder setData(UpdateUser updateUser) {
+            this.data = updateUser;
+            return this;
+        }
+
+        /**
+         * Sets the update of a PATCH operation
+         *
+         * @param updateGroup the update
+         * @return the builder itself
+         */
+        public Builder setData(UpdateGroup updateGroup) {
+            this.data = updateGroup;
+            return this;
+        }
+
+        /**
+         * Sets the HTTP status code (See {@link BulkOperation#getStatus()}).
+         *
+         * @param status the HTTP status code
+         * @return the builder itself
+         */
+        public Builder setStatus(int status) {
+            this.status = Integer.toString(status);
+            return this;
+        }
+
+        /**
+         * Sets the error of a failed operation (See {@link BulkOperation#getResponse()}).
+         *
+         * @param response the error
+         * @return the builder itself
+         */
+        public Builder setResponse(ErrorResponse response) {
+            this.response = response;
+            return this;
+        }
+
+        /**
+         * Builds the BulkOperation with the given values
+         *
+         * @return a new BulkOperation
+         * @throws SCIMDataValidationException if a POST operation has no bulkId
+         */
+        public BulkOperation build() {
+            if (method == Method.POST && Strings.isNullOrEmpty(bulkId) && status == null) {
+                throw new SCIMDataValidationException("A POST bulk operation requires a bulkId.");
+            }
+            return new BulkOperation(this);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a SCIM 2.0 bulk request that contains a list of {@link BulkOperation}s.
+ * <p>
+ * Large bulk requests don't need to be held in memory completely, they can be written and read operation by operation
+ * with {@link org.osiam.resources.helper.BulkMessageWriter} and {@link org.osiam.resources.helper.BulkMessageReader}.
+ * </p>
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.7">SCIM protocol 2.0, section 3.7</a>
+ * </p>
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public final class BulkRequest {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkRequest";
+
+    private final Set<String> schemas;
+    private final Integer failOnErrors;
+    private final List<BulkOperation> operations;
+
+    @JsonCreator
+    private BulkRequest(@JsonProperty("schemas") Set<String> schemas,
+                        @JsonProperty("failOnErrors") Integer failOnErrors,
+                        @JsonProperty("Operations") List<BulkOperation> operations) {
+        this.schemas = schemas != null ? ImmutableSet.copyOf(schemas) : ImmutableSet.of(SCHEMA);
+        this.failOnErrors = failOnErrors;
+        this.operations = operations != null
+                ? ImmutableList.copyOf(operations) : ImmutableList.<BulkOperation>of();
+    }
+
+    /**
+     * Gets the list of defined schemas
+     *
+     * @return the schemas of this message
+     */
+    public Set<String> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Gets the number of errors after which the service provider stops processing the operations
+     *
+     * @return the number of errors or null if all operations should be processed
+     */
+    public Integer getFailOnErrors() {
+        return failOnErrors;
+    }
+
+    /**
+     * Gets the operations in the order they should be processed
+     *
+     * @return the operations of this request
+     */
+    @JsonProperty("Operations")
+    public List<BulkOperation> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkRequest [failOnErrors=" + failOnErrors + ", operations=" + operations + "]";
+    }
+
+    /**
+     * Builder class that is used to build {@link BulkRequest} instances
+     */
+    public static class Builder {
+
+        private final List<BulkOperation> operations = new ArrayList<>();
+        private final Set<String> bulkIds = new HashSet<>();
+        private Integer failOnErrors;
+
+        /**
+         * Sets the number of errors after which the service provider stops processing the operations
+         *
+         * @param failOnErrors the number of errors
+         * @return the builder itself
+         */
+        public Builder setFailOnErrors(Integer failOnErrors) {
+            this.failOnErrors = failOnErrors;
+            return this;
+        }
+
+        /**
+         * Adds the given operation to the request
+         *
+         * @param operation the operation to add
+         * @return the builder itself
+         * @throws SCIMDataValidationException if the bulkId of the operation is already used by another operation or if
+         *                                     the path of the operation references an unknown bulkId
+         */
+        public Builder addOperation(BulkOperation operation) {
+            if (operation.getBulkId() != null && !bulkIds.add(operation.getBulkId())) {
+                throw new SCIMDataValidationException("The bulkId '" + operation.getBulkId()
+                        + "' is used by more than one operation.");
+            }
+            String path = operation.getPath();
+            int referenceStart = path.indexOf(BulkOperation.BULK_ID_PREFIX);
+            if (referenceStart >= 0) {
+                String bulkId = path.substring(referenceStart + BulkOperation.BULK_ID_PREFIX.length());
+                if (!bulkIds.contains(bulkId)) {
+                    throw new SCIMDataValidationException("The path '" + path
+                            + "' references the bulkId of no previous operation.");
+                }
+            }
+            operations.add(operation);
+            return this;
+        }
+
+        /**
+         * Builds the BulkRequest with the added operations
+         *
+         * @return a new BulkRequest
+         */
+        public BulkRequest build() {
+            return new BulkRequest(null, failOnErrors, operations);
+        }
+    }
+}
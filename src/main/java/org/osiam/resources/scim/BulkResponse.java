@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents a SCIM 2.0 bulk response that contains the results of the {@link BulkOperation}s of a
+ * {@link BulkRequest}.
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.7">SCIM protocol 2.0, section 3.7</a>
+ * </p>
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public final class BulkResponse {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:BulkResponse";
+
+    private final Set<String> schemas;
+    private final List<BulkOperation> operations;
+
+    @JsonCreator
+    private BulkResponse(@JsonProperty("schemas") Set<String> schemas,
+                         @JsonProperty("Operations") List<BulkOperation> operations) {
+        this.schemas = schemas != null ? ImmutableSet.copyOf(schemas) : ImmutableSet.of(SCHEMA);
+        this.operations = operations != null
+                ? ImmutableList.copyOf(operations) : ImmutableList.<BulkOperation>of();
+    }
+
+    /**
+     * Gets the list of defined schemas
+     *
+     * @return the schemas of this message
+     */
+    public Set<String> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Gets the results of the processed operations
+     *
+     * @return the operations of this response
+     */
+    @JsonProperty("Operations")
+    public List<BulkOperation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Gets the result of the operation with the given bulkId
+     *
+     * @param bulkId the bulkId of the operation
+     * @return the result or null if there is no operation with the given bulkId
+     */
+    public BulkOperation getOperation(String bulkId) {
+        for (BulkOperation operation : operations) {
+            if (bulkId.equals(operation.getBulkId())) {
+                return operation;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResponse [operations=" + operations + "]";
+    }
+
+    /**
+     * Builder class that is used to build {@link BulkResponse} instances
+     */
+    public static class Builder {
+
+        private final List<BulkOperation> operations = new ArrayList<>();
+
+        /**
+         * Adds the result of a processed operation
+         *
+         * @param operation the result
+         * @return the builder itself
+         */
+        public Builder addOperation(BulkOperation operation) {
+            operations.add(operation);
+            return this;
+        }
+
+        /**
+         * Builds the BulkResponse with the added operations
+         *
+         * @return a new BulkResponse
+         */
+        public BulkResponse build() {
+            return new BulkResponse(null, operations);
+        }
+    }
+}
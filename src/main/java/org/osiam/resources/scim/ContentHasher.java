@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.scim;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Computes a hash of the content of a {@link User} or {@link Group}, e.g. for a strong ETag in
+ * {@link Meta#getVersion()}. The attributes are fed to the hash function directly, without creating JSON.
+ * <p>
+ * The hash is deterministic: attributes and extension fields are hashed in the order of their names, extensions in
+ * the order of their URNs, and the values of multi-valued attributes, like the schemas or the emails, don't depend on
+ * their order, as SCIM defines them as unordered. Unset attributes and empty multi-valued attributes are skipped, like
+ * in the JSON representation. The version itself is not part of the hash; the password is neither, as it is never
+ * returned. All attributes a filter can address are hashed, see {@link AttributeAccessor}.
+ * </p>
+ * <pre>
+ * String etag = new ContentHasher().etag(user);
+ * User versionedUser = new User.Builder(user)
+ *         .setMeta(new Meta.Builder(user.getMeta()).setVersion(etag).build())
+ *         .build();
+ * </pre>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ */
+public final class ContentHasher {
+
+    private static final ConcurrentMap<Class<?>, List<AttributeAccessor>> ATTRIBUTES = new ConcurrentHashMap<>();
+    private static final Comparator<byte[]> BY_BYTES = UnsignedBytes.lexicographicalComparator();
+
+    private static final byte STRING = 's';
+    private static final byte BOOLEAN = 'b';
+    private static final byte DATE = 'd';
+    private static final byte NUMBER = 'n';
+    private static final byte COMPLEX = 'c';
+    private static final byte MULTI_VALUED = 'm';
+    private static final byte EXTENSION = 'x';
+    private static final byte END = '.';
+
+    private final HashFunction hashFunction;
+
+    /**
+     * Creates a hasher that uses SHA-256
+     */
+    public ContentHasher() {
+        this(Hashing.sha256());
+    }
+
+    /**
+     * @param hashFunction the hash function
+     */
+    public ContentHasher(HashFunction hashFunction) {
+        if (hashFunction == null) {
+            throw new IllegalArgumentException("The hash function can't be null");
+        }
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * @param resource a {@link User} or {@link Group}
+     * @return the hash of the content of the resource
+     */
+    public HashCode hash(Resource resource) {
+        Hasher hasher = hashFunction.newHasher();
+        putObject(hasher, resource);
+        return hasher.hash();
+    }
+
+    /**
+     * @param resource a {@link User} or {@link Group}
+     * @return a strong ETag, i.e. the quoted base64url encoded hash of the content of the resource
+     */
+    public String etag(Resource resource) {
+        return '"' + BaseEncoding.base64Url().omitPadding().encode(hash(resource).asBytes()) + '"';
+    }
+
+    private void putObject(Hasher hasher, Object object) {
+        for (AttributeAccessor accessor : attributes(object.getClass())) {
+            if (object instanceof Meta && "version".equals(accessor.getName())) {
+                continue;
+            }
+            Object value = accessor.getValue(object);
+            if (value == null || value instanceof Collection && ((Collection<?>) value).isEmpty()) {
+                continue;
+            }
+            putString(hasher, accessor.getName());
+            putValue(hasher, value);
+        }
+        if (object instanceof User) {
+            putExtensions(hasher, ((User) object).internalExtensions());
+        }
+        hasher.putByte(END);
+    }
+
+    private void putValue(Hasher hasher, Object value) {
+        if (value instanceof String) {
+            hasher.putByte(STRING);
+            putString(hasher, (String) value);
+        } else if (value instanceof Boolean) {
+            hasher.putByte(BOOLEAN).putBoolean((Boolean) value);
+        } else if (value instanceof Long) {
+            hasher.putByte(DATE).putLong((Long) value);
+        } else if (value instanceof Date) {
+            hasher.putByte(DATE).putLong(((Date) value).getTime());
+        } else if (value instanceof Number) {
+            hasher.putByte(NUMBER);
+            putString(hasher, value.toString());
+        } else if (value instanceof Collection) {
+            putValues(hasher, (Collection<?>) value);
+        } else {
+            hasher.putByte(COMPLEX);
+            putObject(hasher, value);
+        }
+    }
+
+    /**
+     * Hashes each value on its own and puts the sorted hashes, so the result doesn't depend on the order of the values.
+     */
+    private void putValues(Hasher hasher, Collection<?> values) {
+        List<byte[]> hashes = new ArrayList<>(values.size());
+        for (Object value : values) {
+            Hasher valueHasher = hashFunction.newHasher();
+            if (value != null) {
+                putValue(valueHasher, value);
+            }
+            hashes.add(valueHasher.hash().asBytes());
+        }
+        Collections.sort(hashes, BY_BYTES);
+        hasher.putByte(MULTI_VALUED).putInt(hashes.size());
+        for (byte[] hash : hashes) {
+            hasher.putBytes(hash);
+        }
+    }
+
+    private static void putExtensions(Hasher hasher, Map<String, Extension> extensions) {
+        for (Extension extension : new TreeMap<>(extensions).values()) {
+            hasher.putByte(EXTENSION);
+            putString(hasher, extension.getUrn());
+            for (Map.Entry<String, Extension.Field> field : new TreeMap<>(extension.internalFields()).entrySet()) {
+                putString(hasher, field.getKey());
+                putString(hasher, field.getValue().getType().getName());
+                putString(hasher, field.getValue().getValue());
+            }
+            hasher.putByte(END);
+        }
+    }
+
+    /**
+     * Puts the length before the characters, so that adjacent strings can't be confused
+     */
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length()).putString(value, Charsets.UTF_8);
+    }
+
+    private static List<AttributeAccessor> attributes(Class<?> type) {
+        List<AttributeAccessor> attributes = ATTRIBUTES.get(type);
+        if (attributes == null) {
+            attributes = AttributeAccessor.forType(type);
+            ATTRIBUTES.putIfAbsent(type, attributes);
+        }
+        return attributes;
+    }
+}
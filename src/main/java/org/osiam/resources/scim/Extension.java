@@ -205,6 +205,20 @@ public final class Extension implements Serializable {
         return fields.containsKey(field);
     }
 
+    /**
+     * Read access without copying the fields for {@link AttributeAccessor}.
+     */
+    Field internalField(String field) {
+        return fields.get(field);
+    }
+
+    /**
+     * Read access without copying for {@link ContentHasher}. The returned map must not be modified.
+     */
+    Map<String, Field> internalFields() {
+        return fields;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -270,6 +284,7 @@ public final class Extension implements Serializable {
         private String urn;
 
         private Map<String, Field> fields = new HashMap<>();
+        private boolean fieldsShared;
 
         /**
          * Constructs an extension with the given urn.
@@ -288,6 +303,7 @@ public final class Extension implements Serializable {
         public Builder(Extension extension) {
             this.urn = extension.urn;
             this.fields = extension.fields;
+            this.fieldsShared = true;
         }
 
         /**
@@ -400,7 +416,19 @@ public final class Extension implements Serializable {
             if (type == null) {
                 throw new IllegalArgumentException("The type can't be null.");
             }
-            fields.put(fieldName, new Field(type, type.toString(value)));
+            writableFields().put(fieldName, new Field(type, type.toString(value)));
+            return this;
+        }
+
+        /**
+         * Sets the field specified by the given field name to an already converted {@link Field}.
+         *
+         * @param fieldName the field name
+         * @param field     the typed field value
+         * @return the builder itself
+         */
+        Builder setField(String fieldName, Field field) {
+            writableFields().put(fieldName, field);
             return this;
         }
 
@@ -411,13 +439,23 @@ public final class Extension implements Serializable {
          * @return the builder itself
          */
         public Builder removeField(String fieldName) {
-            fields.remove(fieldName);
+            if (fields.containsKey(fieldName)) {
+                writableFields().remove(fieldName);
+            }
             return this;
         }
 
         public Extension build() {
             return new Extension(this);
         }
+
+        private Map<String, Field> writableFields() {
+            if (fieldsShared) {
+                fields = new HashMap<>(fields);
+                fieldsShared = false;
+            }
+            return fields;
+        }
     }
 
     /**
@@ -99,6 +99,13 @@ public final class Group extends Resource implements Serializable {
         return ImmutableSet.copyOf(members);
     }
 
+    /**
+     * Read access without copying for {@link AttributeAccessor}. The returned set must not be modified.
+     */
+    Set<MemberRef> internalMembers() {
+        return members;
+    }
+
     @Override
     public String toString() {
         return "Group [displayName=" + displayName + ", members=" + members + ", getId()=" + getId()
@@ -113,6 +120,7 @@ public final class Group extends Resource implements Serializable {
 
         private String displayName;
         private Set<MemberRef> members = new HashSet<>();
+        private boolean membersShared;
 
         /**
          * creates a new Group.Builder based on the given displayName and group. All values of the given group will be
@@ -127,6 +135,7 @@ public final class Group extends Resource implements Serializable {
             if (group != null) {
                 this.displayName = group.displayName;
                 members = group.members;
+                membersShared = true;
             }
             if (!Strings.isNullOrEmpty(displayName)) {
                 this.displayName = displayName;
@@ -203,6 +212,7 @@ public final class Group extends Resource implements Serializable {
          */
         public Builder setMembers(Set<MemberRef> members) {
             this.members = members;
+            this.membersShared = false;
             return this;
         }
 
@@ -213,10 +223,42 @@ public final class Group extends Resource implements Serializable {
          * @return The builder itself
          */
         public Builder addMember(MemberRef member) {
-            members.add(member);
+            writableMembers().add(member);
+            return this;
+        }
+
+        /**
+         * Removes the given member from the set of members.
+         *
+         * @param member The member to remove.
+         * @return The builder itself
+         */
+        public Builder removeMember(MemberRef member) {
+            if (members.contains(member)) {
+                writableMembers().remove(member);
+            }
             return this;
         }
 
+        /**
+         * Removes all members.
+         *
+         * @return The builder itself
+         */
+        public Builder removeMembers() {
+            members = new HashSet<>();
+            membersShared = false;
+            return this;
+        }
+
+        private Set<MemberRef> writableMembers() {
+            if (membersShared) {
+                members = new HashSet<>(members);
+                membersShared = false;
+            }
+            return members;
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public Group build() {
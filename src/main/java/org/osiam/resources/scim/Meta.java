@@ -23,11 +23,17 @@
 
 package org.osiam.resources.scim;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.joda.time.Instant;
 import org.osiam.resources.helper.JsonDateSerializer;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashSet;
@@ -39,20 +45,40 @@ import java.util.Set;
  * For more detailed information please look at the <a
  * href="http://tools.ietf.org/html/draft-ietf-scim-core-schema-02">SCIM core schema 2.0</a>
  * </p>
+ * <p>
+ * The times are kept as milliseconds since the epoch, which {@link #getCreatedMillis()} and
+ * {@link #getLastModifiedMillis()} return without creating any object.
+ * </p>
  */
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public final class Meta implements Serializable {
 
+    /**
+     * The value of {@link #getCreatedMillis()} and {@link #getLastModifiedMillis()} if the time is not set
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private static final long serialVersionUID = -4536271487921469946L;
 
-    @JsonSerialize(using = JsonDateSerializer.class)
-    private final Date created;
-    @JsonSerialize(using = JsonDateSerializer.class)
-    private final Date lastModified;
-    private final String location;
-    private final String version;
-    private final Set<String> attributes;
-    private final String resourceType;
+    /**
+     * The serialized form is the one of the former Date fields, so serialized instances stay compatible
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("created", Date.class),
+            new ObjectStreamField("lastModified", Date.class),
+            new ObjectStreamField("location", String.class),
+            new ObjectStreamField("version", String.class),
+            new ObjectStreamField("attributes", Set.class),
+            new ObjectStreamField("resourceType", String.class)
+    };
+
+    // not final only to be restored by readObject
+    private long created;
+    private long lastModified;
+    private String location;
+    private String version;
+    private Set<String> attributes;
+    private String resourceType;
 
     public Meta(@JsonProperty("created") @JsonSerialize(using = JsonDateSerializer.class) Date created,
                 @JsonProperty("lastModified") @JsonSerialize(using = JsonDateSerializer.class) Date lastModified,
@@ -60,8 +86,8 @@ public final class Meta implements Serializable {
                 @JsonProperty("version") String version,
                 @JsonProperty("attributes") Set<String> attributes,
                 @JsonProperty("resourceType") String resourceType) {
-        this.created = created;
-        this.lastModified = lastModified;
+        this.created = toMillis(created);
+        this.lastModified = toMillis(lastModified);
         this.location = location;
         this.version = version;
         this.attributes = attributes;
@@ -121,11 +147,29 @@ public final class Meta implements Serializable {
      *
      * @return the creation date
      */
+    @JsonSerialize(using = JsonDateSerializer.class)
     public Date getCreated() {
-        if (created != null) {
-            return new Date(created.getTime());
-        }
-        return null;
+        return toDate(created);
+    }
+
+    /**
+     * Gets the time when the {@link Resource} was created
+     *
+     * @return the creation time in milliseconds since the epoch, or {@link #NO_TIME} if it is not set
+     */
+    @JsonIgnore
+    public long getCreatedMillis() {
+        return created;
+    }
+
+    /**
+     * Gets the instant when the {@link Resource} was created
+     *
+     * @return the creation instant
+     */
+    @JsonIgnore
+    public Instant getCreatedInstant() {
+        return toInstant(created);
     }
 
     /**
@@ -133,11 +177,29 @@ public final class Meta implements Serializable {
      *
      * @return the last modified date
      */
+    @JsonSerialize(using = JsonDateSerializer.class)
     public Date getLastModified() {
-        if (lastModified != null) {
-            return new Date(lastModified.getTime());
-        }
-        return null;
+        return toDate(lastModified);
+    }
+
+    /**
+     * Gets the time when the {@link Resource} was last modified
+     *
+     * @return the last modified time in milliseconds since the epoch, or {@link #NO_TIME} if it is not set
+     */
+    @JsonIgnore
+    public long getLastModifiedMillis() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the instant when the {@link Resource} was last modified
+     *
+     * @return the last modified instant
+     */
+    @JsonIgnore
+    public Instant getLastModifiedInstant() {
+        return toInstant(lastModified);
     }
 
     /**
@@ -154,8 +216,8 @@ public final class Meta implements Serializable {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((attributes == null) ? 0 : attributes.hashCode());
-        result = prime * result + ((created == null) ? 0 : created.hashCode());
-        result = prime * result + ((lastModified == null) ? 0 : lastModified.hashCode());
+        result = prime * result + timeHashCode(created);
+        result = prime * result + timeHashCode(lastModified);
         result = prime * result + ((location == null) ? 0 : location.hashCode());
         result = prime * result + ((resourceType == null) ? 0 : resourceType.hashCode());
         result = prime * result + ((version == null) ? 0 : version.hashCode());
@@ -181,18 +243,10 @@ public final class Meta implements Serializable {
         } else if (!attributes.equals(other.attributes)) {
             return false;
         }
-        if (created == null) {
-            if (other.created != null) {
-                return false;
-            }
-        } else if (!created.equals(other.created)) {
+        if (created != other.created) {
             return false;
         }
-        if (lastModified == null) {
-            if (other.lastModified != null) {
-                return false;
-            }
-        } else if (!lastModified.equals(other.lastModified)) {
+        if (lastModified != other.lastModified) {
             return false;
         }
         if (location == null) {
@@ -219,12 +273,53 @@ public final class Meta implements Serializable {
         return true;
     }
 
+    private static long toMillis(Date date) {
+        return date != null ? date.getTime() : NO_TIME;
+    }
+
+    private static Date toDate(long millis) {
+        return millis != NO_TIME ? new Date(millis) : null;
+    }
+
+    private static Instant toInstant(long millis) {
+        return millis != NO_TIME ? new Instant(millis) : null;
+    }
+
+    /**
+     * @return the hash code of the {@link Date} with the given time, to keep the hash code of a Meta unchanged
+     */
+    private static int timeHashCode(long millis) {
+        return millis != NO_TIME ? (int) (millis ^ (millis >>> 32)) : 0;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("created", toDate(created));
+        fields.put("lastModified", toDate(lastModified));
+        fields.put("location", location);
+        fields.put("version", version);
+        fields.put("attributes", attributes);
+        fields.put("resourceType", resourceType);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        created = toMillis((Date) fields.get("created", null));
+        lastModified = toMillis((Date) fields.get("lastModified", null));
+        location = (String) fields.get("location", null);
+        version = (String) fields.get("version", null);
+        attributes = (Set<String>) fields.get("attributes", null);
+        resourceType = (String) fields.get("resourceType", null);
+    }
+
     /**
      * Builder class that is used to build {@link Meta} instances
      */
     public static class Builder {
-        private final Date created;
-        private final Date lastModified;
+        private final long created;
+        private final long lastModified;
         private String location;
         private String version;
         private Set<String> attributes = new HashSet<>();
@@ -234,7 +329,7 @@ public final class Meta implements Serializable {
          * Constructs a new builder with the created and last modified time set to the current time
          */
         public Builder() {
-            this.created = new Date(System.currentTimeMillis());
+            this.created = System.currentTimeMillis();
             this.lastModified = this.created;
         }
 
@@ -243,8 +338,18 @@ public final class Meta implements Serializable {
          * ignored by PUT and PATCH operations
          */
         public Builder(Date created, Date lastModified) {
-            this.created = created != null ? new Date(created.getTime()) : null;
-            this.lastModified = lastModified != null ? new Date(lastModified.getTime()) : null;
+            this(toMillis(created), toMillis(lastModified));
+        }
+
+        /**
+         * Constructs a new builder with the created and last modified time set to the given values
+         *
+         * @param createdMillis      the creation time in milliseconds since the epoch, or {@link Meta#NO_TIME}
+         * @param lastModifiedMillis the last modified time in milliseconds since the epoch, or {@link Meta#NO_TIME}
+         */
+        public Builder(long createdMillis, long lastModifiedMillis) {
+            this.created = createdMillis;
+            this.lastModified = lastModifiedMillis;
         }
 
         /**
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Gives uniform access to the multi-valued attributes of a {@link User}, so that code which changes multi-valued
+ * attributes doesn't need to be written once per attribute.
+ *
+ * @param <T> the type of the entries of the multi-valued attribute
+ */
+abstract class MultiValuedUserAttribute<T extends MultiValuedAttribute> {
+
+    static final MultiValuedUserAttribute<Email> EMAILS =
+            new MultiValuedUserAttribute<Email>("emails", Email.class) {
+                @Override
+                List<Email> get(User user) {
+                    return user.getEmails();
+                }
+
+                @Override
+                void add(User.Builder builder, Email attribute) {
+                    builder.addEmail(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Email attribute) {
+                    builder.removeEmail(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeEmails();
+                }
+            };
+
+    static final MultiValuedUserAttribute<PhoneNumber> PHONE_NUMBERS =
+            new MultiValuedUserAttribute<PhoneNumber>("phoneNumbers", PhoneNumber.class) {
+                @Override
+                List<PhoneNumber> get(User user) {
+                    return user.getPhoneNumbers();
+                }
+
+                @Override
+                void add(User.Builder builder, PhoneNumber attribute) {
+                    builder.addPhoneNumber(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, PhoneNumber attribute) {
+                    builder.removePhoneNumber(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removePhoneNumbers();
+                }
+            };
+
+    static final MultiValuedUserAttribute<Im> IMS =
+            new MultiValuedUserAttribute<Im>("ims", Im.class) {
+                @Override
+                List<Im> get(User user) {
+                    return user.getIms();
+                }
+
+                @Override
+                void add(User.Builder builder, Im attribute) {
+                    builder.addIm(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Im attribute) {
+                    builder.removeIm(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeIms();
+                }
+            };
+
+    static final MultiValuedUserAttribute<Photo> PHOTOS =
+            new MultiValuedUserAttribute<Photo>("photos", Photo.class) {
+                @Override
+                List<Photo> get(User user) {
+                    return user.getPhotos();
+                }
+
+                @Override
+                void add(User.Builder builder, Photo attribute) {
+                    builder.addPhoto(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Photo attribute) {
+                    builder.removePhoto(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removePhotos();
+                }
+            };
+
+    static final MultiValuedUserAttribute<Address> ADDRESSES =
+            new MultiValuedUserAttribute<Address>("addresses", Address.class) {
+                @Override
+                List<Address> get(User user) {
+                    return user.getAddresses();
+                }
+
+                @Override
+                void add(User.Builder builder, Address attribute) {
+                    builder.addAddress(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Address attribute) {
+                    builder.removeAddress(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeAddresses();
+                }
+
+                /**
+                 * Addresses have no value, so they are identified by all of their attributes
+                 */
+                @Override
+                Object entryKey(Address attribute) {
+                    return attribute.getOperation() == null
+                            ? attribute : new Address.Builder(attribute).setOperation(null).build();
+                }
+            };
+
+    static final MultiValuedUserAttribute<Entitlement> ENTITLEMENTS =
+            new MultiValuedUserAttribute<Entitlement>("entitlements", Entitlement.class) {
+                @Override
+                List<Entitlement> get(User user) {
+                    return user.getEntitlements();
+                }
+
+                @Override
+                void add(User.Builder builder, Entitlement attribute) {
+                    builder.addEntitlement(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Entitlement attribute) {
+                    builder.removeEntitlement(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeEntitlements();
+                }
+            };
+
+    static final MultiValuedUserAttribute<Role> ROLES =
+            new MultiValuedUserAttribute<Role>("roles", Role.class) {
+                @Override
+                List<Role> get(User user) {
+                    return user.getRoles();
+                }
+
+                @Override
+                void add(User.Builder builder, Role attribute) {
+                    builder.addRole(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, Role attribute) {
+                    builder.removeRole(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeRoles();
+                }
+            };
+
+    static final MultiValuedUserAttribute<X509Certificate> X509_CERTIFICATES =
+            new MultiValuedUserAttribute<X509Certificate>("x509Certificates", X509Certificate.class) {
+                @Override
+                List<X509Certificate> get(User user) {
+                    return user.getX509Certificates();
+                }
+
+                @Override
+                void add(User.Builder builder, X509Certificate attribute) {
+                    builder.addX509Certificate(attribute);
+                }
+
+                @Override
+                void remove(User.Builder builder, X509Certificate attribute) {
+                    builder.removeX509Certificate(attribute);
+                }
+
+                @Override
+                void removeAll(User.Builder builder) {
+                    builder.removeX509Certificates();
+                }
+            };
+
+    private static final List<MultiValuedUserAttribute<?>> ATTRIBUTES = ImmutableList.<MultiValuedUserAttribute<?>>of(
+            EMAILS, PHONE_NUMBERS, IMS, PHOTOS, ADDRESSES, ENTITLEMENTS, ROLES, X509_CERTIFICATES);
+    private static final Map<String, MultiValuedUserAttribute<?>> ATTRIBUTES_BY_NAME = new HashMap<>();
+
+    static {
+        for (MultiValuedUserAttribute<?> attribute : ATTRIBUTES) {
+            ATTRIBUTES_BY_NAME.put(attribute.name.toLowerCase(Locale.ENGLISH), attribute);
+        }
+    }
+
+    private final String name;
+    private final Class<T> type;
+
+    private MultiValuedUserAttribute(String name, Class<T> type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * @return all multi-valued attributes of a {@link User} that can be changed by a client
+     */
+    static List<MultiValuedUserAttribute<?>> values() {
+        return ATTRIBUTES;
+    }
+
+    /**
+     * Looks up the multi-valued attribute with the given name, ignoring the case as attribute names in SCIM are case
+     * insensitive.
+     *
+     * @param name the name of the attribute, e.g. "emails"
+     * @return the attribute or null if there is no changeable multi-valued attribute with the given name
+     */
+    static MultiValuedUserAttribute<?> forName(String name) {
+        return ATTRIBUTES_BY_NAME.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    abstract List<T> get(User user);
+
+    abstract void add(User.Builder builder, T attribute);
+
+    abstract void remove(User.Builder builder, T attribute);
+
+    abstract void removeAll(User.Builder builder);
+
+    /**
+     * Checks if both entries describe the same entry of the attribute.
+     */
+    boolean isSameEntry(T attribute, T otherAttribute) {
+        return Objects.equal(entryKey(attribute), entryKey(otherAttribute));
+    }
+
+    /**
+     * Gets the key that identifies the entry of the attribute. Entries are identified by their value.
+     */
+    Object entryKey(T attribute) {
+        return attribute.getValue();
+    }
+}
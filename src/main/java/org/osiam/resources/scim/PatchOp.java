@@ -0,0 +1,579 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.helper.UserDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class represents a SCIM 2.0 PATCH request, a list of add, replace and remove operations.
+ * <p>
+ * The path of every operation is compiled once when the operation is created (see {@link PatchPath}), so a
+ * {@link PatchOp} can be applied to a lot of {@link User}s or {@link Group}s without parsing the paths again. Applying
+ * a {@link PatchOp} never modifies the given resource, all unchanged attributes are shared with the returned resource.
+ * </p>
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.5.2">SCIM protocol 2.0, section 3.5.2</a>
+ * </p>
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public final class PatchOp {
+
+    public static final String SCHEMA = "urn:ietf:params:scim:api:messages:2.0:PatchOp";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final UserDeserializer EXTENSION_DESERIALIZER = new UserDeserializer();
+
+    private final Set<String> schemas;
+    private final List<Operation> operations;
+
+    @JsonCreator
+    private PatchOp(@JsonProperty("schemas") Set<String> schemas,
+                    @JsonProperty("Operations") List<Operation> operations) {
+        this.schemas = schemas != null ? ImmutableSet.copyOf(schemas) : ImmutableSet.of(SCHEMA);
+        this.operations = operations != null ? ImmutableList.copyOf(operations) : ImmutableList.<Operation>of();
+    }
+
+    private PatchOp(Builder builder) {
+        this(null, builder.operations);
+    }
+
+    /**
+     * Gets the list of defined schemas
+     *
+     * @return the schemas of this message
+     */
+    public Set<String> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Gets the operations in the order they will be applied
+     *
+     * @return the operations of this message
+     */
+    @JsonProperty("Operations")
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Applies all operations of this PATCH request in their order to the given user.
+     *
+     * @param user the user to patch
+     * @return a new {@link User} containing all changes
+     * @throws SCIMDataValidationException if the given user is null or an operation can't be applied to the user
+     */
+    public User applyTo(User user) {
+        if (user == null) {
+            throw new SCIMDataValidationException("The given user must not be null");
+        }
+        User patchedUser = user;
+        for (Operation operation : operations) {
+            patchedUser = operation.applyTo(patchedUser);
+        }
+        return patchedUser;
+    }
+
+    /**
+     * Applies all operations of this PATCH request in their order to the given group.
+     *
+     * @param group the group to patch
+     * @return a new {@link Group} containing all changes
+     * @throws SCIMDataValidationException if the given group is null or an operation can't be applied to the group
+     */
+    public Group applyTo(Group group) {
+        if (group == null) {
+            throw new SCIMDataValidationException("The given group must not be null");
+        }
+        Group patchedGroup = group;
+        for (Operation operation : operations) {
+            patchedGroup = operation.applyTo(patchedGroup);
+        }
+        return patchedGroup;
+    }
+
+    @Override
+    public String toString() {
+        return "PatchOp [schemas=" + schemas + ", operations=" + operations + "]";
+    }
+
+    private static <T> T convert(JsonNode value, Class<T> type) {
+        try {
+            return MAPPER.treeToValue(value, type);
+        } catch (JsonProcessingException e) {
+            throw new SCIMDataValidationException("The value " + value + " is not a valid "
+                    + type.getSimpleName() + ".", e);
+        }
+    }
+
+    private static ObjectNode toObjectNode(Object value) {
+        return value != null ? MAPPER.<ObjectNode>valueToTree(value) : JsonNodeFactory.instance.objectNode();
+    }
+
+    /**
+     * The name of an attribute is case insensitive, so an existing field with a different case is reused.
+     */
+    private static String fieldName(ObjectNode node, String attribute) {
+        Iterator<String> fieldNames = node.fieldNames();
+        while (fieldNames.hasNext()) {
+            String fieldName = fieldNames.next();
+            if (fieldName.equalsIgnoreCase(attribute)) {
+                return fieldName;
+            }
+        }
+        return attribute;
+    }
+
+    /**
+     * The type of a {@link Operation}
+     */
+    public enum Type {
+        ADD("add"), REPLACE("replace"), REMOVE("remove");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+
+        @JsonCreator
+        public static Type fromString(String value) {
+            for (Type type : values()) {
+                if (type.value.equalsIgnoreCase(value)) {
+                    return type;
+                }
+            }
+            throw new SCIMDataValidationException("The operation '" + value + "' is not supported.");
+        }
+
+        @JsonValue
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * A single operation of a {@link PatchOp}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Operation {
+
+        private final Type op;
+        private final String path;
+        private final JsonNode value;
+        @JsonIgnore
+        private final PatchPath compiledPath;
+
+        @JsonCreator
+        public Operation(@JsonProperty("op") Type op,
+                         @JsonProperty("path") String path,
+                         @JsonProperty("value") JsonNode value) {
+            if (op == null) {
+                throw new SCIMDataValidationException("The operation of a PATCH operation can't be null.");
+            }
+            if (path == null && op == Type.REMOVE) {
+                throw new SCIMDataValidationException("A remove operation requires a path.");
+            }
+            if (path == null && (value == null || !value.isObject())) {
+                throw new SCIMDataValidationException("An operation without a path requires an object as value.");
+            }
+            this.op = op;
+            this.path = path;
+            this.value = value;
+            this.compiledPath = path != null ? PatchPath.compile(path) : null;
+        }
+
+        public Type getOp() {
+            return op;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public JsonNode getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "Operation [op=" + op + ", path=" + path + ", value=" + value + "]";
+        }
+
+        private User applyTo(User user) {
+            if (compiledPath != null) {
+                return applyTo(user, compiledPath, value);
+            }
+            User patchedUser = user;
+            Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if ("schemas".equalsIgnoreCase(field.getKey())) {
+                    continue;
+                }
+                if (field.getKey().regionMatches(true, 0, "urn:", 0, 4) && field.getValue().isObject()) {
+                    Iterator<Map.Entry<String, JsonNode>> extensionFields = field.getValue().fields();
+                    while (extensionFields.hasNext()) {
+                        Map.Entry<String, JsonNode> extensionField = extensionFields.next();
+                        PatchPath extensionPath = PatchPath.compile(field.getKey() + ":" + extensionField.getKey());
+                        patchedUser = applyTo(patchedUser, extensionPath, extensionField.getValue());
+                    }
+                } else {
+                    patchedUser = applyTo(patchedUser, PatchPath.compile(field.getKey()), field.getValue());
+                }
+            }
+            return patchedUser;
+        }
+
+        private User applyTo(User user, PatchPath patchPath, JsonNode newValue) {
+            if (patchPath.getUrn() != null) {
+                return applyToExtension(user, patchPath, newValue);
+            }
+            String attribute = patchPath.getAttribute().toLowerCase(Locale.ENGLISH);
+            if ("username".equals(attribute)) {
+                String userName = simpleValue(patchPath, newValue);
+                if (userName == null || userName.isEmpty()) {
+                    throw new SCIMDataValidationException("The userName of a user can't be removed.");
+                }
+                return new User.Builder(userName, user).build();
+            }
+            MultiValuedUserAttribute<?> multiValuedAttribute = MultiValuedUserAttribute.forName(attribute);
+            if (multiValuedAttribute != null) {
+                User.Builder builder = new User.Builder(user);
+                applyToMultiValuedAttribute(builder, user, multiValuedAttribute, patchPath, newValue);
+                return builder.build();
+            }
+
+            User.Builder builder = new User.Builder(user);
+            switch (attribute) {
+                case "name":
+                    builder.setName(patchComplexValue(user.getName(), Name.class, patchPath, newValue));
+                    break;
+                case "displayname":
+                    builder.setDisplayName(simpleValue(patchPath, newValue));
+                    break;
+                case "nickname":
+                    builder.setNickName(simpleValue(patchPath, newValue));
+                    break;
+                case "profileurl":
+                    builder.setProfileUrl(simpleValue(patchPath, newValue));
+                    break;
+                case "title":
+                    builder.setTitle(simpleValue(patchPath, newValue));
+                    break;
+                case "usertype":
+                    builder.setUserType(simpleValue(patchPath, newValue));
+                    break;
+                case "preferredlanguage":
+                    builder.setPreferredLanguage(simpleValue(patchPath, newValue));
+                    break;
+                case "locale":
+                    builder.setLocale(simpleValue(patchPath, newValue));
+                    break;
+                case "timezone":
+                    builder.setTimezone(simpleValue(patchPath, newValue));
+                    break;
+                case "externalid":
+                    builder.setExternalId(simpleValue(patchPath, newValue));
+                    break;
+                case "password":
+                    builder.setPassword(simpleValue(patchPath, newValue));
+                    break;
+                case "active":
+                    String active = simpleValue(patchPath, newValue);
+                    builder.setActive(active != null ? Boolean.valueOf(active) : null);
+                    break;
+                default:
+                    throw unsupportedAttribute(patchPath, "users");
+            }
+            return builder.build();
+        }
+
+        private User applyToExtension(User user, PatchPath patchPath, JsonNode newValue) {
+            if (patchPath.getSubAttribute() != null || patchPath.hasValueFilter()) {
+                throw new SCIMDataValidationException("The path '" + patchPath
+                        + "' is not valid: extension fields have no sub-attributes.");
+            }
+            String urn = patchPath.getUrn();
+            Map<String, Extension> extensions = user.getExtensions();
+            Extension.Builder extensionBuilder = extensions.containsKey(urn)
+                    ? new Extension.Builder(extensions.get(urn)) : new Extension.Builder(urn);
+            if (op == Type.REMOVE) {
+                if (!extensions.containsKey(urn)) {
+                    return user;
+                }
+                extensionBuilder.removeField(patchPath.getAttribute());
+            } else {
+                ObjectNode fieldNode = JsonNodeFactory.instance.objectNode();
+                fieldNode.set(patchPath.getAttribute(), newValue);
+                Extension parsedField;
+                try {
+                    parsedField = EXTENSION_DESERIALIZER.deserializeExtension(fieldNode, urn);
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new SCIMDataValidationException("The value " + newValue + " is not valid for the field '"
+                            + patchPath + "'.", e);
+                }
+                extensionBuilder.setField(patchPath.getAttribute(),
+                        parsedField.getFields().get(patchPath.getAttribute()));
+            }
+            return new User.Builder(user).addExtension(extensionBuilder.build()).build();
+        }
+
+        private Group applyTo(Group group) {
+            if (compiledPath != null) {
+                return applyTo(group, compiledPath, value);
+            }
+            Group patchedGroup = group;
+            Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!"schemas".equalsIgnoreCase(field.getKey())) {
+                    patchedGroup = applyTo(patchedGroup, PatchPath.compile(field.getKey()), field.getValue());
+                }
+            }
+            return patchedGroup;
+        }
+
+        private Group applyTo(Group group, PatchPath patchPath, JsonNode newValue) {
+            String attribute = patchPath.getAttribute().toLowerCase(Locale.ENGLISH);
+            if (patchPath.getUrn() != null) {
+                throw unsupportedAttribute(patchPath, "groups");
+            }
+            switch (attribute) {
+                case "displayname":
+                    String displayName = simpleValue(patchPath, newValue);
+                    if (displayName == null || displayName.isEmpty()) {
+                        throw new SCIMDataValidationException("The displayName of a group can't be removed.");
+                    }
+                    return new Group.Builder(displayName, group).build();
+                case "externalid":
+                    return new Group.Builder(group).setExternalId(simpleValue(patchPath, newValue)).build();
+                case "members":
+                    List<MemberRef> members = new ArrayList<>(group.getMembers());
+                    List<MemberRef> patchedMembers = patchMultiValuedAttribute(members, MemberRef.class,
+                            patchPath, newValue);
+                    if (patchedMembers == members) {
+                        return group;
+                    }
+                    Group.Builder builder = new Group.Builder(group).removeMembers();
+                    for (MemberRef member : patchedMembers) {
+                        builder.addMember(member);
+                    }
+                    return builder.build();
+                default:
+                    throw unsupportedAttribute(patchPath, "groups");
+            }
+        }
+
+        private <T extends MultiValuedAttribute> void applyToMultiValuedAttribute(User.Builder builder, User user,
+                MultiValuedUserAttribute<T> attribute, PatchPath patchPath, JsonNode newValue) {
+            List<T> currentValues = attribute.get(user);
+            List<T> patchedValues = patchMultiValuedAttribute(currentValues, attribute.getType(), patchPath,
+                    newValue);
+            if (patchedValues == currentValues) {
+                return;
+            }
+            attribute.removeAll(builder);
+            for (T patchedValue : patchedValues) {
+                attribute.add(builder, patchedValue);
+            }
+        }
+
+        /**
+         * Patches the values of a multi-valued attribute.
+         *
+         * @return the patched values or the given list if nothing has been changed
+         */
+        private <T> List<T> patchMultiValuedAttribute(List<T> currentValues, Class<T> type, PatchPath patchPath,
+                                                      JsonNode newValue) {
+            if (!patchPath.hasValueFilter() && patchPath.getSubAttribute() == null) {
+                if (op == Type.REMOVE) {
+                    return currentValues.isEmpty() ? currentValues : Collections.<T>emptyList();
+                }
+                List<T> patchedValues = op == Type.ADD ? new ArrayList<>(currentValues) : new ArrayList<T>();
+                if (newValue != null && newValue.isArray()) {
+                    for (JsonNode element : newValue) {
+                        addIfAbsent(patchedValues, convert(element, type));
+                    }
+                } else if (newValue != null && !newValue.isNull()) {
+                    addIfAbsent(patchedValues, convert(newValue, type));
+                }
+                return patchedValues;
+            }
+
+            List<T> patchedValues = new ArrayList<>(currentValues.size());
+            boolean changed = false;
+            for (T currentValue : currentValues) {
+                if (!patchPath.matches(currentValue)) {
+                    patchedValues.add(currentValue);
+                    continue;
+                }
+                changed = true;
+                if (op != Type.REMOVE || patchPath.getSubAttribute() != null) {
+                    patchedValues.add(patchComplexValue(currentValue, type, patchPath, newValue));
+                }
+            }
+            return changed ? patchedValues : currentValues;
+        }
+
+        private static <T> void addIfAbsent(List<T> values, T value) {
+            if (!values.contains(value)) {
+                values.add(value);
+            }
+        }
+
+        /**
+         * Patches the given complex value, like a {@link Name} or a single {@link Email}, through its JSON
+         * representation.
+         */
+        private <T> T patchComplexValue(T currentValue, Class<T> type, PatchPath patchPath, JsonNode newValue) {
+            String subAttribute = patchPath.getSubAttribute();
+            if (subAttribute == null && op == Type.REMOVE) {
+                return null;
+            }
+            ObjectNode node = op == Type.REPLACE && subAttribute == null && !patchPath.hasValueFilter()
+                    ? JsonNodeFactory.instance.objectNode() : toObjectNode(currentValue);
+            if (subAttribute == null) {
+                if (newValue == null || !newValue.isObject()) {
+                    throw new SCIMDataValidationException("The path '" + patchPath + "' requires an object as value.");
+                }
+                Iterator<Map.Entry<String, JsonNode>> fields = newValue.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    node.set(fieldName(node, field.getKey()), field.getValue());
+                }
+            } else if (op == Type.REMOVE) {
+                node.remove(fieldName(node, subAttribute));
+            } else {
+                node.set(fieldName(node, subAttribute), newValue);
+            }
+            return convert(node, type);
+        }
+
+        private String simpleValue(PatchPath patchPath, JsonNode newValue) {
+            if (patchPath.getSubAttribute() != null || patchPath.hasValueFilter()) {
+                throw new SCIMDataValidationException("The path '" + patchPath
+                        + "' is not valid: the attribute has no sub-attributes.");
+            }
+            if (op == Type.REMOVE || newValue == null || newValue.isNull()) {
+                return null;
+            }
+            if (!newValue.isValueNode()) {
+                throw new SCIMDataValidationException("The path '" + patchPath + "' requires a simple value.");
+            }
+            return newValue.asText();
+        }
+
+        private SCIMDataValidationException unsupportedAttribute(PatchPath patchPath, String resourceType) {
+            return new SCIMDataValidationException("The attribute '" + patchPath.getAttribute()
+                    + "' of " + resourceType + " can't be modified by a PATCH operation.");
+        }
+    }
+
+    /**
+     * Builder class that is used to build {@link PatchOp} instances
+     */
+    public static class Builder {
+
+        private final List<Operation> operations = new ArrayList<>();
+
+        /**
+         * Adds an operation that adds the given value to the attribute addressed by the given path. If the path is
+         * null the value must contain the attributes to add.
+         *
+         * @param path  the path of the attribute, e.g. <code>emails</code>
+         * @param value the value to add, e.g. an {@link Email}, a {@link List} of {@link Email}s or a {@link String}
+         * @return the builder itself
+         * @throws SCIMDataValidationException if the given path is not valid
+         */
+        public Builder add(String path, Object value) {
+            return addOperation(Type.ADD, path, value);
+        }
+
+        /**
+         * Adds an operation that replaces the attribute addressed by the given path with the given value.
+         *
+         * @param path  the path of the attribute, e.g. <code>emails[type eq "work"].value</code>
+         * @param value the new value
+         * @return the builder itself
+         * @throws SCIMDataValidationException if the given path is not valid
+         */
+        public Builder replace(String path, Object value) {
+            return addOperation(Type.REPLACE, path, value);
+        }
+
+        /**
+         * Adds an operation that removes the attribute addressed by the given path.
+         *
+         * @param path the path of the attribute, e.g. <code>members[value eq "2819c223"]</code>
+         * @return the builder itself
+         * @throws SCIMDataValidationException if the given path is null or not valid
+         */
+        public Builder remove(String path) {
+            return addOperation(Type.REMOVE, path, null);
+        }
+
+        private Builder addOperation(Type type, String path, Object value) {
+            JsonNode valueNode = value != null ? MAPPER.<JsonNode>valueToTree(value) : null;
+            operations.add(new Operation(type, path, valueNode));
+            return this;
+        }
+
+        /**
+         * Builds the PatchOp with the added operations
+         *
+         * @return a new PatchOp
+         */
+        public PatchOp build() {
+            return new PatchOp(this);
+        }
+    }
+}
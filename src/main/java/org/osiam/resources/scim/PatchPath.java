@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.osiam.resources.exception.SCIMDataValidationException;
+import org.osiam.resources.filter.CompiledFilter;
+import org.osiam.resources.filter.Filter;
+
+/**
+ * A compiled path of a {@link PatchOp} operation like <code>emails[type eq "work"].value</code>.
+ * <p>
+ * Paths are parsed only once: {@link #compile(String)} keeps the compiled paths in a cache, so that applying the same
+ * operations to a lot of resources doesn't parse the paths again. Instances of this class are immutable and can be
+ * shared between threads.
+ * </p>
+ * <p>
+ * For more detailed information please look at the
+ * <a href="http://tools.ietf.org/html/draft-ietf-scim-api-19#section-3.5.2">SCIM protocol 2.0, section 3.5.2</a>
+ * </p>
+ */
+public final class PatchPath {
+
+    private static final int MAX_CACHED_PATHS = 1000;
+
+    private static final Cache<String, PatchPath> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_PATHS)
+            .build();
+
+    private final String path;
+    private final String urn;
+    private final String attribute;
+    private final Filter valueFilter;
+    private final String subAttribute;
+    private volatile CompiledFilter<Object> compiledValueFilter;
+
+    private PatchPath(String path) {
+        this.path = path;
+        String trimmedPath = path.trim();
+        int filterStart = trimmedPath.indexOf('[');
+        String attributePath = filterStart < 0 ? trimmedPath : trimmedPath.substring(0, filterStart);
+
+        int urnEnd = attributePath.regionMatches(true, 0, "urn:", 0, 4) ? attributePath.lastIndexOf(':') : -1;
+        String extensionUrn = urnEnd < 0 ? null : attributePath.substring(0, urnEnd);
+        if (User.SCHEMA.equalsIgnoreCase(extensionUrn) || Group.SCHEMA.equalsIgnoreCase(extensionUrn)) {
+            extensionUrn = null;
+        }
+        this.urn = extensionUrn;
+        attributePath = attributePath.substring(urnEnd + 1);
+
+        int subAttributeStart = attributePath.indexOf('.');
+        String parsedSubAttribute = null;
+        if (subAttributeStart >= 0) {
+            parsedSubAttribute = attributePath.substring(subAttributeStart + 1);
+            attributePath = attributePath.substring(0, subAttributeStart);
+        }
+
+        if (filterStart >= 0) {
+            int filterEnd = findFilterEnd(trimmedPath, filterStart);
+            if (parsedSubAttribute != null) {
+                throw invalidPath("a value filter can't follow a sub-attribute");
+            }
+            this.valueFilter = Filter.parse(trimmedPath.substring(filterStart + 1, filterEnd));
+            String remainder = trimmedPath.substring(filterEnd + 1);
+            if (!remainder.isEmpty()) {
+                if (remainder.charAt(0) != '.') {
+                    throw invalidPath("unexpected characters after the value filter");
+                }
+                parsedSubAttribute = remainder.substring(1);
+            }
+        } else {
+            this.valueFilter = null;
+        }
+
+        if (!isValidAttributeName(attributePath)
+                || parsedSubAttribute != null && !isValidAttributeName(parsedSubAttribute)) {
+            throw invalidPath("invalid attribute name");
+        }
+        this.attribute = attributePath;
+        this.subAttribute = parsedSubAttribute;
+    }
+
+    /**
+     * Compiles the given path or returns the already compiled path from the cache.
+     *
+     * @param path a SCIM path, e.g. <code>name.givenName</code> or <code>members[value eq "id"]</code>
+     * @return the compiled path
+     * @throws SCIMDataValidationException if the given path is null, empty or not a valid path
+     */
+    public static PatchPath compile(String path) {
+        if (Strings.isNullOrEmpty(path)) {
+            throw new SCIMDataValidationException("The given path can't be null or empty.");
+        }
+        PatchPath compiledPath = CACHE.getIfPresent(path);
+        if (compiledPath == null) {
+            compiledPath = new PatchPath(path);
+            CACHE.put(path, compiledPath);
+        }
+        return compiledPath;
+    }
+
+    private static int findFilterEnd(String path, int filterStart) {
+        boolean quoted = false;
+        for (int i = filterStart + 1; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '\\' && quoted) {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ']' && !quoted) {
+                return i;
+            }
+        }
+        throw new SCIMDataValidationException("The path '" + path + "' contains an unterminated value filter.");
+    }
+
+    private static boolean isValidAttributeName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SCIMDataValidationException invalidPath(String reason) {
+        return new SCIMDataValidationException("The path '" + path + "' is not valid: " + reason + ".");
+    }
+
+    /**
+     * @return the path as it has been given to {@link #compile(String)}
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the URN of the extension this path points into or null if the path points to a core attribute
+     */
+    public String getUrn() {
+        return urn;
+    }
+
+    /**
+     * @return the name of the addressed attribute, e.g. <code>emails</code>
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return the addressed sub-attribute, e.g. <code>value</code> for <code>emails[type eq "work"].value</code>, or
+     * null if the whole attribute is addressed
+     */
+    public String getSubAttribute() {
+        return subAttribute;
+    }
+
+    /**
+     * @return true if the path selects values of a multi-valued attribute by a value filter
+     */
+    public boolean hasValueFilter() {
+        return valueFilter != null;
+    }
+
+    /**
+     * Checks if the given value of a multi-valued attribute is selected by the value filter of this path.
+     *
+     * @param value a value of the addressed multi-valued attribute, e.g. an {@link Email}
+     * @return true if the value is selected or if this path has no value filter
+     */
+    @SuppressWarnings("unchecked")
+    public boolean matches(Object value) {
+        if (valueFilter == null) {
+            return true;
+        }
+        CompiledFilter<Object> compiledFilter = compiledValueFilter;
+        if (compiledFilter == null || compiledFilter.getType() != value.getClass()) {
+            compiledFilter = CompiledFilter.compile(valueFilter, (Class<Object>) value.getClass());
+            compiledValueFilter = compiledFilter;
+        }
+        return compiledFilter.matches(value);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
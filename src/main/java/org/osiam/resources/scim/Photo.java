@@ -49,6 +49,12 @@ public final class Photo extends MultiValuedAttribute implements Serializable {
 
     private Type type;
 
+    /**
+     * The classification of the value, computed on first use as the value of a photo never changes
+     */
+    @JsonIgnore
+    private transient volatile ValueInfo valueInfo;
+
     /**
      * Constructor for deserialization, it is not intended for general use.
      */
@@ -80,6 +86,13 @@ public final class Photo extends MultiValuedAttribute implements Serializable {
      * @return returns the value of the photo as URI
      */
     public URI getValueAsURI() {
+        ValueInfo info = getValueInfo();
+        if (info.uri != null) {
+            return info.uri;
+        }
+        if (info.imageDataUri != null) {
+            return info.imageDataUri.getAsURI();
+        }
         URI uri;
         try {
             uri = new URI(super.getValue());
@@ -97,7 +110,8 @@ public final class Photo extends MultiValuedAttribute implements Serializable {
      */
     @JsonIgnore
     public ImageDataURI getValueAsImageDataURI() {
-        return new ImageDataURI(super.getValue());
+        ImageDataURI imageDataUri = getValueInfo().imageDataUri;
+        return imageDataUri != null ? imageDataUri : new ImageDataURI(super.getValue());
     }
 
     /**
@@ -105,19 +119,16 @@ public final class Photo extends MultiValuedAttribute implements Serializable {
      */
     @JsonIgnore
     public PhotoValueType getValueType() {
-        if (super.getValue().startsWith("data:image/") && super.getValue().contains(";base64,")) {
-            try {
-                getValueAsImageDataURI();
-                return PhotoValueType.IMAGE_DATA_URI;
-            } catch (Exception e) {
-            }
-        }
-        try {
-            getValueAsURI();
-            return PhotoValueType.URI;
-        } catch (Exception e) {
+        return getValueInfo().type;
+    }
+
+    private ValueInfo getValueInfo() {
+        ValueInfo info = valueInfo;
+        if (info == null) {
+            info = ValueInfo.classify(super.getValue());
+            valueInfo = info;
         }
-        return PhotoValueType.UNKNOWN;
+        return info;
     }
 
     @Override
@@ -179,6 +190,39 @@ public final class Photo extends MultiValuedAttribute implements Serializable {
                 + ", operation=" + getOperation() + "]";
     }
 
+    /**
+     * The type of the value of a photo together with the parsed value. An image data URI is recognized by scanning its
+     * characters, so only values that are no image data URI are parsed as {@link URI}.
+     */
+    private static final class ValueInfo {
+
+        private static final ValueInfo UNKNOWN = new ValueInfo(PhotoValueType.UNKNOWN, null, null);
+
+        private final PhotoValueType type;
+        private final URI uri;
+        private final ImageDataURI imageDataUri;
+
+        private ValueInfo(PhotoValueType type, URI uri, ImageDataURI imageDataUri) {
+            this.type = type;
+            this.uri = uri;
+            this.imageDataUri = imageDataUri;
+        }
+
+        private static ValueInfo classify(String value) {
+            if (value == null) {
+                return UNKNOWN;
+            }
+            if (ImageDataURI.isImageDataUri(value)) {
+                return new ValueInfo(PhotoValueType.IMAGE_DATA_URI, null, new ImageDataURI(value));
+            }
+            try {
+                return new ValueInfo(PhotoValueType.URI, new URI(value), null);
+            } catch (URISyntaxException e) {
+                return UNKNOWN;
+            }
+        }
+    }
+
     /**
      * Builder class that is used to build {@link Photo} instances
      */
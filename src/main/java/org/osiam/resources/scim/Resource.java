@@ -105,6 +105,13 @@ public abstract class Resource implements Serializable {
         return ImmutableSet.copyOf(schemas);
     }
 
+    /**
+     * Read access without copying for {@link AttributeAccessor}. The returned set must not be modified.
+     */
+    Set<String> internalSchemas() {
+        return schemas;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -143,6 +150,7 @@ public abstract class Resource implements Serializable {
         private String id;
         private Meta meta;
         private Set<String> schemas = new HashSet<>();
+        private boolean schemasShared;
 
         public Builder(Resource resource) {
             if (resource != null) {
@@ -150,6 +158,7 @@ public abstract class Resource implements Serializable {
                 this.externalId = resource.externalId;
                 this.meta = resource.meta;
                 this.schemas = resource.schemas;
+                this.schemasShared = true;
             }
         }
 
@@ -160,16 +169,33 @@ public abstract class Resource implements Serializable {
         @Deprecated
         public Builder setSchemas(Set<String> schemas) {
             this.schemas = schemas;
+            this.schemasShared = false;
             return this;
         }
 
         protected void addSchema(String schema) {
             if (schemas == null) {
                 schemas = new HashSet<>();
+            } else if (schemas.contains(schema)) {
+                return;
+            } else if (schemasShared) {
+                schemas = new HashSet<>(schemas);
+                schemasShared = false;
             }
             schemas.add(schema);
         }
 
+        protected void removeSchema(String schema) {
+            if (schemas == null || !schemas.contains(schema)) {
+                return;
+            }
+            if (schemasShared) {
+                schemas = new HashSet<>(schemas);
+                schemasShared = false;
+            }
+            schemas.remove(schema);
+        }
+
         /**
          * Sets the id of the resource.
          * <p>
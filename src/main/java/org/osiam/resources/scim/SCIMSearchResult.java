@@ -34,6 +34,11 @@ import java.util.*;
  * For more detailed information please look at the <a
  * href="http://tools.ietf.org/html/draft-ietf-scim-core-schema-02">SCIM core schema 2.0</a>
  * </p>
+ * <p>
+ * Besides paging by <code>startIndex</code> a result can contain opaque cursors that point to the next and to the
+ * previous page. Cursors are written to and read from JSON as <code>nextCursor</code> and <code>previousCursor</code>
+ * and are omitted if they are not set.
+ * </p>
  *
  * @param <T> {@link User} or {@link Group}
  */
@@ -46,6 +51,8 @@ public class SCIMSearchResult<T> {
     private long startIndex;
     private Set<String> schemas = new HashSet<>(Collections.singletonList(SCHEMA));
     private List<T> resources = new ArrayList<>();
+    private String nextCursor;
+    private String previousCursor;
 
     /**
      * Default constructor for Jackson
@@ -60,6 +67,22 @@ public class SCIMSearchResult<T> {
         this.startIndex = startIndex;
     }
 
+    /**
+     * Creates a page of a search result that can be navigated with cursors.
+     *
+     * @param resources      the resources of the page
+     * @param totalResults   the total number of results
+     * @param itemsPerPage   the number of resources of the page
+     * @param startIndex     the 1-based index of the first resource of the page
+     * @param nextCursor     the cursor of the next page or null if this is the last page
+     * @param previousCursor the cursor of the previous page or null if this is the first page
+     */
+    public SCIMSearchResult(List<T> resources, long totalResults, long itemsPerPage, long startIndex,
+                            String nextCursor, String previousCursor) {
+        this(resources, totalResults, itemsPerPage, startIndex);
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
 
     /**
      * gets a list of found {@link User}s or {@link Group}s
@@ -107,4 +130,23 @@ public class SCIMSearchResult<T> {
     public long getStartIndex() {
         return startIndex;
     }
+
+    /**
+     * The opaque cursor that points to the page following this one. Passing it to the search again returns the next
+     * page, independent of resources that have been added or removed before the current page in the meantime.
+     *
+     * @return the cursor of the next page or null if this is the last page or cursors aren't supported
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * The opaque cursor that points to the page preceding this one.
+     *
+     * @return the cursor of the previous page or null if this is the first page or cursors aren't supported
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
 }
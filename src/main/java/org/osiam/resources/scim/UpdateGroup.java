@@ -37,6 +37,10 @@ public final class UpdateGroup {
         group = builder.updateGroup.build();
     }
 
+    UpdateGroup(Group group) {
+        this.group = group;
+    }
+
     /**
      * the Scim conform Group to be used to update a existing Group
      *
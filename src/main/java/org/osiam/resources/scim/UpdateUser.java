@@ -23,9 +23,17 @@
 
 package org.osiam.resources.scim;
 
+import com.google.common.base.Strings;
+import org.osiam.resources.exception.SCIMDataValidationException;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,6 +47,10 @@ public final class UpdateUser {
         user = builder.updateUser.build();
     }
 
+    UpdateUser(User user) {
+        this.user = user;
+    }
+
     /**
      * the Scim conform User to be used to update a existing User
      *
@@ -48,6 +60,438 @@ public final class UpdateUser {
         return user;
     }
 
+    /**
+     * Applies this update to the given {@link User} the same way the OSIAM server handles a PATCH request: all
+     * attributes listed in meta.attributes are deleted first, afterwards the set values are merged into the user.
+     * Multi-valued entries with the operation "delete" remove the existing entries with the same value, other entries
+     * replace the existing entries with the same value or are added.
+     * <p>
+     * The given user is not modified. All attributes that are not touched by this update are shared between the given
+     * and the returned user.
+     * </p>
+     *
+     * @param baseUser the user to apply this update to, e.g. a cached copy of the user that has been patched
+     * @return a new {@link User} containing all changes of this update
+     * @throws SCIMDataValidationException if the given user is null
+     */
+    public User applyTo(User baseUser) {
+        if (baseUser == null) {
+            throw new SCIMDataValidationException("The given user must not be null");
+        }
+        Set<String> deleteFields = Collections.emptySet();
+        if (user.getMeta() != null && user.getMeta().getAttributes() != null) {
+            deleteFields = user.getMeta().getAttributes();
+        }
+
+        User.Builder builder = new User.Builder(user.getUserName(), baseUser);
+        applySimpleAttributes(builder, deleteFields);
+
+        Name name = updateName(baseUser.getName(), deleteFields);
+        if (name != baseUser.getName()) {
+            builder.setName(name);
+        }
+
+        for (MultiValuedUserAttribute<?> attribute : MultiValuedUserAttribute.values()) {
+            updateMultiValuedAttribute(builder, baseUser, attribute, deleteFields);
+        }
+
+        updateExtensions(builder, baseUser, deleteFields);
+
+        return builder.build();
+    }
+
+    private void applySimpleAttributes(User.Builder builder, Set<String> deleteFields) {
+        for (String field : deleteFields) {
+            switch (field) {
+                case "externalId":
+                    builder.setExternalId(null);
+                    break;
+                case "nickName":
+                    builder.setNickName(null);
+                    break;
+                case "locale":
+                    builder.setLocale(null);
+                    break;
+                case "preferredLanguage":
+                    builder.setPreferredLanguage(null);
+                    break;
+                case "profileUrl":
+                    builder.setProfileUrl(null);
+                    break;
+                case "timezone":
+                    builder.setTimezone(null);
+                    break;
+                case "title":
+                    builder.setTitle(null);
+                    break;
+                case "userType":
+                    builder.setUserType(null);
+                    break;
+                case "displayName":
+                    builder.setDisplayName(null);
+                    break;
+                case "active":
+                    builder.setActive(null);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (user.getExternalId() != null) {
+            builder.setExternalId(user.getExternalId());
+        }
+        if (user.getNickName() != null) {
+            builder.setNickName(user.getNickName());
+        }
+        if (user.getLocale() != null) {
+            builder.setLocale(user.getLocale());
+        }
+        if (!Strings.isNullOrEmpty(user.getPassword())) {
+            builder.setPassword(user.getPassword());
+        }
+        if (user.getPreferredLanguage() != null) {
+            builder.setPreferredLanguage(user.getPreferredLanguage());
+        }
+        if (user.getProfileUrl() != null) {
+            builder.setProfileUrl(user.getProfileUrl());
+        }
+        if (user.getTimezone() != null) {
+            builder.setTimezone(user.getTimezone());
+        }
+        if (user.getTitle() != null) {
+            builder.setTitle(user.getTitle());
+        }
+        if (user.getUserType() != null) {
+            builder.setUserType(user.getUserType());
+        }
+        if (user.getDisplayName() != null) {
+            builder.setDisplayName(user.getDisplayName());
+        }
+        if (user.isActive() != null) {
+            builder.setActive(user.isActive());
+        }
+    }
+
+    private Name updateName(Name baseName, Set<String> deleteFields) {
+        Name updateName = user.getName();
+        boolean deleteName = deleteFields.contains("name");
+        if (updateName == null && !deleteName && !containsSubAttribute(deleteFields, "name.")) {
+            return baseName;
+        }
+        Name currentName = deleteName || baseName == null ? new Name.Builder().build() : baseName;
+        if (updateName == null) {
+            updateName = new Name.Builder().build();
+        }
+
+        Name name = new Name.Builder()
+                .setFormatted(updateValue(currentName.getFormatted(), updateName.getFormatted(),
+                        deleteFields.contains("name.formatted")))
+                .setFamilyName(updateValue(currentName.getFamilyName(), updateName.getFamilyName(),
+                        deleteFields.contains("name.familyName")))
+                .setGivenName(updateValue(currentName.getGivenName(), updateName.getGivenName(),
+                        deleteFields.contains("name.givenName")))
+                .setMiddleName(updateValue(currentName.getMiddleName(), updateName.getMiddleName(),
+                        deleteFields.contains("name.middleName")))
+                .setHonorificPrefix(updateValue(currentName.getHonorificPrefix(), updateName.getHonorificPrefix(),
+                        deleteFields.contains("name.honorificPrefix")))
+                .setHonorificSuffix(updateValue(currentName.getHonorificSuffix(), updateName.getHonorificSuffix(),
+                        deleteFields.contains("name.honorificSuffix")))
+                .build();
+
+        if (name.equals(baseName)) {
+            return baseName;
+        }
+        return name.isEmpty() ? null : name;
+    }
+
+    private static boolean containsSubAttribute(Set<String> deleteFields, String prefix) {
+        for (String field : deleteFields) {
+            if (field.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String updateValue(String currentValue, String newValue, boolean delete) {
+        if (newValue != null) {
+            return newValue;
+        }
+        return delete ? null : currentValue;
+    }
+
+    private <T extends MultiValuedAttribute> void updateMultiValuedAttribute(User.Builder builder, User baseUser,
+            MultiValuedUserAttribute<T> attribute, Set<String> deleteFields) {
+        boolean deleteAll = deleteFields.contains(attribute.getName());
+        List<T> updateAttributes = attribute.get(user);
+        if (!deleteAll && updateAttributes.isEmpty()) {
+            return;
+        }
+        List<T> presentAttributes;
+        if (deleteAll) {
+            attribute.removeAll(builder);
+            presentAttributes = new ArrayList<>();
+        } else {
+            presentAttributes = new ArrayList<>(attribute.get(baseUser));
+        }
+
+        for (T updateAttribute : updateAttributes) {
+            Iterator<T> iterator = presentAttributes.iterator();
+            while (iterator.hasNext()) {
+                T presentAttribute = iterator.next();
+                if (attribute.isSameEntry(presentAttribute, updateAttribute)) {
+                    attribute.remove(builder, presentAttribute);
+                    iterator.remove();
+                }
+            }
+            if (!Builder.DELETE.equalsIgnoreCase(updateAttribute.getOperation())) {
+                attribute.add(builder, updateAttribute);
+                presentAttributes.add(updateAttribute);
+            }
+        }
+    }
+
+    private void updateExtensions(User.Builder builder, User baseUser, Set<String> deleteFields) {
+        Map<String, Extension> updateExtensions = user.getExtensions();
+        if (updateExtensions.isEmpty() && deleteFields.isEmpty()) {
+            return;
+        }
+
+        Map<String, Extension> baseExtensions = baseUser.getExtensions();
+        Map<String, Extension.Builder> changedExtensions = new LinkedHashMap<>();
+        for (String field : deleteFields) {
+            if (baseExtensions.containsKey(field)) {
+                builder.removeExtension(field);
+                changedExtensions.put(field, new Extension.Builder(field));
+                continue;
+            }
+            for (Extension extension : baseExtensions.values()) {
+                String urn = extension.getUrn();
+                if (field.startsWith(urn + ".") && extension.isFieldPresent(field.substring(urn.length() + 1))) {
+                    Extension.Builder extensionBuilder = changedExtensions.get(urn);
+                    if (extensionBuilder == null) {
+                        extensionBuilder = new Extension.Builder(extension);
+                        changedExtensions.put(urn, extensionBuilder);
+                    }
+                    extensionBuilder.removeField(field.substring(urn.length() + 1));
+                }
+            }
+        }
+
+        for (Extension updateExtension : updateExtensions.values()) {
+            String urn = updateExtension.getUrn();
+            Extension.Builder extensionBuilder = changedExtensions.get(urn);
+            if (extensionBuilder == null) {
+                Extension baseExtension = baseExtensions.get(urn);
+                extensionBuilder = baseExtension != null
+                        ? new Extension.Builder(baseExtension) : new Extension.Builder(urn);
+                changedExtensions.put(urn, extensionBuilder);
+            }
+            for (Map.Entry<String, Extension.Field> field : updateExtension.getFields().entrySet()) {
+                extensionBuilder.setField(field.getKey(), field.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Extension.Builder> changedExtension : changedExtensions.entrySet()) {
+            Extension extension = changedExtension.getValue().build();
+            boolean deleted = deleteFields.contains(changedExtension.getKey());
+            if (!deleted || !extension.getFields().isEmpty()) {
+                builder.addExtension(extension);
+            }
+        }
+    }
+
+    /**
+     * Merges the given updates of the same user into one equivalent update. Applying the merged update has the same
+     * effect as applying the given updates one after another.
+     * <p>
+     * Later updates win: a value set or deleted by a later update replaces the value of an earlier one. Multi-valued
+     * entries are only kept in their latest state, so an entry that is deleted and added again becomes a single add and
+     * an entry that is added and deleted again becomes a single delete. If all entries of the attribute are deleted
+     * anyway, deleting an entry has no effect and is dropped.
+     * </p>
+     *
+     * @param updates the updates in the order they have been created
+     * @return the merged update
+     * @throws SCIMDataValidationException if no update or a null update is given
+     */
+    public static UpdateUser merge(Iterable<UpdateUser> updates) {
+        if (updates == null) {
+            throw new SCIMDataValidationException("The given updates must not be null");
+        }
+        UpdateUser mergedUpdate = null;
+        for (UpdateUser update : updates) {
+            mergedUpdate = mergedUpdate == null ? checkNotNull(update) : mergedUpdate.mergeWith(update);
+        }
+        if (mergedUpdate == null) {
+            throw new SCIMDataValidationException("At least one update must be given");
+        }
+        return mergedUpdate;
+    }
+
+    /**
+     * Merges the given later update into this update. See {@link #merge(Iterable)} for details.
+     *
+     * @param laterUpdate the update that has been created after this update
+     * @return the merged update, neither this nor the given update is modified
+     * @throws SCIMDataValidationException if the given update is null
+     */
+    public UpdateUser mergeWith(UpdateUser laterUpdate) {
+        User later = checkNotNull(laterUpdate).user;
+        Set<String> earlierDeletes = deleteFieldsOf(user);
+        Set<String> laterDeletes = deleteFieldsOf(later);
+        Set<String> deleteFields = new LinkedHashSet<>(earlierDeletes);
+        deleteFields.addAll(laterDeletes);
+
+        String userName = Strings.isNullOrEmpty(later.getUserName()) ? user.getUserName() : later.getUserName();
+        User.Builder builder = Strings.isNullOrEmpty(userName) ? new User.Builder() : new User.Builder(userName);
+        builder.setExternalId(mergeValue("externalId", user.getExternalId(), later.getExternalId(),
+                laterDeletes, deleteFields))
+                .setNickName(mergeValue("nickName", user.getNickName(), later.getNickName(),
+                        laterDeletes, deleteFields))
+                .setLocale(mergeValue("locale", user.getLocale(), later.getLocale(),
+                        laterDeletes, deleteFields))
+                .setPreferredLanguage(mergeValue("preferredLanguage", user.getPreferredLanguage(),
+                        later.getPreferredLanguage(), laterDeletes, deleteFields))
+                .setProfileUrl(mergeValue("profileUrl", user.getProfileUrl(), later.getProfileUrl(),
+                        laterDeletes, deleteFields))
+                .setTimezone(mergeValue("timezone", user.getTimezone(), later.getTimezone(),
+                        laterDeletes, deleteFields))
+                .setTitle(mergeValue("title", user.getTitle(), later.getTitle(),
+                        laterDeletes, deleteFields))
+                .setUserType(mergeValue("userType", user.getUserType(), later.getUserType(),
+                        laterDeletes, deleteFields))
+                .setDisplayName(mergeValue("displayName", user.getDisplayName(), later.getDisplayName(),
+                        laterDeletes, deleteFields))
+                .setActive(mergeValue("active", user.isActive(), later.isActive(), laterDeletes, deleteFields))
+                .setName(mergeName(user.getName(), later.getName(), laterDeletes, deleteFields));
+        builder.setPassword(Strings.isNullOrEmpty(later.getPassword()) ? user.getPassword() : later.getPassword());
+
+        for (MultiValuedUserAttribute<?> attribute : MultiValuedUserAttribute.values()) {
+            mergeMultiValuedAttribute(builder, attribute, later, laterDeletes, deleteFields);
+        }
+
+        mergeExtensions(builder, later, laterDeletes, deleteFields);
+
+        if (!deleteFields.isEmpty()) {
+            builder.setMeta(new Meta.Builder().setAttributes(deleteFields).build());
+        }
+        return new UpdateUser(builder.build());
+    }
+
+    private static UpdateUser checkNotNull(UpdateUser update) {
+        if (update == null) {
+            throw new SCIMDataValidationException("The given update must not be null");
+        }
+        return update;
+    }
+
+    private static Set<String> deleteFieldsOf(User user) {
+        if (user.getMeta() == null || user.getMeta().getAttributes() == null) {
+            return Collections.emptySet();
+        }
+        return user.getMeta().getAttributes();
+    }
+
+    /**
+     * A later value wins over a later delete, which wins over the earlier value. A delete followed by a new value is
+     * the same as the new value alone, so the delete is dropped.
+     */
+    private static <T> T mergeValue(String field, T earlierValue, T laterValue, Set<String> laterDeletes,
+                                    Set<String> deleteFields) {
+        if (laterValue != null) {
+            deleteFields.remove(field);
+            return laterValue;
+        }
+        return laterDeletes.contains(field) ? null : earlierValue;
+    }
+
+    private static Name mergeName(Name earlierName, Name laterName, Set<String> laterDeletes,
+                                  Set<String> deleteFields) {
+        if (laterDeletes.contains("name")) {
+            return laterName;
+        }
+        Name earlier = earlierName != null ? earlierName : new Name.Builder().build();
+        Name later = laterName != null ? laterName : new Name.Builder().build();
+        Name name = new Name.Builder()
+                .setFormatted(mergeValue("name.formatted", earlier.getFormatted(), later.getFormatted(),
+                        laterDeletes, deleteFields))
+                .setFamilyName(mergeValue("name.familyName", earlier.getFamilyName(), later.getFamilyName(),
+                        laterDeletes, deleteFields))
+                .setGivenName(mergeValue("name.givenName", earlier.getGivenName(), later.getGivenName(),
+                        laterDeletes, deleteFields))
+                .setMiddleName(mergeValue("name.middleName", earlier.getMiddleName(), later.getMiddleName(),
+                        laterDeletes, deleteFields))
+                .setHonorificPrefix(mergeValue("name.honorificPrefix", earlier.getHonorificPrefix(),
+                        later.getHonorificPrefix(), laterDeletes, deleteFields))
+                .setHonorificSuffix(mergeValue("name.honorificSuffix", earlier.getHonorificSuffix(),
+                        later.getHonorificSuffix(), laterDeletes, deleteFields))
+                .build();
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * Every entry replaces or deletes all present entries with the same value, so only the latest entry per value
+     * determines the result. The latest entries are kept in the order of their last occurrence.
+     */
+    private <T extends MultiValuedAttribute> void mergeMultiValuedAttribute(User.Builder builder,
+            MultiValuedUserAttribute<T> attribute, User later, Set<String> laterDeletes, Set<String> deleteFields) {
+        List<T> entries = new ArrayList<>();
+        if (!laterDeletes.contains(attribute.getName())) {
+            entries.addAll(attribute.get(user));
+        }
+        entries.addAll(attribute.get(later));
+        boolean deleteAll = deleteFields.contains(attribute.getName());
+
+        Set<Object> seenKeys = new HashSet<>();
+        List<T> latestEntries = new ArrayList<>();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            T entry = entries.get(i);
+            if (seenKeys.add(attribute.entryKey(entry))
+                    && !(deleteAll && Builder.DELETE.equalsIgnoreCase(entry.getOperation()))) {
+                latestEntries.add(entry);
+            }
+        }
+        for (int i = latestEntries.size() - 1; i >= 0; i--) {
+            attribute.add(builder, latestEntries.get(i));
+        }
+    }
+
+    private void mergeExtensions(User.Builder builder, User later, Set<String> laterDeletes,
+                                 Set<String> deleteFields) {
+        Map<String, Extension.Builder> extensions = new LinkedHashMap<>();
+        for (Extension extension : user.getExtensions().values()) {
+            extensions.put(extension.getUrn(), new Extension.Builder(extension));
+        }
+        for (String field : laterDeletes) {
+            if (extensions.remove(field) != null) {
+                continue;
+            }
+            for (Map.Entry<String, Extension.Builder> extension : extensions.entrySet()) {
+                String urn = extension.getKey();
+                if (field.startsWith(urn + ".")) {
+                    extension.getValue().removeField(field.substring(urn.length() + 1));
+                }
+            }
+        }
+        for (Extension extension : later.getExtensions().values()) {
+            String urn = extension.getUrn();
+            Extension.Builder extensionBuilder = extensions.get(urn);
+            if (extensionBuilder == null) {
+                extensionBuilder = new Extension.Builder(urn);
+                extensions.put(urn, extensionBuilder);
+            }
+            for (Map.Entry<String, Extension.Field> field : extension.getFields().entrySet()) {
+                extensionBuilder.setField(field.getKey(), field.getValue());
+                deleteFields.remove(urn + "." + field.getKey());
+            }
+        }
+        for (Extension.Builder extension : extensions.values()) {
+            builder.addExtension(extension.build());
+        }
+    }
+
     /**
      * The Builder is used to construct instances of the {@link UpdateUser}
      */
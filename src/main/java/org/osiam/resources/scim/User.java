@@ -28,7 +28,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import org.osiam.resources.exception.SCIMDataValidationException;
 
 import java.io.Serializable;
@@ -460,13 +460,57 @@ public final class User extends Resource implements Serializable {
     }
 
     /**
-     * Provides an unmodifiable view of all additional {@link Extension} fields of the user
+     * Provides an unmodifiable view of all additional {@link Extension} fields of the user, ordered by their URN
      *
      * @return an unmodifiable view of the extensions
      */
     @JsonAnyGetter
     public Map<String, Extension> getExtensions() {
-        return ImmutableMap.copyOf(extensions);
+        return ImmutableSortedMap.copyOf(extensions);
+    }
+
+    /*
+     * Read access without copying for AttributeAccessor. The returned collections must not be modified.
+     */
+
+    List<Email> internalEmails() {
+        return emails;
+    }
+
+    List<PhoneNumber> internalPhoneNumbers() {
+        return phoneNumbers;
+    }
+
+    List<Im> internalIms() {
+        return ims;
+    }
+
+    List<Photo> internalPhotos() {
+        return photos;
+    }
+
+    List<Address> internalAddresses() {
+        return addresses;
+    }
+
+    List<GroupRef> internalGroups() {
+        return groups;
+    }
+
+    List<Entitlement> internalEntitlements() {
+        return entitlements;
+    }
+
+    List<Role> internalRoles() {
+        return roles;
+    }
+
+    List<X509Certificate> internalX509Certificates() {
+        return x509Certificates;
+    }
+
+    Map<String, Extension> internalExtensions() {
+        return extensions;
     }
 
     /**
@@ -537,6 +581,7 @@ public final class User extends Resource implements Serializable {
         private List<Role> roles = new ArrayList<>();
         private List<X509Certificate> x509Certificates = new ArrayList<>();
         private Map<String, Extension> extensions = new HashMap<>();
+        private final Set<Object> sharedWithUser = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
 
         /**
          * creates a new User.Builder based on the given userName and user. All values of the given user will be copied
@@ -571,6 +616,8 @@ public final class User extends Resource implements Serializable {
                 this.roles = MoreObjects.firstNonNull(user.roles, this.roles);
                 this.x509Certificates = MoreObjects.firstNonNull(user.x509Certificates, this.x509Certificates);
                 this.extensions = MoreObjects.firstNonNull(user.extensions, this.extensions);
+                sharedWithUser.addAll(Arrays.asList(emails, phoneNumbers, ims, photos, addresses, groups,
+                        entitlements, roles, x509Certificates, extensions));
             }
             if (!Strings.isNullOrEmpty(userName)) {
                 this.userName = userName;
@@ -754,6 +801,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addEmail(Email email) {
             if (email != null) {
+                this.emails = writable(emails);
                 this.emails.add(new Email.Builder(email).build());
             }
             return this;
@@ -765,6 +813,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeEmails() {
+            this.emails = writable(emails);
             this.emails.clear();
             return this;
         }
@@ -776,6 +825,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeEmail(Email email) {
+            this.emails = writable(emails);
             this.emails.remove(email);
             return this;
         }
@@ -803,6 +853,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addPhoneNumber(PhoneNumber phoneNumber) {
             if (phoneNumber != null) {
+                this.phoneNumbers = writable(phoneNumbers);
                 this.phoneNumbers.add(new PhoneNumber.Builder(phoneNumber).build());
             }
             return this;
@@ -814,6 +865,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removePhoneNumbers() {
+            this.phoneNumbers = writable(phoneNumbers);
             this.phoneNumbers.clear();
             return this;
         }
@@ -825,6 +877,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removePhoneNumber(PhoneNumber phoneNumber) {
+            this.phoneNumbers = writable(phoneNumbers);
             this.phoneNumbers.remove(phoneNumber);
             return this;
         }
@@ -852,6 +905,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addIm(Im im) {
             if (im != null) {
+                this.ims = writable(ims);
                 this.ims.add(new Im.Builder(im).build());
             }
             return this;
@@ -863,6 +917,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeIms() {
+            this.ims = writable(ims);
             this.ims.clear();
             return this;
         }
@@ -874,6 +929,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeIm(Im im) {
+            this.ims = writable(ims);
             this.ims.remove(im);
             return this;
         }
@@ -901,6 +957,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addPhoto(Photo photo) {
             if (photo != null) {
+                this.photos = writable(photos);
                 this.photos.add(new Photo.Builder(photo).build());
             }
             return this;
@@ -912,6 +969,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removePhotos() {
+            this.photos = writable(photos);
             this.photos.clear();
             return this;
         }
@@ -923,6 +981,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removePhoto(Photo photo) {
+            this.photos = writable(photos);
             this.photos.remove(photo);
             return this;
         }
@@ -950,6 +1009,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addAddress(Address address) {
             if (address != null) {
+                this.addresses = writable(addresses);
                 this.addresses.add(new Address.Builder(address).build());
             }
             return this;
@@ -961,6 +1021,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeAddresses() {
+            this.addresses = writable(addresses);
             this.addresses.clear();
             return this;
         }
@@ -972,6 +1033,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeAddress(Address address) {
+            this.addresses = writable(addresses);
             this.addresses.remove(address);
             return this;
         }
@@ -1015,6 +1077,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addEntitlement(Entitlement entitlement) {
             if (entitlement != null) {
+                this.entitlements = writable(entitlements);
                 this.entitlements.add(new Entitlement.Builder(entitlement).build());
             }
             return this;
@@ -1026,6 +1089,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeEntitlements() {
+            this.entitlements = writable(entitlements);
             this.entitlements.clear();
             return this;
         }
@@ -1037,6 +1101,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeEntitlement(Entitlement entitlement) {
+            this.entitlements = writable(entitlements);
             this.entitlements.remove(entitlement);
             return this;
         }
@@ -1064,6 +1129,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addRole(Role role) {
             if (role != null) {
+                this.roles = writable(roles);
                 this.roles.add(new Role.Builder(role).build());
             }
             return this;
@@ -1075,6 +1141,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeRoles() {
+            this.roles = writable(roles);
             this.roles.clear();
             return this;
         }
@@ -1086,6 +1153,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeRole(Role role) {
+            this.roles = writable(roles);
             this.roles.remove(role);
             return this;
         }
@@ -1113,6 +1181,7 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addX509Certificate(X509Certificate x509Certificate) {
             if (x509Certificate != null) {
+                this.x509Certificates = writable(x509Certificates);
                 this.x509Certificates.add(new X509Certificate.Builder(x509Certificate).build());
             }
             return this;
@@ -1124,6 +1193,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeX509Certificates() {
+            this.x509Certificates = writable(x509Certificates);
             this.x509Certificates.clear();
             return this;
         }
@@ -1135,6 +1205,7 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeX509Certificate(X509Certificate x509Certificate) {
+            this.x509Certificates = writable(x509Certificates);
             this.x509Certificates.remove(x509Certificate);
             return this;
         }
@@ -1162,7 +1233,8 @@ public final class User extends Resource implements Serializable {
          */
         public Builder addExtension(Extension extension) {
             if (extension != null) {
-                extensions.put(extension.getUrn(), extension);
+                this.extensions = writable(extensions);
+                this.extensions.put(extension.getUrn(), extension);
                 addSchema(extension.getUrn());
             }
             return this;
@@ -1174,7 +1246,10 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeExtensions() {
-            this.extensions.clear();
+            for (String urn : extensions.keySet()) {
+                removeSchema(urn);
+            }
+            this.extensions = new HashMap<>();
             return this;
         }
 
@@ -1185,7 +1260,11 @@ public final class User extends Resource implements Serializable {
          * @return the builder itself
          */
         public Builder removeExtension(String urn) {
-            this.extensions.remove(urn);
+            if (extensions.containsKey(urn)) {
+                this.extensions = writable(extensions);
+                this.extensions.remove(urn);
+                removeSchema(urn);
+            }
             return this;
         }
 
@@ -1222,5 +1301,23 @@ public final class User extends Resource implements Serializable {
         public User build() {
             return new User(this);
         }
+
+        /**
+         * Collections taken over from an existing {@link User} are shared until the first modification, so that
+         * unchanged attributes of a derived user don't need to be copied and the original user stays untouched.
+         */
+        private <T> List<T> writable(List<T> list) {
+            if (sharedWithUser.remove(list)) {
+                return new ArrayList<>(list);
+            }
+            return list;
+        }
+
+        private <K, V> Map<K, V> writable(Map<K, V> map) {
+            if (sharedWithUser.remove(map)) {
+                return new HashMap<>(map);
+            }
+            return map;
+        }
     }
 }
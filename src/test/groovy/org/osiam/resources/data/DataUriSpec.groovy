@@ -115,6 +115,63 @@ class DataUriSpec  extends Specification{
         dataUri.toString() == new ImageDataURI(returnedInputStream).toString()
     }
     
+    def 'a stream is encoded chunk by chunk into the same data URI'() {
+        given:
+        byte[] bytes = getClass().getResourceAsStream('osiamlogo.png').bytes
+        byte[] large = new byte[200003]
+        new Random(42).nextBytes(large)
+
+        when:
+        DataURI dataUri = new DataURI(new ByteArrayInputStream(bytes))
+        DataURI largeDataUri = new DataURI(new ByteArrayInputStream(large))
+
+        then:
+        dataUri.toString() == 'data:image/png;base64,' + bytes.encodeBase64().toString()
+        dataUri.getAsURI() == new URI(dataUri.toString())
+        largeDataUri.toString().endsWith(';base64,' + large.encodeBase64().toString())
+        largeDataUri.getAsInputStream().bytes == large
+    }
+
+    @Unroll
+    def 'the payload of #length bytes is decoded while the stream is read'() {
+        given:
+        byte[] bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+        DataURI dataUri = new DataURI('data:application/octet-stream;base64,' + bytes.encodeBase64().toString())
+        InputStream inputStream = dataUri.getAsInputStream()
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        int next
+        while ((next = inputStream.read()) >= 0) {
+            output.write(next)
+        }
+
+        then:
+        output.toByteArray() == bytes
+        dataUri.getAsInputStream().bytes == bytes
+        dataUri.mimeType == 'application/octet-stream'
+
+        where:
+        length << [0, 1, 2, 3, 4, 5, 1000]
+    }
+
+    def 'a stream larger than the maximum size raises exception'() {
+        when:
+        new ImageDataURI(getClass().getResourceAsStream('osiamlogo.png'), 100)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'a stream of exactly the maximum size is accepted'() {
+        given:
+        byte[] bytes = getClass().getResourceAsStream('osiamlogo.png').bytes
+
+        expect:
+        new ImageDataURI(new ByteArrayInputStream(bytes), bytes.length).getAsInputStream().bytes == bytes
+    }
+
     @Unroll
     def 'A mime type #type can be reconized correctly from the Photo'() {
         given:
@@ -134,4 +191,46 @@ class DataUriSpec  extends Specification{
         PhotoValueType.IMAGE_DATA_URI | new ImageDataURI(getClass().getResourceAsStream('osiamlogo.png'))
     }
 
+    @Unroll
+    def 'the photo value #value is classified as #type without parsing it twice'() {
+        given:
+        Photo photo = new Photo(null, value, null, false, null, null)
+
+        expect:
+        photo.getValueType() == type
+        photo.getValueType().is(photo.getValueType())
+        type != PhotoValueType.IMAGE_DATA_URI || photo.getValueAsImageDataURI().is(photo.getValueAsImageDataURI())
+        type != PhotoValueType.URI || photo.getValueAsURI() == new URI(value)
+
+        where:
+        type                          | value
+        PhotoValueType.IMAGE_DATA_URI | 'data:image/png;base64,iVBORw0KGgo='
+        PhotoValueType.URI            | 'data:text/plain;base64,iVBORw0KGgo='
+        PhotoValueType.URI            | 'data:image/png,iVBORw0KGgo='
+        PhotoValueType.URI            | 'http://example.com/photo.png'
+        PhotoValueType.UNKNOWN        | 'data:image/png;base64,iVBO Rw0KGgo='
+        PhotoValueType.UNKNOWN        | 'http://example.com/a photo.png'
+    }
+
+    @Unroll
+    def 'the check whether #value is an image data URI agrees with the constructor'() {
+        expect:
+        ImageDataURI.isImageDataUri(value) == valid
+
+        when:
+        new ImageDataURI(value)
+
+        then:
+        valid || thrown(SCIMDataValidationException)
+
+        where:
+        value                                  | valid
+        'data:image/png;base64,iVBORw0KGgo='   | true
+        'data:image/png;base64,iVBO%52w0KGgo=' | true
+        'data:image/png;base64,iVBO%5'         | false
+        'data:image/png;base64,iV#BO#Rw'       | false
+        'data:image/png;base64,iVBO"Rw0KGgo='  | false
+        'data:text/plain;base64,iVBORw0KGgo='  | false
+        'data:image/png,iVBORw0KGgo='          | false
+    }
 }
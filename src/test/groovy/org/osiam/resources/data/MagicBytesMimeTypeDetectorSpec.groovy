@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MagicBytesMimeTypeDetectorSpec extends Specification {
+
+    MimeTypeDetector fallback = Mock()
+    MimeTypeDetector detector = new MagicBytesMimeTypeDetector(fallback)
+
+    @Unroll
+    def 'the signature of #mimeType is detected without the fallback'() {
+        when:
+        String detected = detector.detect(bytes, bytes.length)
+
+        then:
+        detected == mimeType
+        0 * fallback._
+
+        where:
+        mimeType     | bytes
+        'image/png'  | getClass().getResourceAsStream('osiamlogo.png').bytes
+        'image/jpeg' | [0xff, 0xd8, 0xff, 0xe0, 0x00, 0x10] as byte[]
+        'image/gif'  | 'GIF89a\u0001\u0000'.getBytes('ISO-8859-1')
+        'image/gif'  | 'GIF87a\u0001\u0000'.getBytes('ISO-8859-1')
+        'image/webp' | 'RIFF$\u0000\u0000\u0000WEBPVP8 '.getBytes('ISO-8859-1')
+        'image/bmp'  | ('BMF\u0000\u0000\u0000' + '\u0000' * 48).getBytes('ISO-8859-1')
+    }
+
+    @Unroll
+    def 'unknown content #content is passed to the fallback'() {
+        given:
+        byte[] bytes = content.getBytes('ISO-8859-1')
+
+        when:
+        String detected = detector.detect(bytes, bytes.length)
+
+        then:
+        1 * fallback.detect(bytes, bytes.length) >> 'text/plain'
+        detected == 'text/plain'
+
+        where:
+        content << ['', 'BMW is a car maker', 'RIFF$\u0000\u0000\u0000WAVEfmt ', 'GIF8']
+    }
+
+    def 'only the given number of bytes is considered'() {
+        given:
+        byte[] bytes = getClass().getResourceAsStream('osiamlogo.png').bytes
+
+        when:
+        detector.detect(bytes, 4)
+
+        then:
+        1 * fallback.detect(bytes, 4) >> 'application/octet-stream'
+    }
+
+    def 'a data URI is created with the given detector'() {
+        given:
+        byte[] bytes = getClass().getResourceAsStream('noPicture.txt').bytes
+
+        when:
+        DataURI dataUri = new DataURI(new ByteArrayInputStream(bytes), bytes.length, detector)
+
+        then:
+        1 * fallback.detect(_, bytes.length) >> 'text/plain'
+        dataUri.mimeType == 'text/plain'
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.data
+
+import org.osiam.resources.exception.SCIMDataValidationException
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MappedDataURISpec extends Specification {
+
+    byte[] image = getClass().getResourceAsStream('osiamlogo.png').bytes
+
+    def 'a mapped data URI has the same content as a data URI on the heap'() {
+        given:
+        DataURI dataUri = new DataURI(new ByteArrayInputStream(image))
+
+        when:
+        MappedDataURI mappedDataUri = MappedDataURI.create(new ByteArrayInputStream(image))
+
+        then:
+        mappedDataUri.toString() == dataUri.toString()
+        mappedDataUri.mimeType == 'image/png'
+        mappedDataUri.asInputStream.bytes == image
+        mappedDataUri.asURI == dataUri.asURI
+        mappedDataUri.hashCode() == dataUri.hashCode()
+        mappedDataUri == MappedDataURI.create(new ByteArrayInputStream(image))
+        mappedDataUri.equals(dataUri)
+        dataUri.equals(mappedDataUri)
+        !mappedDataUri.equals(new ImageDataURI(new ByteArrayInputStream(image)))
+    }
+
+    def 'a mapped data URI is written to a stream'() {
+        given:
+        MappedDataURI mappedDataUri = MappedDataURI.create(new ByteArrayInputStream(image))
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        mappedDataUri.writeTo(output)
+
+        then:
+        new String(output.toByteArray(), 'US-ASCII') == 'data:image/png;base64,' + image.encodeBase64().toString()
+    }
+
+    def 'a file that contains a data URI is mapped'() {
+        given:
+        Path file = Files.createTempFile('data-uri', '.txt')
+        file.toFile().text = 'data:image/png;base64,' + image.encodeBase64().toString()
+
+        when:
+        MappedDataURI mappedDataUri = MappedDataURI.map(file)
+
+        then:
+        mappedDataUri.mimeType == 'image/png'
+        mappedDataUri.asInputStream.bytes == image
+
+        cleanup:
+        Files.deleteIfExists(file)
+    }
+
+    def 'mapping a file that contains no data URI raises exception'() {
+        given:
+        Path file = Files.createTempFile('data-uri', '.txt')
+        file.toFile().text = 'no data URI'
+
+        when:
+        MappedDataURI.map(file)
+
+        then:
+        thrown(SCIMDataValidationException)
+
+        cleanup:
+        Files.deleteIfExists(file)
+    }
+
+    def 'a stream larger than the maximum size raises exception'() {
+        when:
+        MappedDataURI.create(new ByteArrayInputStream(image), 100, MagicBytesMimeTypeDetector.DEFAULT)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.filter
+
+import org.osiam.resources.exception.SCIMDataValidationException
+import org.osiam.resources.scim.Email
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.Group
+import org.osiam.resources.scim.MemberRef
+import org.osiam.resources.scim.Meta
+import org.osiam.resources.scim.Name
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CompiledFilterSpec extends Specification {
+
+    static final String EXTENSION_URN = 'urn:org.osiam:scim:extensions:test'
+
+    static final User BJENSEN = new User.Builder('bjensen')
+            .setId('id1')
+            .setDisplayName('Babs Jensen')
+            .setActive(true)
+            .setName(new Name.Builder().setFamilyName('Jensen').setGivenName('Barbara').build())
+            .addEmails([new Email.Builder().setValue('bjensen@example.com').setType(Email.Type.WORK).setPrimary(true).build(),
+                        new Email.Builder().setValue('babs@jensen.org').setType(Email.Type.HOME).build()])
+            .setMeta(new Meta.Builder(new Date(1300000000000L), new Date(1400000000000L)).build())
+            .addExtension(new Extension.Builder(EXTENSION_URN)
+                    .setField('age', BigInteger.valueOf(42))
+                    .setField('nickName', 'Bobby')
+                    .build())
+            .build()
+
+    static final User JSMITH = new User.Builder('jsmith').setId('id2').build()
+
+    @Unroll
+    def 'the filter \'#filter\' matches #matchingUsers'() {
+        given:
+        CompiledFilter<User> compiledFilter = CompiledFilter.compile(filter, User)
+
+        expect:
+        compiledFilter.filter([BJENSEN, JSMITH])*.userName == matchingUsers
+
+        where:
+        filter                                                       | matchingUsers
+        'userName eq "BJENSEN"'                                      | ['bjensen']
+        'id eq "ID1"'                                                | []
+        'userName sw "j" or userName ew "sen"'                       | ['bjensen', 'jsmith']
+        'emails co "example"'                                        | ['bjensen']
+        'emails.type eq "home"'                                      | ['bjensen']
+        'emails[type eq "work" and value co "@example.com"]'         | ['bjensen']
+        'emails pr'                                                  | ['bjensen']
+        'not (emails pr)'                                            | ['jsmith']
+        'name.familyName eq "jensen" and active eq true'             | ['bjensen']
+        'title eq null'                                              | ['bjensen', 'jsmith']
+        'meta.lastModified gt "2011-05-13T04:42:34Z"'                | ['bjensen']
+        EXTENSION_URN + ':age gt 40'                                 | ['bjensen']
+        EXTENSION_URN + ':nickName sw "bob"'                         | ['bjensen']
+        User.SCHEMA + ':userName eq "jsmith"'                        | ['jsmith']
+    }
+
+    def 'members of a group can be filtered by their value'() {
+        given:
+        Group group = new Group.Builder('admins').addMember(new MemberRef.Builder().setValue('id1').build()).build()
+
+        expect:
+        CompiledFilter.compile('members eq "id1" and displayName eq "ADMINS"', Group).matches(group)
+        !CompiledFilter.compile('members eq "id2"', Group).matches(group)
+    }
+
+    def 'compiled filters are cached'() {
+        expect:
+        CompiledFilter.compile('userName eq "a"', User).is(CompiledFilter.compile('userName eq "a"', User))
+    }
+
+    def 'a parsed filter can be turned back into the same filter'() {
+        given:
+        Filter filter = Filter.parse('a eq "x" and (b pr or not (c eq 1)) and d[e sw "y"]')
+
+        expect:
+        filter.toString() == 'a eq "x" and (b pr or not (c eq 1)) and d[e sw "y"]'
+        Filter.parse(filter.toString()) == filter
+    }
+
+    def 'filters that only differ in case, order and nesting have the same normal form'() {
+        expect:
+        Filter.parse('(Active eq true) and UserName eq "a"').normalize() ==
+                Filter.parse('userName eq "a" and active eq true').normalize()
+        Filter.parse('b pr or (a pr or c pr) or not (not (a pr))').normalize().toString() == 'a pr or b pr or c pr'
+        Filter.parse('urn:x:Field pr and Active eq true').normalize().toString() == 'active eq true and urn:x:Field pr'
+    }
+
+    @Unroll
+    def 'the invalid filter \'#filter\' is rejected'() {
+        when:
+        CompiledFilter.compile(filter, User)
+
+        then:
+        thrown(SCIMDataValidationException)
+
+        where:
+        filter << ['userName eq', '(userName pr', 'userName eq "a" and', 'foo eq "a"', 'name.foo pr',
+                   'active gt true', 'name eq "x"', 'meta.created eq "yesterday"']
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper
+
+import org.osiam.resources.data.PhotoValueType
+import org.osiam.resources.scim.Photo
+import org.osiam.resources.scim.User
+import org.osiam.resources.scim.X509Certificate
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class BlobStoreSpec extends Specification {
+
+    static final String AVATAR = 'data:image/png;base64,' + 'iVBORw0KGgo' * 20
+
+    Path directory = Files.createTempDirectory('blobs')
+    BlobStore store = new BlobStore.Builder(directory).setMinSize(100).build()
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def 'a value is stored once by its content'() {
+        when:
+        String reference = store.put(AVATAR)
+
+        then:
+        BlobStore.isReference(reference)
+        store.put(AVATAR) == reference
+        store.get(reference) == AVATAR
+        storedFiles() == 1
+    }
+
+    def 'large photos and certificates are replaced by references and restored'() {
+        given:
+        Photo link = new Photo.Builder().setValue(new URI('http://example.com/photo.png')).build()
+        List<User> users = (1..3).collect {
+            new User.Builder('user' + it)
+                    .addPhoto(new Photo(null, AVATAR, 'avatar', true, null, Photo.Type.PHOTO))
+                    .addPhoto(link)
+                    .addX509Certificate(new X509Certificate.Builder().setValue('MIIB' * 30 + it).build())
+                    .addX509Certificate(new X509Certificate.Builder().setValue('MIIB').build())
+                    .build()
+        }
+
+        when:
+        List<User> dehydrated = users.collect { store.dehydrate(it) }
+
+        then:
+        dehydrated.every {
+            it.photos[0].valueType == PhotoValueType.URI && it.photos[0].display == 'avatar' &&
+                    it.photos[1] == link && BlobStore.isReference(it.x509Certificates[0].value) &&
+                    it.x509Certificates[1].value == 'MIIB'
+        }
+        storedFiles() == 4
+
+        when:
+        List<User> rehydrated = dehydrated.collect { store.rehydrate(it) }
+
+        then:
+        (0..2).every {
+            rehydrated[it].photos == users[it].photos && rehydrated[it].x509Certificates == users[it].x509Certificates
+        }
+    }
+
+    def 'a user without values to store or restore is returned as it is'() {
+        given:
+        User user = new User.Builder('user').addX509Certificate(new X509Certificate.Builder().setValue('MIIB').build())
+                .build()
+
+        expect:
+        store.dehydrate(user).is(user)
+        store.rehydrate(user).is(user)
+    }
+
+    def 'reading a value that is not stored raises exception'() {
+        when:
+        store.get(BlobStore.REFERENCE_PREFIX + '0' * 64)
+
+        then:
+        thrown(IOException)
+    }
+
+    def 'reading with a string that is no reference raises exception'() {
+        when:
+        store.get('blob:sha256:../../etc/passwd')
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private int storedFiles() {
+        int count = 0
+        directory.toFile().eachFileRecurse { if (it.isFile()) count++ }
+        count
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.helper
+
+import org.osiam.resources.scim.BulkOperation
+import org.osiam.resources.scim.BulkResponse
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+
+class BulkMessageWriterSpec extends Specification {
+
+    def 'operations written one by one can be read one by one'() {
+        given:
+        def outputStream = new ByteArrayOutputStream()
+        BulkMessageWriter writer = BulkMessageWriter.forRequest(outputStream, 5)
+        User user = new User.Builder('bjensen')
+                .addExtension(new Extension.Builder('urn:org.osiam:scim:extensions:test').setField('age', 'old').build())
+                .build()
+
+        when:
+        10000.times { int i ->
+            writer.write(new BulkOperation.Builder(BulkOperation.Method.POST, '/Users')
+                    .setBulkId("user$i")
+                    .setData(user)
+                    .build())
+        }
+        writer.close()
+        BulkMessageReader reader = new BulkMessageReader(new ByteArrayInputStream(outputStream.toByteArray()))
+        List<BulkOperation> operations = reader.collect()
+
+        then:
+        reader.isRequest()
+        reader.failOnErrors == 5
+        operations.size() == 10000
+        operations[9999].bulkId == 'user9999'
+        operations[9999].user.getExtension('urn:org.osiam:scim:extensions:test').getFieldAsString('age') == 'old'
+    }
+
+    def 'attributes following the operations are available after reading all operations'() {
+        given:
+        def json = '''{"Operations":[{"method":"DELETE","path":"/Users/1"}],
+                "schemas":["urn:ietf:params:scim:api:messages:2.0:BulkResponse"]}'''
+        BulkMessageReader reader = new BulkMessageReader(new ByteArrayInputStream(json.bytes))
+
+        expect:
+        !reader.isResponse()
+        reader.next().method == BulkOperation.Method.DELETE
+        !reader.hasNext()
+        reader.isResponse()
+        reader.schemas == [BulkResponse.SCHEMA] as Set
+    }
+
+    def 'an empty response is written as a valid bulk response'() {
+        given:
+        def outputStream = new ByteArrayOutputStream()
+
+        when:
+        BulkMessageWriter.forResponse(outputStream).close()
+
+        then:
+        outputStream.toString() == '{"schemas":["' + BulkResponse.SCHEMA + '"],"Operations":[]}'
+    }
+
+    def 'a message that is no JSON object raises exception'() {
+        when:
+        new BulkMessageReader(new ByteArrayInputStream('[]'.bytes))
+
+        then:
+        thrown(IOException)
+    }
+}
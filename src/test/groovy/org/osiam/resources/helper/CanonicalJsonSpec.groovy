@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.Group
+import org.osiam.resources.scim.MemberRef
+import org.osiam.resources.scim.User
+import spock.lang.Shared
+import spock.lang.Specification
+
+class CanonicalJsonSpec extends Specification {
+
+    @Shared
+    ObjectMapper mapper = CanonicalJson.configure(new ObjectMapper())
+
+    def 'equal users with differently ordered extensions and fields are written as identical JSON'() {
+        given:
+        List<String> fieldNames = (1..20).collect { 'field' + it }
+        User user = new User.Builder('userName')
+                .addExtension(extension('urn:a', fieldNames))
+                .addExtension(extension('urn:b', fieldNames))
+                .build()
+        User otherUser = new User.Builder('userName')
+                .addExtension(extension('urn:b', fieldNames.reverse()))
+                .addExtension(extension('urn:a', fieldNames.reverse()))
+                .build()
+
+        when:
+        String json = mapper.writeValueAsString(user)
+
+        then:
+        json == mapper.writeValueAsString(otherUser)
+        json.startsWith('{"schemas":["urn:a","urn:b","urn:ietf:params:scim:schemas:core:2.0:User"]')
+        json.indexOf('"field1"') < json.indexOf('"field10"')
+        json.indexOf('"field10"') < json.indexOf('"field2"')
+        json.indexOf('"urn:a":') < json.indexOf('"urn:b":')
+    }
+
+    def 'equal groups with differently ordered members are written as identical JSON'() {
+        given:
+        List<MemberRef> members = (1..50).collect { new MemberRef.Builder().setValue('member' + it).build() }
+        Group group = new Group.Builder('group').setMembers(new LinkedHashSet<>(members)).build()
+        Group otherGroup = new Group.Builder('group').setMembers(new LinkedHashSet<>(members.reverse())).build()
+
+        when:
+        String json = mapper.writeValueAsString(group)
+
+        then:
+        json == mapper.writeValueAsString(otherGroup)
+        json.indexOf('"member1"') < json.indexOf('"member10"')
+    }
+
+    def 'empty sets are still omitted'() {
+        when:
+        String json = mapper.writeValueAsString(new Group.Builder('group').build())
+
+        then:
+        !json.contains('members')
+    }
+
+    private static Extension extension(String urn, List<String> fieldNames) {
+        Extension.Builder builder = new Extension.Builder(urn)
+        fieldNames.each { builder.setField(it, 'value of ' + it) }
+        builder.build()
+    }
+}
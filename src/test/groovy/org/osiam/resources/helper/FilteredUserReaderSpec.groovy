@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.osiam.resources.filter.CompiledFilter
+import org.osiam.resources.filter.CompiledJsonFilter
+import org.osiam.resources.scim.Email
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.SCIMSearchResult
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FilteredUserReaderSpec extends Specification {
+
+    static final String URN = 'urn:org.osiam:scim:extensions:test'
+
+    static final List<User> USERS = (0..<20).collect { int i ->
+        new User.Builder("user$i")
+                .setId("id$i")
+                .setActive(i % 2 == 0)
+                .addEmail(new Email.Builder().setValue("user$i@example.${i % 3 == 0 ? 'org' : 'com'}")
+                .setType(i % 4 == 0 ? Email.Type.WORK : Email.Type.HOME).build())
+                .addExtension(new Extension.Builder(URN).setField('age', BigInteger.valueOf(i)).build())
+                .build()
+    }
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    @Unroll
+    def 'reading a list response with filter #filter returns the same users as the compiled filter'() {
+        given:
+        def json = mapper.writeValueAsString(new SCIMSearchResult<User>(USERS, 20, 20, 1))
+        def reader = FilteredUserReader.forListResponse(new ByteArrayInputStream(json.bytes),
+                CompiledJsonFilter.compile(filter, User))
+
+        when:
+        List<User> users = reader.collect()
+
+        then:
+        users == CompiledFilter.compile(filter, User).filter(USERS)
+        users*.getExtension(URN) == CompiledFilter.compile(filter, User).filter(USERS)*.getExtension(URN)
+        reader.skippedResources == USERS.size() - users.size()
+        reader.totalResults == 20
+
+        where:
+        filter << ['active eq true',
+                   'emails co "example.org"',
+                   'emails[type eq "work"] and not (userName eq "USER4")',
+                   "$URN:age ge 15 or userName sw \"user1\"",
+                   'name pr']
+    }
+
+    def 'users of a newline delimited stream are filtered'() {
+        given:
+        def json = USERS.collect { mapper.writeValueAsString(it) }.join('\n')
+        def reader = FilteredUserReader.forJsonStream(new ByteArrayInputStream(json.bytes),
+                CompiledJsonFilter.compile('userName ew "7"', User))
+
+        expect:
+        reader.collect()*.id == ['id7', 'id17']
+        reader.skippedResources == 18
+    }
+
+    def 'a resource is skipped as soon as the filter attributes have been read'() {
+        given:
+        def json = '''{"userName":"a","schemas":["urn:ietf:params:scim:schemas:core:2.0:User"],"emails":"no list"}
+                {"userName":"b","schemas":["urn:ietf:params:scim:schemas:core:2.0:User"]}'''
+        def reader = FilteredUserReader.forJsonStream(new ByteArrayInputStream(json.bytes),
+                CompiledJsonFilter.compile('userName eq "b"', User))
+
+        expect:
+        reader.next().userName == 'b'
+        !reader.hasNext()
+    }
+
+    def 'a list response without resources contains no users'() {
+        given:
+        def json = '{"totalResults":0,"schemas":["urn:ietf:params:scim:api:messages:2.0:ListResponse"]}'
+        def reader = FilteredUserReader.forListResponse(new ByteArrayInputStream(json.bytes),
+                CompiledJsonFilter.compile('active eq true', User))
+
+        expect:
+        !reader.hasNext()
+        reader.totalResults == 0
+    }
+
+    def 'a resource that is no JSON object leads to an exception'() {
+        given:
+        def reader = FilteredUserReader.forJsonStream(new ByteArrayInputStream('[1]'.bytes),
+                CompiledJsonFilter.compile('active eq true', User))
+
+        when:
+        reader.hasNext()
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
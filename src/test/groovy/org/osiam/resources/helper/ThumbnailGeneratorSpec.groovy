@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.helper
+
+import org.osiam.resources.data.ImageDataURI
+import org.osiam.resources.exception.SCIMDataValidationException
+import org.osiam.resources.scim.Photo
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+
+import javax.imageio.ImageIO
+import java.awt.image.BufferedImage
+import java.util.concurrent.Executors
+
+class ThumbnailGeneratorSpec extends Specification {
+
+    ThumbnailGenerator generator = new ThumbnailGenerator.Builder().setSize(64).build()
+
+    def 'a thumbnail fits into the configured size and keeps the aspect ratio'() {
+        when:
+        ImageDataURI thumbnail = generator.createThumbnail(image(1000, 500))
+
+        then:
+        thumbnail.mimeType == 'image/png'
+        BufferedImage decoded = ImageIO.read(thumbnail.asInputStream)
+        decoded.width == 64
+        decoded.height == 32
+    }
+
+    def 'an image that already fits is used as thumbnail'() {
+        given:
+        ImageDataURI small = image(40, 30)
+
+        expect:
+        generator.createThumbnail(small).is(small)
+    }
+
+    def 'an image that can not be decoded raises exception'() {
+        when:
+        generator.createThumbnail(new ImageDataURI('data:image/png;base64,AAAA'))
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'the photos of a user are replaced by thumbnails'() {
+        given:
+        Photo photo = new Photo.Builder().setValue(image(300, 600)).setType(Photo.Type.PHOTO).setPrimary(true).build()
+        Photo link = new Photo.Builder().setValue(new URI('http://example.com/photo.png')).build()
+        User user = new User.Builder('user').addPhotos([photo, link]).build()
+
+        when:
+        User result = generator.withThumbnails(user)
+
+        then:
+        result.photos.size() == 2
+        result.photos.contains(link)
+        Photo thumbnail = result.photos.find { it.type == Photo.Type.THUMBNAIL }
+        thumbnail.primary
+        ImageIO.read(thumbnail.valueAsImageDataURI.asInputStream).height == 64
+    }
+
+    def 'the photos are kept if configured'() {
+        given:
+        Photo photo = new Photo.Builder().setValue(image(300, 600)).setType(Photo.Type.PHOTO).build()
+        User user = new User.Builder('user').addPhoto(photo).build()
+
+        when:
+        User result = new ThumbnailGenerator.Builder().setKeepPhotos(true).build().withThumbnails(user)
+
+        then:
+        result.photos*.type == [Photo.Type.PHOTO, Photo.Type.THUMBNAIL]
+    }
+
+    def 'a user without image data URIs is returned as it is'() {
+        given:
+        User user = new User.Builder('user')
+                .addPhoto(new Photo(null, 'data:image/png;base64,AAAA', null, false, null, Photo.Type.PHOTO))
+                .build()
+
+        expect:
+        generator.withThumbnails(user).is(user)
+    }
+
+    def 'a list of users is processed in parallel and keeps its order'() {
+        given:
+        List<User> users = (1..10).collect {
+            new User.Builder('user' + it).addPhoto(new Photo.Builder().setValue(image(100 + it, 200)).build()).build()
+        }
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        List<User> results = new ThumbnailGenerator.Builder().setExecutor(executor).build().withThumbnails(users)
+
+        then:
+        results*.userName == users*.userName
+        results.every { it.photos.size() == 1 && it.photos[0].type == Photo.Type.THUMBNAIL }
+        !executor.isShutdown()
+
+        cleanup:
+        executor.shutdown()
+    }
+
+    def 'a size less than 1 raises exception'() {
+        when:
+        new ThumbnailGenerator.Builder().setSize(0).build()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static ImageDataURI image(int width, int height) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), 'png', output)
+        new ImageDataURI(new ByteArrayInputStream(output.toByteArray()))
+    }
+}
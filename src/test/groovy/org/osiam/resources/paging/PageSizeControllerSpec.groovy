@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.osiam.resources.paging
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class PageSizeControllerSpec extends Specification {
+
+    def 'the count shrinks to the target size at once'() {
+        given:
+        PageSizeController pageSize = new PageSizeController.Builder().setTargetBytes(100000).build()
+
+        when:
+        pageSize.record(100, 100 * 2000, -1)
+
+        then:
+        pageSize.count == 50
+        pageSize.bytesPerResource == 2000
+    }
+
+    def 'the count grows by at most the double per page up to the maximum'() {
+        given:
+        PageSizeController pageSize = new PageSizeController.Builder()
+                .setTargetBytes(1000000)
+                .setMaxCount(500)
+                .build()
+        List<Integer> counts = []
+
+        when:
+        4.times {
+            counts << pageSize.count
+            pageSize.record(pageSize.count, pageSize.count * 100, -1)
+        }
+
+        then:
+        counts == [100, 200, 400, 500]
+    }
+
+    def 'the count is limited by the target latency'() {
+        given:
+        PageSizeController pageSize = new PageSizeController.Builder()
+                .setTargetBytes(1000000)
+                .setTargetLatency(200, TimeUnit.MILLISECONDS)
+                .build()
+
+        when:
+        pageSize.record(100, 100 * 100, TimeUnit.MILLISECONDS.toNanos(400))
+
+        then:
+        pageSize.count == 50
+    }
+
+    def 'the count is not less than the minimum count'() {
+        given:
+        PageSizeController pageSize = new PageSizeController.Builder()
+                .setTargetBytes(1000)
+                .setMinCount(10)
+                .build()
+
+        when:
+        pageSize.record(100, 100 * 5000, -1)
+
+        then:
+        pageSize.count == 10
+    }
+
+    def 'a controller without target is rejected'() {
+        when:
+        new PageSizeController.Builder().build()
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
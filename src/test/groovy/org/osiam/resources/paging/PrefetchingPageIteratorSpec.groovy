@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.osiam.resources.paging
+
+import org.osiam.resources.scim.SCIMSearchResult
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class PrefetchingPageIteratorSpec extends Specification {
+
+    static final List<User> USERS = (1..95).collect { int i -> new User.Builder("user$i").setId("id$i").build() }
+
+    AtomicInteger fetchedPages = new AtomicInteger()
+
+    PageFetcher<User> fetcher = { long startIndex, int count ->
+        fetchedPages.incrementAndGet()
+        int from = (int) Math.min(startIndex - 1, USERS.size())
+        List<User> page = new ArrayList<>(USERS.subList(from, Math.min(from + count, USERS.size())))
+        new SCIMSearchResult<User>(page, USERS.size(), page.size(), startIndex)
+    } as PageFetcher<User>
+
+    def 'all pages are returned in order'() {
+        given:
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(fetcher, 10, 3)
+
+        when:
+        List<SCIMSearchResult<User>> result = pages.collect()
+        pages.close()
+
+        then:
+        result*.startIndex == [1, 11, 21, 31, 41, 51, 61, 71, 81, 91]
+        result*.resources.flatten() == USERS
+        fetchedPages.get() == 10
+    }
+
+    def 'pages are fetched while the caller works through the current page'() {
+        given:
+        CountDownLatch secondPageFetched = new CountDownLatch(1)
+        PageFetcher<User> slowFetcher = { long startIndex, int count ->
+            SCIMSearchResult<User> page = fetcher.fetch(startIndex, count)
+            if (startIndex == 11) {
+                secondPageFetched.countDown()
+            }
+            page
+        } as PageFetcher<User>
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(slowFetcher, 10, 2)
+
+        when:
+        pages.next()
+
+        then:
+        secondPageFetched.await(5, TimeUnit.SECONDS)
+
+        cleanup:
+        pages.close()
+    }
+
+    def 'no more than the given number of pages are fetched ahead'() {
+        given:
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(fetcher, 10, 3)
+
+        when:
+        pages.next()
+        Thread.sleep(200)
+
+        then:
+        fetchedPages.get() == 4
+
+        cleanup:
+        pages.close()
+    }
+
+    def 'a page that can not be fetched ends the iteration with an exception'() {
+        given:
+        PageFetcher<User> failingFetcher = { long startIndex, int count ->
+            if (startIndex > 1) {
+                throw new IOException('not available')
+            }
+            fetcher.fetch(startIndex, count)
+        } as PageFetcher<User>
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(failingFetcher, 10, 2)
+        pages.next()
+
+        when:
+        pages.next()
+
+        then:
+        IllegalStateException e = thrown()
+        e.cause instanceof IOException
+        !pages.hasNext()
+
+        cleanup:
+        pages.close()
+    }
+
+    def 'an empty page ends the iteration'() {
+        given:
+        PageFetcher<User> emptyFetcher = { long startIndex, int count ->
+            new SCIMSearchResult<User>([], 1000, 0, startIndex)
+        } as PageFetcher<User>
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(emptyFetcher, 10, 2)
+
+        expect:
+        pages.next().resources.empty
+        !pages.hasNext()
+
+        cleanup:
+        pages.close()
+    }
+
+    def 'pages shorter than requested are continued at the right index'() {
+        given:
+        PageFetcher<User> cappedFetcher = { long startIndex, int count ->
+            fetcher.fetch(startIndex, Math.min(count, 7))
+        } as PageFetcher<User>
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(cappedFetcher, 10, 3)
+
+        when:
+        List<SCIMSearchResult<User>> result = pages.collect()
+        pages.close()
+
+        then:
+        result*.resources.flatten() == USERS
+    }
+
+    def 'the count of every page is taken from the page size controller'() {
+        given:
+        PageSizeController pageSize = new PageSizeController.Builder()
+                .setInitialCount(5)
+                .setTargetBytes(40 * 100)
+                .build()
+        PageFetcher<User> measuringFetcher = { long startIndex, int count ->
+            SCIMSearchResult<User> page = fetcher.fetch(startIndex, count)
+            pageSize.record(page.resources.size(), page.resources.size() * 100, -1)
+            page
+        } as PageFetcher<User>
+        PrefetchingPageIterator<User> pages = new PrefetchingPageIterator<>(measuringFetcher, pageSize, 1)
+
+        when:
+        List<SCIMSearchResult<User>> result = pages.collect()
+        pages.close()
+
+        then:
+        result*.resources*.size() == [5, 10, 20, 40, 20]
+        result*.resources.flatten() == USERS
+    }
+
+    def 'invalid arguments are rejected'() {
+        when:
+        new PrefetchingPageIterator<User>(fetcher, 0, 1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query
+
+import org.osiam.resources.exception.SCIMDataValidationException
+import org.osiam.resources.scim.Email
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.Name
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CompiledSortSpec extends Specification {
+
+    static final String EXTENSION_URN = 'urn:org.osiam:scim:extensions:test'
+
+    def 'strings are sorted by the collation of the locale ignoring case'() {
+        given:
+        List<User> users = ['Zorn', 'muller', 'Ähren', 'Apfel'].collect { familyName ->
+            new User.Builder(familyName).setName(new Name.Builder().setFamilyName(familyName).build()).build()
+        }
+
+        expect:
+        CompiledSort.compile('name.familyName', SortOrder.ASCENDING, User, Locale.GERMAN)
+                .sort(users)*.userName == ['Ähren', 'Apfel', 'muller', 'Zorn']
+    }
+
+    def 'users without value are sorted last in ascending and first in descending order'() {
+        given:
+        List<User> users = [new User.Builder('b').setDisplayName('b').build(),
+                            new User.Builder('none').build(),
+                            new User.Builder('a').setDisplayName('a').build()]
+
+        expect:
+        CompiledSort.compile('displayName', SortOrder.ASCENDING, User).sort(users)*.userName == ['a', 'b', 'none']
+        CompiledSort.compile('displayName', SortOrder.DESCENDING, User).sort(users)*.userName == ['none', 'b', 'a']
+    }
+
+    def 'multi-valued attributes are sorted by their primary value'() {
+        given:
+        List<User> users = [
+                new User.Builder('first').addEmails([new Email.Builder().setValue('z@example.com').build(),
+                                                     new Email.Builder().setValue('a@example.com').build()]).build(),
+                new User.Builder('primary').addEmails([new Email.Builder().setValue('z@example.com').build(),
+                                                       new Email.Builder().setValue('b@example.com').setPrimary(true).build()]).build()]
+
+        expect:
+        CompiledSort.compile('emails', SortOrder.ASCENDING, User).sort(users)*.userName == ['primary', 'first']
+    }
+
+    def 'extension fields are sorted by their typed value'() {
+        given:
+        List<User> users = [9, 10, 100].collect { value ->
+            new User.Builder('user' + value)
+                    .addExtension(new Extension.Builder(EXTENSION_URN).setField('age', BigInteger.valueOf(value)).build())
+                    .build()
+        }
+
+        expect:
+        CompiledSort.compile(EXTENSION_URN + ':age', SortOrder.DESCENDING, User).sort(users)*.userName ==
+                ['user100', 'user10', 'user9']
+    }
+
+    @Unroll
+    def 'the page starting at #startIndex with #count users is the same as of a complete sort'() {
+        given:
+        Random random = new Random(startIndex)
+        List<User> users = (0..<1000).collect { index ->
+            new User.Builder('user' + index).setDisplayName('name' + random.nextInt(100)).build()
+        }
+        CompiledSort<User> sort = CompiledSort.compile('displayName', SortOrder.DESCENDING, User)
+        List<User> sortedUsers = sort.sort(users)
+
+        expect:
+        sort.page(users, startIndex, count) == sortedUsers.subList(Math.min(startIndex - 1, 1000),
+                Math.min(startIndex - 1 + count, 1000))
+
+        where:
+        startIndex | count
+        1          | 10
+        42         | 100
+        990        | 20
+        1001       | 10
+        1          | 0
+    }
+
+    def 'complex attributes are rejected'() {
+        when:
+        CompiledSort.compile('name', SortOrder.ASCENDING, User)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+}
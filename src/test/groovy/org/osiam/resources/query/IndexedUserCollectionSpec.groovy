@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query
+
+import org.osiam.resources.exception.SCIMDataValidationException
+import org.osiam.resources.filter.AttributeExpression
+import org.osiam.resources.filter.AttributePath
+import org.osiam.resources.filter.CompiledFilter
+import org.osiam.resources.scim.Email
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.GroupRef
+import org.osiam.resources.scim.SCIMSearchResult
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class IndexedUserCollectionSpec extends Specification {
+
+    static final String EXTENSION_URN = 'urn:org.osiam:scim:extensions:test'
+
+    IndexedUserCollection collection = new IndexedUserCollection()
+    List<User> users = []
+
+    def setup() {
+        collection.addIndex(HashIndex.forExtensionField(EXTENSION_URN, 'age'))
+        200.times { i ->
+            User.Builder builder = new User.Builder('user' + i)
+                    .setId('id' + i)
+                    .setExternalId(i % 3 == 0 ? 'EXT' + (i % 10) : null)
+                    .addEmails([new Email.Builder().setValue("user${i % 30}@example.com").setType(Email.Type.WORK).build()])
+            if (i % 7 == 0) {
+                builder.setGroups([new GroupRef.Builder().setValue('group' + (i % 5)).build()])
+            }
+            if (i % 4 == 0) {
+                builder.addExtension(new Extension.Builder(EXTENSION_URN).setField('age', BigInteger.valueOf(i % 90)).build())
+            }
+            User user = builder.build()
+            users << user
+            collection.put(user)
+        }
+    }
+
+    @Unroll
+    def 'the filter \'#filter\' finds the same users as a scan'() {
+        given:
+        CompiledFilter<User> compiledFilter = CompiledFilter.compile(filter, User)
+
+        expect:
+        collection.find(filter) == users.findAll { compiledFilter.matches(it) }
+
+        where:
+        filter << ['userName eq "USER42"',
+                   'externalId eq "EXT7"',
+                   'externalId eq "ext7"',
+                   'emails eq "user17@example.com"',
+                   'emails.value eq "USER17@EXAMPLE.COM" and userName sw "user1"',
+                   'emails[value eq "user17@example.com" and type eq "work"]',
+                   'groups.value eq "group3" or userName eq "user1"',
+                   EXTENSION_URN + ':age eq 40',
+                   'externalId pr and ' + EXTENSION_URN + ':age pr',
+                   'not (userName eq "user1")',
+                   'userName eq "nobody"']
+    }
+
+    def 'equality and presence are answered by the indexes'() {
+        given:
+        QueryPlanner planner = new QueryPlanner(collection.indexesByPath)
+
+        expect:
+        planner.findCandidates(CompiledFilter.compile('emails eq "user17@example.com"', User).filter).size() == 7
+        planner.findCandidates(CompiledFilter.compile('userName eq "user1" and title pr', User).filter).size() == 1
+        planner.findCandidates(CompiledFilter.compile('userName eq "user1" or title pr', User).filter) == null
+        planner.findCandidates(CompiledFilter.compile('not (userName eq "user1")', User).filter) == null
+    }
+
+    def 'replaced and removed users are removed from the indexes'() {
+        when:
+        collection.put(new User.Builder('renamed').setId('id42').build())
+        collection.remove('id43')
+
+        then:
+        collection.find('userName eq "user42"').empty
+        collection.find('userName eq "renamed"')*.id == ['id42']
+        collection.find('userName eq "user43"').empty
+        collection.size() == 199
+    }
+
+    def 'a custom index is used for its attribute'() {
+        given:
+        ResourceIndex<User> index = Mock()
+        index.getPath() >> AttributePath.parse('nickName')
+
+        when:
+        collection.addIndex(index)
+        List<User> result = collection.find('nickName eq "nick"')
+
+        then:
+        1 * index.findCandidates(_ as AttributeExpression) >> (['id1'] as Set)
+        result.empty
+    }
+
+    def 'users without id are rejected'() {
+        when:
+        collection.put(new User.Builder('user').build())
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def 'walking all pages by their cursors returns every user once although users change meanwhile'() {
+        given:
+        def filter = CompiledFilter.compile('emails.value sw "user1"', User)
+        def sort = CompiledSort.compile('emails.value', SortOrder.DESCENDING, User)
+        def expectedIds = filter.filter(users)*.id
+        List<String> ids = []
+
+        when:
+        SCIMSearchResult<User> page = collection.find(filter, sort, null, 10)
+        ids.addAll(page.resources*.id)
+        collection.remove(ids[0])
+        collection.put(new User.Builder('new').setId('new')
+                .addEmails([new Email.Builder().setValue('user19@example.com').build()]).build())
+        while (page.nextCursor != null) {
+            page = collection.find(filter, sort, page.nextCursor, 10)
+            ids.addAll(page.resources*.id)
+        }
+
+        then:
+        ids.size() == expectedIds.size()
+        ids as Set == expectedIds as Set
+        page.previousCursor != null
+    }
+
+    def 'the previous cursor returns the preceding page'() {
+        given:
+        def filter = CompiledFilter.compile('externalId pr', User)
+        def sort = CompiledSort.compile('externalId', SortOrder.ASCENDING, User)
+        def firstPage = collection.find(filter, sort, null, 5)
+        def secondPage = collection.find(filter, sort, firstPage.nextCursor, 5)
+
+        when:
+        def previousPage = collection.find(filter, sort, secondPage.previousCursor, 5)
+
+        then:
+        firstPage.previousCursor == null
+        firstPage.startIndex == 1
+        secondPage.startIndex == 6
+        secondPage.totalResults == users.count { it.externalId != null }
+        previousPage.resources == firstPage.resources
+        previousPage.startIndex == 1
+        previousPage.previousCursor == null
+    }
+
+    def 'a cursor of a different query is rejected'() {
+        given:
+        def sort = CompiledSort.compile('userName', SortOrder.ASCENDING, User)
+        def page = collection.find(CompiledFilter.compile('externalId pr', User), sort, null, 5)
+
+        when:
+        collection.find(CompiledFilter.compile('userName pr', User), sort, page.nextCursor, 5)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+}
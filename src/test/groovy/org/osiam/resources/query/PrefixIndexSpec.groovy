@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query
+
+import org.osiam.resources.filter.CompiledFilter
+import org.osiam.resources.filter.Filter
+import org.osiam.resources.scim.Group
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+
+class PrefixIndexSpec extends Specification {
+
+    PrefixIndex<Group> index = PrefixIndex.forAttribute(Group, 'displayName')
+
+    def setup() {
+        ['Admins', 'admin-eu', 'Auditors', 'Users'].eachWithIndex { displayName, i ->
+            index.add(new Group.Builder(displayName).setId('group' + i).build())
+        }
+    }
+
+    def 'values are autocompleted case insensitive in alphabetical order'() {
+        expect:
+        index.complete('AD', 10) == ['admin-eu', 'Admins']
+        index.complete('a', 2) == ['admin-eu', 'Admins']
+        index.findIds('a', 10) == ['group1', 'group0', 'group2']
+        index.complete('x', 10).empty
+    }
+
+    def 'removed values are not found anymore'() {
+        when:
+        index.remove(new Group.Builder('admin-eu').setId('group1').build())
+
+        then:
+        index.complete('ad', 10) == ['Admins']
+        index.findCandidates(Filter.parse('displayName sw "admin-"')).empty
+    }
+
+    def 'sw and eq expressions are answered'() {
+        expect:
+        index.findCandidates(Filter.parse('displayName sw "ADMIN"')) == ['group0', 'group1'] as Set
+        index.findCandidates(Filter.parse('displayName eq "admins"')) == ['group0'] as Set
+        index.findCandidates(Filter.parse('displayName co "min"')) == null
+    }
+
+    def 'a collection with prefix indexes finds the same users as a scan'() {
+        given:
+        IndexedUserCollection collection = new IndexedUserCollection()
+        collection.addIndex(PrefixIndex.forAttribute(User, 'displayName'))
+        collection.addIndex(PrefixIndex.forAttribute(User, 'userName'))
+        List<User> users = (0..<100).collect { i ->
+            new User.Builder('user' + i).setId('id' + i).setDisplayName((i % 2 ? 'Babs ' : 'bob ') + i).build()
+        }
+        users.each { collection.put(it) }
+        String filter = 'displayName sw "BOB 1" or userName sw "user9"'
+        CompiledFilter<User> compiledFilter = CompiledFilter.compile(filter, User)
+
+        expect:
+        collection.find(filter) == users.findAll { compiledFilter.matches(it) }
+        collection.findByPrefix('displayName', 'bab', 3)*.displayName == ['Babs 1', 'Babs 11', 'Babs 13']
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query
+
+import org.osiam.resources.filter.CompiledFilter
+import org.osiam.resources.filter.Filter
+import org.osiam.resources.scim.Extension
+import org.osiam.resources.scim.GroupRef
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+
+class QueryCacheSpec extends Specification {
+
+    QueryCache<User> cache = new QueryCache<>(User, 2)
+    CompiledSort<User> sort = CompiledSort.compile('userName', SortOrder.ASCENDING, User)
+    User user = new User.Builder('bjensen')
+            .setId('id1')
+            .setActive(true)
+            .setGroups([new GroupRef.Builder().setValue('admins').build()])
+            .build()
+
+    def setup() {
+        cache.put(Filter.parse('active eq true and groups.value eq "admins"'), sort, 1, 10, ['id1'])
+    }
+
+    def 'results are found by their normalized filter'() {
+        expect:
+        cache.get(Filter.parse('groups.value eq "admins" and Active eq true'), sort, 1, 10) == ['id1']
+        cache.get(Filter.parse('groups.value eq "admins" and Active eq true'), sort, 11, 10) == null
+    }
+
+    def 'results are kept if only attributes change that are not referenced'() {
+        when:
+        cache.update(user, new User.Builder(user).setNickName('babs').build())
+
+        then:
+        cache.size() == 1
+    }
+
+    def 'results are removed if a referenced attribute changes'() {
+        when:
+        cache.update(user, new User.Builder(user).setActive(false).build())
+
+        then:
+        cache.size() == 0
+    }
+
+    def 'results are removed if the sort attribute changes'() {
+        when:
+        cache.update(user, new User.Builder('babs', user).build())
+
+        then:
+        cache.size() == 0
+    }
+
+    def 'results are removed if a matching user is added'() {
+        when:
+        cache.update(null, new User.Builder('other').setId('id2').setActive(false).build())
+
+        then:
+        cache.size() == 1
+
+        when:
+        cache.update(null, new User.Builder(user).setId('id3').build())
+
+        then:
+        cache.size() == 0
+    }
+
+    def 'results of extension filters are removed if a matching user is added or the field changes'() {
+        given:
+        String urn = 'urn:ietf:params:scim:schemas:extension:enterprise:2.0:User'
+        Filter filter = Filter.parse(urn + ':employeeNumber eq "42"')
+        User employee = new User.Builder('employee').setId('id2')
+                .addExtension(new Extension.Builder(urn).setField('employeeNumber', '42').build())
+                .build()
+        cache.clear()
+        cache.put(filter, sort, 1, 10, [])
+
+        when:
+        cache.update(null, employee)
+
+        then:
+        cache.size() == 0
+
+        when:
+        cache.put(filter, sort, 1, 10, ['id2'])
+        cache.update(employee, new User.Builder(employee)
+                .addExtension(new Extension.Builder(urn).setField('employeeNumber', '43').build())
+                .build())
+
+        then:
+        cache.get(filter, sort, 1, 10) == null
+    }
+
+    def 'the least recently used result is removed when the cache is full'() {
+        when:
+        cache.put(Filter.parse('userName eq "a"'), sort, 1, 10, [])
+        cache.get(Filter.parse('active eq true and groups.value eq "admins"'), sort, 1, 10)
+        cache.put(Filter.parse('userName eq "b"'), sort, 1, 10, [])
+
+        then:
+        cache.size() == 2
+        cache.get(Filter.parse('userName eq "a"'), sort, 1, 10) == null
+    }
+
+    def 'a collection with a query cache returns the same results as without'() {
+        given:
+        IndexedUserCollection collection = new IndexedUserCollection(10)
+        collection.put(user)
+        CompiledFilter<User> filter = CompiledFilter.compile('active eq true', User)
+
+        when:
+        collection.find(filter, sort, 1, 10)
+        collection.put(new User.Builder('other').setId('id2').setActive(true).build())
+
+        then:
+        collection.find(filter, sort, 1, 10)*.id == ['id1', 'id2']
+    }
+
+    def 'a collection with a query cache recomputes a result that references a removed user'() {
+        given:
+        IndexedUserCollection collection = new IndexedUserCollection(10)
+        collection.put(user)
+        collection.put(new User.Builder('other').setId('id2').setActive(true).build())
+        CompiledFilter<User> filter = CompiledFilter.compile('active eq true', User)
+        collection.find(filter, sort, 1, 10)
+        collection.queryCache.put(filter.getFilter(), sort, 1, 10, ['id1', 'id3'])
+
+        expect:
+        collection.find(filter, sort, 1, 10)*.id == ['id1', 'id2']
+        collection.queryCache.get(filter.getFilter(), sort, 1, 10) == ['id1', 'id2']
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.osiam.resources.query
+
+import org.osiam.resources.scim.SCIMSearchResult
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class SortedPageMergerSpec extends Specification {
+
+    static final CompiledSort<User> SORT = CompiledSort.compile('userName', SortOrder.DESCENDING, User)
+
+    static final List<User> USERS = (0..<300).collect { int i ->
+        new User.Builder(String.format('user%03d', (i * 7919) % 1000)).setId("id$i").build()
+    }
+
+    int fetchedPages
+
+    @Unroll
+    def 'the page starting at #startIndex with #count users is the same as the page of all users'() {
+        given:
+        SortedPageMerger<User> merger = new SortedPageMerger<>(SORT)
+
+        when:
+        SCIMSearchResult<User> page = merger.page(shards(3, 20), startIndex, count)
+
+        then:
+        page.resources == SORT.page(USERS, startIndex, count)
+        page.totalResults == 300
+        page.startIndex == Math.max(startIndex, 1)
+        page.itemsPerPage == page.resources.size()
+
+        where:
+        startIndex | count
+        1          | 10
+        0          | 10
+        95         | 30
+        290        | 50
+        301        | 10
+    }
+
+    def 'only the pages up to the requested page are fetched'() {
+        given:
+        SortedPageMerger<User> merger = new SortedPageMerger<>(SORT)
+
+        when:
+        merger.page(shards(3, 20), 1, 10)
+
+        then:
+        fetchedPages == 3
+    }
+
+    def 'all users of all sources are merged in sorted order'() {
+        given:
+        SortedPageMerger<User> merger = new SortedPageMerger<>(SORT)
+
+        expect:
+        merger.merge(shards(4, 7)).collect() == SORT.sort(USERS)
+    }
+
+    def 'empty sources are ignored'() {
+        given:
+        SortedPageMerger<User> merger = new SortedPageMerger<>(SORT)
+        List<Iterator<SCIMSearchResult<User>>> sources = [pages([], 10), pages(USERS.subList(0, 3), 10)]
+
+        expect:
+        merger.merge(sources).collect() == SORT.sort(USERS.subList(0, 3))
+    }
+
+    private List<Iterator<SCIMSearchResult<User>>> shards(int numberOfShards, int pageSize) {
+        (0..<numberOfShards).collect { int shard ->
+            pages(SORT.sort(USERS.findAll { USERS.indexOf(it) % numberOfShards == shard }), pageSize)
+        }
+    }
+
+    private Iterator<SCIMSearchResult<User>> pages(List<User> users, int pageSize) {
+        List<List<User>> pages = users.collate(pageSize) ?: [[]]
+        int next = 0
+        [hasNext: { next < pages.size() },
+         next   : {
+             fetchedPages++
+             List<User> page = pages[next++]
+             new SCIMSearchResult<User>(page, users.size(), page.size(), 1 + (next - 1) * pageSize)
+         }] as Iterator<SCIMSearchResult<User>>
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.query
+
+import org.osiam.resources.filter.CompiledFilter
+import org.osiam.resources.filter.Filter
+import org.osiam.resources.scim.Email
+import org.osiam.resources.scim.User
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TrigramIndexSpec extends Specification {
+
+    static final List<String> NAMES = ['Mueller', 'Schmidt', 'Jensen', 'Babs', 'Anna', 'Lena']
+
+    IndexedUserCollection collection = new IndexedUserCollection()
+    TrigramIndex<User> displayNameIndex = TrigramIndex.forAttribute(User, 'displayName')
+    List<User> users
+
+    def setup() {
+        collection.addIndex(displayNameIndex)
+        collection.addIndex(TrigramIndex.forAttribute(User, 'emails.value'))
+        users = (0..<300).collect { i ->
+            new User.Builder('user' + i)
+                    .setId('id' + i)
+                    .setDisplayName(NAMES[i % NAMES.size()] + ' ' + NAMES[i.intdiv(NAMES.size()) % NAMES.size()])
+                    .addEmails([new Email.Builder()
+                                        .setValue("user${i}@" + (i % 3 ? 'partner.com' : 'example.org'))
+                                        .build()])
+                    .build()
+        }
+        users.each { collection.put(it) }
+    }
+
+    @Unroll
+    def 'the filter \'#filter\' finds the same users as a scan'() {
+        given:
+        CompiledFilter<User> compiledFilter = CompiledFilter.compile(filter, User)
+
+        expect:
+        collection.find(filter) == users.findAll { compiledFilter.matches(it) }
+
+        where:
+        filter << ['displayName co "ELL"',
+                   'emails.value co "@partner"',
+                   'emails co "er12"',
+                   'displayName co "na le" and emails co "example"',
+                   'displayName sw "Anna B"',
+                   'displayName co "zzz"']
+    }
+
+    def 'co expressions are narrowed to the users that contain all trigrams'() {
+        expect:
+        displayNameIndex.findCandidates(Filter.parse('displayName co "ller"')) ==
+                users.findAll { it.displayName.contains('ller') }*.id as Set
+        displayNameIndex.findCandidates(Filter.parse('displayName co "ll"')) == null
+        displayNameIndex.findCandidates(Filter.parse('displayName co "zzz"')).empty
+    }
+
+    def 'removed users are not found anymore'() {
+        when:
+        users.findAll { it.displayName.contains('Mueller') }.each { collection.remove(it.id) }
+
+        then:
+        displayNameIndex.findCandidates(Filter.parse('displayName co "mueller"')).empty
+        displayNameIndex.size() == users.count { !it.displayName.contains('Mueller') }
+    }
+
+    def 'the memory usage is reported per user'() {
+        expect:
+        displayNameIndex.estimatedMemoryUsagePerResource > 0
+        Math.round(displayNameIndex.estimatedMemoryUsagePerResource * displayNameIndex.size()) ==
+                displayNameIndex.estimatedMemoryUsage
+    }
+}
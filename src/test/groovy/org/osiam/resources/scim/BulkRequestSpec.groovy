@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.osiam.resources.exception.SCIMDataValidationException
+import spock.lang.Specification
+
+class BulkRequestSpec extends Specification {
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    def 'the data of an operation is read according to its method and path'() {
+        given:
+        BulkRequest bulkRequest = new BulkRequest.Builder()
+                .setFailOnErrors(1)
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.POST, '/Users')
+                        .setBulkId('user')
+                        .setData(new User.Builder('bjensen').build())
+                        .build())
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.POST, '/Groups')
+                        .setBulkId('group')
+                        .setData(new Group.Builder('group')
+                                .addMember(new MemberRef.Builder().setValue(BulkOperation.bulkIdReference('user')).build())
+                                .build())
+                        .build())
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.PATCH, '/Users/bulkId:user')
+                        .setData(new UpdateUser.Builder().updateNickName('nick').build())
+                        .build())
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.PATCH, '/Groups/bulkId:group')
+                        .setData(new UpdateGroup.Builder().updateDisplayName('new group').build())
+                        .build())
+                .build()
+
+        when:
+        BulkRequest readRequest = mapper.readValue(mapper.writeValueAsString(bulkRequest), BulkRequest)
+
+        then:
+        readRequest.schemas == [BulkRequest.SCHEMA] as Set
+        readRequest.failOnErrors == 1
+        readRequest.operations[0].user.userName == 'bjensen'
+        readRequest.operations[1].group.members*.value == ['bulkId:user']
+        readRequest.operations[2].updateUser.scimConformUpdateUser.nickName == 'nick'
+        readRequest.operations[3].updateGroup.scimConformUpdateGroup.displayName == 'new group'
+    }
+
+    def 'a POST operation requires a bulkId'() {
+        when:
+        new BulkOperation.Builder(BulkOperation.Method.POST, '/Users').build()
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'a bulkId can only be used once'() {
+        given:
+        BulkOperation operation = new BulkOperation.Builder(BulkOperation.Method.POST, '/Users')
+                .setBulkId('user')
+                .build()
+
+        when:
+        new BulkRequest.Builder().addOperation(operation).addOperation(operation)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'a path can only reference the bulkId of a previous operation'() {
+        when:
+        new BulkRequest.Builder().addOperation(
+                new BulkOperation.Builder(BulkOperation.Method.DELETE, '/Users/bulkId:unknown').build())
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'a bulk response contains the locations and errors of the operations'() {
+        given:
+        BulkResponse bulkResponse = new BulkResponse.Builder()
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.POST, '/Users')
+                        .setBulkId('user')
+                        .setLocation('https://example.com/osiam/Users/92b725cd')
+                        .setStatus(201)
+                        .build())
+                .addOperation(new BulkOperation.Builder(BulkOperation.Method.DELETE, '/Groups/e9e30dba')
+                        .setStatus(404)
+                        .setResponse(new ErrorResponse(404, 'Group not found'))
+                        .build())
+                .build()
+
+        when:
+        BulkResponse readResponse = mapper.readValue(mapper.writeValueAsString(bulkResponse), BulkResponse)
+
+        then:
+        readResponse.schemas == [BulkResponse.SCHEMA] as Set
+        readResponse.getOperation('user').location == 'https://example.com/osiam/Users/92b725cd'
+        readResponse.getOperation('user').status == '201'
+        readResponse.operations[1].response.detail == 'Group not found'
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.osiam.resources.scim
+
+import com.google.common.hash.Hashing
+import spock.lang.Specification
+
+class ContentHasherSpec extends Specification {
+
+    ContentHasher hasher = new ContentHasher()
+
+    Email work = new Email.Builder().setValue('work@example.com').setType(Email.Type.WORK).build()
+    Email home = new Email.Builder().setValue('home@example.com').setType(Email.Type.HOME).setPrimary(true).build()
+
+    def 'the hash does not depend on the order of multi-valued attributes and extension fields'() {
+        given:
+        User user = user([work, home], [a: 'x', b: 'y'])
+        User reordered = user([home, work], [b: 'y', a: 'x'])
+
+        expect:
+        hasher.hash(user) == hasher.hash(reordered)
+        hasher.etag(user) == hasher.etag(reordered)
+    }
+
+    def 'the hash changes with the content'() {
+        given:
+        User user = user([work, home], [a: 'x'])
+
+        expect:
+        hasher.hash(user) != hasher.hash(changed)
+
+        where:
+        changed << [
+                user([work], [a: 'x']),
+                user([work, home], [a: 'z']),
+                user([work, home], [a: 'x', b: 'y']),
+                new User.Builder(user([work, home], [a: 'x'])).setNickName('nick').build(),
+                new User.Builder(user([work, home], [a: 'x'])).setActive(false).build()
+        ]
+    }
+
+    def 'the version is not part of the hash'() {
+        given:
+        User user = user([work], [:])
+        User versioned = new User.Builder(user)
+                .setMeta(new Meta.Builder(user.meta).setVersion(hasher.etag(user)).build())
+                .build()
+
+        expect:
+        hasher.hash(versioned) == hasher.hash(user)
+    }
+
+    def 'the hash of a group does not depend on the order of its members'() {
+        given:
+        MemberRef first = new MemberRef.Builder().setValue('1').build()
+        MemberRef second = new MemberRef.Builder().setValue('2').build()
+
+        expect:
+        hasher.hash(new Group.Builder('group').setMembers([first, second] as LinkedHashSet).build()) ==
+                hasher.hash(new Group.Builder('group').setMembers([second, first] as LinkedHashSet).build())
+        hasher.hash(new Group.Builder('group').setMembers([first] as Set).build()) !=
+                hasher.hash(new Group.Builder('group').setMembers([second] as Set).build())
+    }
+
+    def 'an ETag is the quoted base64url encoded hash'() {
+        given:
+        User user = user([work], [:])
+
+        expect:
+        hasher.etag(user) ==~ /"[A-Za-z0-9_-]{43}"/
+        new ContentHasher(Hashing.md5()).hash(user).bits() == 128
+    }
+
+    private static User user(List<Email> emails, Map<String, String> fields) {
+        Extension.Builder extension = new Extension.Builder('urn:example:extension')
+        fields.each { name, value -> extension.setField(name, value) }
+        new User.Builder('user')
+                .setId('id')
+                .setName(new Name.Builder().setGivenName('given').build())
+                .addEmails(emails)
+                .setMeta(new Meta.Builder(new Date(1000), new Date(2000)).build())
+                .addExtension(extension.build())
+                .build()
+    }
+}
@@ -113,4 +113,64 @@ class MetaSpec extends Specification {
         then:
         thrown(IllegalArgumentException)
     }
+
+    def 'the times are returned as milliseconds, instants and dates'() {
+        when:
+        def meta = new Meta.Builder(1440000000000L, 1440000001000L).build()
+
+        then:
+        meta.createdMillis == 1440000000000L
+        meta.lastModifiedMillis == 1440000001000L
+        meta.createdInstant.millis == 1440000000000L
+        meta.lastModifiedInstant.millis == 1440000001000L
+        meta.created == new Date(1440000000000L)
+        meta == new Meta.Builder(new Date(1440000000000L), new Date(1440000001000L)).build()
+    }
+
+    def 'times that are not set are returned as NO_TIME and null'() {
+        when:
+        def meta = new Meta.Builder(null, null).build()
+
+        then:
+        meta.createdMillis == Meta.NO_TIME
+        meta.lastModifiedMillis == Meta.NO_TIME
+        meta.createdInstant == null
+        meta.lastModifiedInstant == null
+    }
+
+    def 'a returned date can be modified without changing the meta'() {
+        given:
+        def meta = new Meta.Builder(new Date(1000), new Date(2000)).build()
+
+        when:
+        meta.created.time = 5000
+
+        then:
+        meta.createdMillis == 1000
+    }
+
+    def 'a meta survives java serialization'() {
+        given:
+        def meta = new Meta.Builder(new Date(1000), null).setLocation('location').setVersion('1').build()
+        def output = new ByteArrayOutputStream()
+        new ObjectOutputStream(output).writeObject(meta)
+
+        when:
+        Meta result = new ObjectInputStream(new ByteArrayInputStream(output.toByteArray())).readObject() as Meta
+
+        then:
+        result == meta
+        result.createdMillis == 1000
+        result.lastModified == null
+    }
+
+    def 'attribute accessors read the times as milliseconds'() {
+        given:
+        def meta = new Meta.Builder(1000L, Meta.NO_TIME).build()
+
+        expect:
+        AttributeAccessor.forAttribute(Meta, 'created').type == Date
+        AttributeAccessor.forAttribute(Meta, 'created').getValue(meta) == 1000L
+        AttributeAccessor.forAttribute(Meta, 'lastModified').getValue(meta) == null
+    }
 }
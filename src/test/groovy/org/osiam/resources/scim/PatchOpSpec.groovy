@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2013 tarent AG
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package org.osiam.resources.scim
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.osiam.resources.exception.SCIMDataValidationException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PatchOpSpec extends Specification {
+
+    static final String EXTENSION_URN = 'urn:org.osiam:scim:extensions:test'
+
+    ObjectMapper mapper = new ObjectMapper()
+
+    User user = new User.Builder('bjensen')
+            .setName(new Name.Builder().setGivenName('Barbara').setFamilyName('Jensen').build())
+            .addEmail(new Email.Builder().setValue('work@example.com').setType(Email.Type.WORK).build())
+            .addEmail(new Email.Builder().setValue('home@example.com').setType(Email.Type.HOME).build())
+            .addExtension(new Extension.Builder(EXTENSION_URN).setField('age', BigInteger.TEN).build())
+            .build()
+
+    def 'a PatchOp can be read from and written to JSON'() {
+        given:
+        def json = '''{"schemas":["urn:ietf:params:scim:api:messages:2.0:PatchOp"],"Operations":[
+                {"op":"Replace","path":"emails[type eq \\"work\\"].value","value":"new@example.com"},
+                {"op":"remove","path":"nickName"}]}'''
+
+        when:
+        PatchOp patchOp = mapper.readValue(json, PatchOp)
+
+        then:
+        patchOp.schemas == [PatchOp.SCHEMA] as Set
+        patchOp.operations*.op == [PatchOp.Type.REPLACE, PatchOp.Type.REMOVE]
+        mapper.readTree(mapper.writeValueAsString(patchOp)).get('Operations').get(0).get('op').asText() == 'replace'
+    }
+
+    def 'replacing a sub-attribute of filtered values changes only the matching values'() {
+        given:
+        PatchOp patchOp = new PatchOp.Builder()
+                .replace('emails[type eq "work"].value', 'new@example.com')
+                .build()
+
+        when:
+        User patchedUser = patchOp.applyTo(user)
+
+        then:
+        patchedUser.emails*.value == ['new@example.com', 'home@example.com']
+        patchedUser.emails[0].type == Email.Type.WORK
+        user.emails*.value == ['work@example.com', 'home@example.com']
+    }
+
+    def 'removing filtered values removes only the matching values'() {
+        given:
+        PatchOp patchOp = new PatchOp.Builder()
+                .remove('emails[type eq "HOME" or value co "nothing"]')
+                .build()
+
+        expect:
+        patchOp.applyTo(user).emails*.value == ['work@example.com']
+    }
+
+    def 'a value filter that matches no value doesn\'t change the user'() {
+        given:
+        PatchOp patchOp = new PatchOp.Builder()
+                .remove('emails[type eq "other"]')
+                .build()
+
+        expect:
+        patchOp.applyTo(user).emails == user.emails
+    }
+
+    def 'adding and replacing multi-valued attributes'() {
+        given:
+        Email email = new Email.Builder().setValue('other@example.com').setType(Email.Type.OTHER).build()
+
+        expect:
+        new PatchOp.Builder().add('emails', [email]).build().applyTo(user).emails.size() == 3
+        new PatchOp.Builder().replace('emails', [email]).build().applyTo(user).emails == [email]
+        new PatchOp.Builder().remove('emails').build().applyTo(user).emails.isEmpty()
+    }
+
+    def 'patching single attributes and sub-attributes of the name'() {
+        given:
+        PatchOp patchOp = new PatchOp.Builder()
+                .replace('name.givenName', 'Babs')
+                .add('nickName', 'Babs')
+                .replace('active', true)
+                .build()
+
+        when:
+        User patchedUser = patchOp.applyTo(user)
+
+        then:
+        patchedUser.name.givenName == 'Babs'
+        patchedUser.name.familyName == 'Jensen'
+        patchedUser.nickName == 'Babs'
+        patchedUser.active
+    }
+
+    def 'an operation without a path patches all attributes of its value'() {
+        given:
+        def json = '''{"Operations":[{"op":"add","value":{"displayName":"Babs Jensen",
+                "urn:org.osiam:scim:extensions:test":{"age":42}}}]}'''
+
+        when:
+        User patchedUser = mapper.readValue(json, PatchOp).applyTo(user)
+
+        then:
+        patchedUser.displayName == 'Babs Jensen'
+        patchedUser.getExtension(EXTENSION_URN).getFieldAsInteger('age') == 42G
+    }
+
+    def 'patching fields of extensions'() {
+        when:
+        User patchedUser = new PatchOp.Builder()
+                .remove(EXTENSION_URN + ':age')
+                .add('urn:org.osiam:scim:extensions:other:flag', true)
+                .build()
+                .applyTo(user)
+
+        then:
+        !patchedUser.getExtension(EXTENSION_URN).isFieldPresent('age')
+        patchedUser.getExtension('urn:org.osiam:scim:extensions:other').getFieldAsBoolean('flag')
+        patchedUser.schemas.contains('urn:org.osiam:scim:extensions:other')
+    }
+
+    def 'patching the members of a group'() {
+        given:
+        Group group = new Group.Builder('group')
+                .addMember(new MemberRef.Builder().setValue('1').build())
+                .addMember(new MemberRef.Builder().setValue('2').build())
+                .build()
+        PatchOp patchOp = new PatchOp.Builder()
+                .remove('members[value eq "1"]')
+                .add('members', [[value: '3']])
+                .replace('displayName', 'new group')
+                .build()
+
+        when:
+        Group patchedGroup = patchOp.applyTo(group)
+
+        then:
+        patchedGroup.members*.value as Set == ['2', '3'] as Set
+        patchedGroup.displayName == 'new group'
+        group.members.size() == 2
+    }
+
+    def 'read-only attributes can\'t be patched'() {
+        when:
+        new PatchOp.Builder().remove('groups').build().applyTo(user)
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
+    def 'compiled paths are cached'() {
+        expect:
+        PatchPath.compile('members[value eq "1"]').is(PatchPath.compile('members[value eq "1"]'))
+    }
+
+    def 'a path is split into urn, attribute and sub-attribute'() {
+        when:
+        PatchPath patchPath = PatchPath.compile(path)
+
+        then:
+        patchPath.urn == urn
+        patchPath.attribute == attribute
+        patchPath.subAttribute == subAttribute
+        patchPath.hasValueFilter() == filtered
+
+        where:
+        path                           | urn           | attribute  | subAttribute | filtered
+        'name.givenName'               | null          | 'name'     | 'givenName'  | false
+        User.SCHEMA + ':userName'      | null          | 'userName' | null         | false
+        EXTENSION_URN + ':age'         | EXTENSION_URN | 'age'      | null         | false
+        'emails[type eq "work"].value' | null          | 'emails'   | 'value'      | true
+        'members[value eq "a]b"]'      | null          | 'members'  | null         | true
+    }
+
+    @Unroll
+    def 'the invalid path \'#path\' is rejected'() {
+        when:
+        PatchPath.compile(path)
+
+        then:
+        thrown(SCIMDataValidationException)
+
+        where:
+        path << ['', 'emails[type eq "work"', 'emails[type]', 'emails[type zz "a"]', 'name.givenName[value pr]',
+                 'emails[type eq "work"]value', 'na me']
+    }
+}
@@ -89,4 +89,29 @@ class SCIMSearchResultSpec extends Specification {
         result.getResources()[0].getId() == "834b410a-943b-4c80-817a-4465aed037bc"
         result.getResources()[1].getId() == "cef9452e-00a9-4cec-a086-d171374ffbef"
     }
+
+    def 'the cursors of a SCIMSearchResult are written to and read from JSON'() {
+        given:
+        def mapper = new JsonFixturesHelper().configuredObjectMapper()
+        def result = new SCIMSearchResult<User>([], 10, 0, 11, 'next', 'previous')
+
+        when:
+        def json = mapper.writeValueAsString(result)
+        SCIMSearchResult<User> readResult = mapper.readValue(json, TypeFactory.defaultInstance()
+                .constructParametrizedType(SCIMSearchResult, SCIMSearchResult, User))
+
+        then:
+        json.contains('"nextCursor":"next"')
+        json.contains('"previousCursor":"previous"')
+        readResult.nextCursor == 'next'
+        readResult.previousCursor == 'previous'
+    }
+
+    def 'missing cursors are not written to JSON'() {
+        given:
+        def mapper = new JsonFixturesHelper().configuredObjectMapper()
+
+        expect:
+        !mapper.writeValueAsString(new SCIMSearchResult<User>([], 0, 0, 1)).contains('Cursor')
+    }
 }
@@ -23,6 +23,7 @@
 
 package org.osiam.resources.scim
 
+import org.osiam.resources.exception.SCIMDataValidationException
 import spock.lang.Specification
 
 class UpdateUserSpec extends Specification {
@@ -203,6 +204,169 @@ class UpdateUserSpec extends Specification {
         scimUser.getSchemas().contains(extension.getUrn())
     }
 
+    def 'applying an update to a user deletes and updates the attributes'() {
+        given:
+        createUserValueObjects()
+        User user = createCompareUser()
+        UpdateUser updateUser = new UpdateUser.Builder()
+                .deleteNickName()
+                .updateTitle('new title')
+                .deleteEmail(deleteEmail)
+                .addEmail(new Email.Builder().setValue('another@test.com').build())
+                .deleteRoles()
+                .updateName(new Name.Builder().setFamilyName('new family').build())
+                .build()
+
+        when:
+        User updatedUser = updateUser.applyTo(user)
+
+        then:
+        updatedUser.getUserName() == user.getUserName()
+        updatedUser.getNickName() == null
+        updatedUser.getTitle() == 'new title'
+        updatedUser.getEmails() == [newEmail, new Email.Builder().setValue('another@test.com').build()]
+        updatedUser.getRoles().isEmpty()
+        updatedUser.getName().getFamilyName() == 'new family'
+        updatedUser.getName().getGivenName() == 'given'
+        updatedUser.getAddresses() == user.getAddresses()
+        updatedUser.getMeta() == user.getMeta()
+    }
+
+    def 'applying an update to a user does not modify the user'() {
+        given:
+        createUserValueObjects()
+        User user = createCompareUser()
+        UpdateUser updateUser = createUpdateUserForDeletion()
+
+        when:
+        updateUser.applyTo(user)
+
+        then:
+        user.getEmails().size() == 2
+        user.getNickName() == 'nick'
+        user.getRoles().size() == 2
+    }
+
+    def 'applying an update with extension changes merges the extension fields'() {
+        given:
+        createUserValueObjects()
+        User user = new User.Builder('username')
+                .addExtension(new Extension.Builder('urn:ext').setField('a', 'a').setField('b', 'b').build())
+                .build()
+        UpdateUser updateUser = new UpdateUser.Builder()
+                .deleteExtensionField('urn:ext', 'a')
+                .updateExtension(new Extension.Builder('urn:ext').setField('c', 'c').build())
+                .build()
+
+        when:
+        User updatedUser = updateUser.applyTo(user)
+
+        then:
+        updatedUser.getExtension('urn:ext').getFields().keySet() == ['b', 'c'] as Set
+        user.getExtension('urn:ext').getFields().keySet() == ['a', 'b'] as Set
+    }
+
+    def 'applying an update that deletes an extension removes its schema'() {
+        given:
+        createUserValueObjects()
+        User user = new User.Builder(createCompareUser()).addExtension(extension).build()
+
+        when:
+        User updatedUser = new UpdateUser.Builder().deleteExtension(extension.getUrn()).build().applyTo(user)
+
+        then:
+        !updatedUser.isExtensionPresent(extension.getUrn())
+        !updatedUser.getSchemas().contains(extension.getUrn())
+    }
+
+    def 'merging updates lets the later values and deletions win'() {
+        given:
+        UpdateUser earlier = new UpdateUser.Builder()
+                .updateNickName('nick')
+                .deleteTitle()
+                .updateName(new Name.Builder().setGivenName('given').setFamilyName('family').build())
+                .build()
+        UpdateUser later = new UpdateUser.Builder()
+                .deleteNickName()
+                .updateTitle('title')
+                .deleteName()
+                .updateName(new Name.Builder().setFamilyName('new family').build())
+                .build()
+
+        when:
+        User mergedUser = earlier.mergeWith(later).getScimConformUpdateUser()
+
+        then:
+        mergedUser.getNickName() == null
+        mergedUser.getTitle() == 'title'
+        mergedUser.getName() == new Name.Builder().setFamilyName('new family').build()
+        mergedUser.getMeta().getAttributes() == ['nickName', 'name'] as Set
+    }
+
+    def 'merging updates keeps only the latest change of a multi-valued entry'() {
+        given:
+        Email email = new Email.Builder().setValue('email@test.com').build()
+        Email otherEmail = new Email.Builder().setValue('other@test.com').build()
+        List<UpdateUser> updates = [
+                new UpdateUser.Builder().addEmail(email).deleteEmail(otherEmail).build(),
+                new UpdateUser.Builder().addEmail(otherEmail).deleteEmail(email).build()
+        ]
+
+        when:
+        List<Email> mergedEmails = UpdateUser.merge(updates).getScimConformUpdateUser().getEmails()
+
+        then:
+        mergedEmails*.value == ['other@test.com', 'email@test.com']
+        mergedEmails*.operation == [null, DELETE]
+    }
+
+    def 'deleting an added entry is dropped if all entries are deleted anyway'() {
+        given:
+        Email email = new Email.Builder().setValue('email@test.com').build()
+        UpdateUser earlier = new UpdateUser.Builder().deleteEmails().addEmail(email).build()
+        UpdateUser later = new UpdateUser.Builder().deleteEmail(email).build()
+
+        when:
+        User mergedUser = earlier.mergeWith(later).getScimConformUpdateUser()
+
+        then:
+        mergedUser.getEmails().isEmpty()
+        mergedUser.getMeta().getAttributes() == ['emails'] as Set
+    }
+
+    def 'applying merged updates is the same as applying them one after another'() {
+        given:
+        createUserValueObjects()
+        User user = new User.Builder(createCompareUser())
+                .addExtension(new Extension.Builder('urn:ext').setField('a', 'a').setField('b', 'b').build())
+                .build()
+        List<UpdateUser> updates = [
+                new UpdateUser.Builder().updateNickName('new nick').deleteEmail(newEmail).deleteRoles().build(),
+                new UpdateUser.Builder().addEmail(newEmail).deleteExtensionField('urn:ext', 'a').build(),
+                new UpdateUser.Builder().deleteExtension('urn:ext').deleteName()
+                        .updateExtension(new Extension.Builder('urn:ext').setField('c', 'c').build()).build()
+        ]
+
+        when:
+        User mergedUpdateUser = UpdateUser.merge(updates).applyTo(user)
+        User sequentialUpdateUser = updates.inject(user) { User current, UpdateUser update -> update.applyTo(current) }
+
+        then:
+        mergedUpdateUser.getNickName() == sequentialUpdateUser.getNickName()
+        mergedUpdateUser.getName() == sequentialUpdateUser.getName()
+        mergedUpdateUser.getEmails() == sequentialUpdateUser.getEmails()
+        mergedUpdateUser.getRoles() == sequentialUpdateUser.getRoles()
+        mergedUpdateUser.getExtensions() == sequentialUpdateUser.getExtensions()
+    }
+
+    def 'merging no updates raises exception'() {
+        when:
+        UpdateUser.merge([])
+
+        then:
+        thrown(SCIMDataValidationException)
+    }
+
     private createUserValueObjects(){
         newAddress = new Address.Builder()
                 .setCountry('country')
@@ -492,4 +492,29 @@ class UserSpec extends Specification {
                 .getFieldAsDate('keyDateTime') == date
 
     }
+
+    def 'a builder based on an existing user does not modify the existing user'() {
+        given:
+        Extension extension = new Extension.Builder('urn:scim:schemas:extension:test:1.0:User')
+                .setField('keyString', 'example')
+                .build()
+        User user = new User.Builder('user')
+                .addEmail(new Email.Builder().setValue('user@example.com').build())
+                .addExtension(extension)
+                .build()
+
+        when:
+        User derivedUser = new User.Builder(user)
+                .addEmail(new Email.Builder().setValue('other@example.com').build())
+                .removeExtension(extension.getUrn())
+                .build()
+
+        then:
+        user.getEmails().size() == 1
+        user.isExtensionPresent(extension.getUrn())
+        user.getSchemas().contains(extension.getUrn())
+        derivedUser.getEmails().size() == 2
+        !derivedUser.isExtensionPresent(extension.getUrn())
+        !derivedUser.getSchemas().contains(extension.getUrn())
+    }
 }